@@ -0,0 +1,377 @@
+package app.util;
+
+import app.model.Event;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * OffHeapEventStore
+ * -----------------
+ * An optional storage backend that keeps events outside the Java heap,
+ * for calendars too large to hold comfortably as objects.
+ *
+ * Events are stored as fixed-width records in a memory-mapped file
+ * (data/event.seg), accessed through the Foreign Memory API
+ * (MemorySegment). Titles and descriptions are variable-length, so they
+ * live in a second file (data/event.str) and each record holds their
+ * offset and length.
+ *
+ * event.csv remains the source of truth. The segment files are rebuilt
+ * from it whenever the CSV has changed since they were written, and
+ * queries then read ids and times directly from the mapped segment,
+ * creating Event objects only for matching records. The heap holds
+ * nothing per event, so GC work does not grow with the dataset.
+ *
+ * A segment records the DataLock version of the events table it was
+ * built from, plus the CSV's length and modified time to catch edits
+ * made outside the app. The rebuild runs under the DataLock.
+ *
+ * The backend is enabled with -Dscheduler.storage=offheap and loaded
+ * through EventSegment. This file is kept in src-offheap because the
+ * Foreign Memory API needs JDK 22, or JDK 21 with preview features
+ * (see README.md):
+ *
+ *     javac -d out $(find src -name '*.java')
+ *     javac --release 21 --enable-preview -cp out -d out src-offheap/app/util/OffHeapEventStore.java
+ *     java --enable-preview -cp out -Dscheduler.storage=offheap app.Main
+ */
+public class OffHeapEventStore implements EventSegment {
+
+    // File locations
+    private static final String CSV_FILE = "data/event.csv";
+    private static final String SEGMENT_FILE = "data/event.seg";
+    private static final String STRING_FILE = "data/event.str";
+
+    // Header layout: magic, version, record count, CSV length, CSV modified time,
+    // DataLock version of the events table
+    private static final int MAGIC = 0x45534547; // "ESEG"
+    private static final int VERSION = 2;
+    private static final long HEADER_SIZE = 40;
+
+    // Record layout (48 bytes, little-endian)
+    private static final long RECORD_SIZE = 48;
+    private static final long OFF_ID = 0;
+    private static final long OFF_TITLE_LEN = 4;
+    private static final long OFF_START = 8;
+    private static final long OFF_END = 16;
+    private static final long OFF_TITLE = 24;
+    private static final long OFF_DESC = 32;
+    private static final long OFF_DESC_LEN = 40;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // ===================== QUERIES =====================
+
+    /*
+     * Lazily streams the events whose start date-time lies in [from, to).
+     * The mapping stays open until the stream is closed.
+     */
+    @Override
+    public Stream<Event> streamByStart(LocalDateTime from, LocalDateTime to) {
+
+        long lo = EventStore.toSeconds(from);
+        long hi = EventStore.toSeconds(to);
+
+        Mapping m = open();
+        if (m == null) return Stream.empty();
+
+        Spliterator<Event> split = new Spliterators.AbstractSpliterator<>(m.count, Spliterator.ORDERED) {
+            long i = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Event> action) {
+                while (i < m.count) {
+                    long rec = HEADER_SIZE + (i++) * RECORD_SIZE;
+                    long start = m.records.get(LONG, rec + OFF_START);
+                    if (start >= lo && start < hi) {
+                        action.accept(m.eventAt(rec));
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(split, false).onClose(m::close);
+    }
+
+    /*
+     * Checks whether an event overlaps any stored event other than itself,
+     * reading only the id/start/end fields of each record.
+     */
+    @Override
+    public boolean hasConflict(Event newEvent) {
+
+        long newStart = EventStore.toSeconds(newEvent.getStartDateTime());
+        long newEnd = EventStore.toSeconds(newEvent.getEndDateTime());
+        if (newEnd < newStart) {
+            long tmp = newStart;
+            newStart = newEnd;
+            newEnd = tmp;
+        }
+
+        Mapping m = open();
+        if (m == null) return false;
+
+        try (m) {
+            for (long i = 0; i < m.count; i++) {
+                long rec = HEADER_SIZE + i * RECORD_SIZE;
+
+                // Skip comparing the same event (important during updates)
+                if (m.records.get(INT, rec + OFF_ID) == newEvent.getEventId()) continue;
+
+                long start = m.records.get(LONG, rec + OFF_START);
+                long end = m.records.get(LONG, rec + OFF_END);
+                if (end < start) {
+                    long tmp = start;
+                    start = end;
+                    end = tmp;
+                }
+
+                if (newStart < end && newEnd > start) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // ===================== MAPPING =====================
+
+    /*
+     * Mapping
+     * -------
+     * The two mapped segments of one query, released together.
+     */
+    private static class Mapping implements AutoCloseable {
+
+        final Arena arena;
+        final MemorySegment records;
+        final MemorySegment strings;
+        final long count;
+
+        Mapping(Arena arena, MemorySegment records, MemorySegment strings) {
+            this.arena = arena;
+            this.records = records;
+            this.strings = strings;
+            this.count = records.get(LONG, 8);
+        }
+
+        /*
+         * Materializes the record at the given byte offset.
+         */
+        Event eventAt(long rec) {
+            return new Event(
+                    records.get(INT, rec + OFF_ID),
+                    string(records.get(LONG, rec + OFF_TITLE), records.get(INT, rec + OFF_TITLE_LEN)),
+                    string(records.get(LONG, rec + OFF_DESC), records.get(INT, rec + OFF_DESC_LEN)),
+                    EventStore.toDateTime(records.get(LONG, rec + OFF_START)),
+                    EventStore.toDateTime(records.get(LONG, rec + OFF_END)));
+        }
+
+        private String string(long offset, int length) {
+            byte[] bytes = new byte[length];
+            MemorySegment.copy(strings, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            arena.close();
+        }
+    }
+
+    /*
+     * Maps the segment files, rebuilding them first if event.csv changed.
+     * Returns null if there is no event.csv (no events). Throws
+     * UncheckedIOException if the files cannot be built or mapped, so the
+     * caller answers from the CSV instead.
+     */
+    private static Mapping open() {
+
+        File csv = new File(CSV_FILE);
+        if (!csv.exists()) return null;
+
+        try {
+            if (isStale(csv)) {
+                DataLock.lock();
+                try {
+                    // Another thread or process may have rebuilt it meanwhile
+                    if (isStale(csv)) rebuild(csv);
+                } finally {
+                    DataLock.unlock();
+                }
+            }
+
+            Arena arena = Arena.ofConfined();
+            try (FileChannel rc = FileChannel.open(Path.of(SEGMENT_FILE), StandardOpenOption.READ);
+                 FileChannel sc = FileChannel.open(Path.of(STRING_FILE), StandardOpenOption.READ)) {
+
+                MemorySegment records = rc.map(FileChannel.MapMode.READ_ONLY, 0, rc.size(), arena);
+                MemorySegment strings = sc.size() == 0
+                        ? arena.allocate(1)
+                        : sc.map(FileChannel.MapMode.READ_ONLY, 0, sc.size(), arena);
+
+                return new Mapping(arena, records, strings);
+
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+
+        } catch (IOException e) {
+            System.out.println("Error opening event segment: " + e.getMessage() + "; using event.csv.");
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            System.out.println("Error opening event segment: " + e + "; using event.csv.");
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
+    /*
+     * Returns true if the segment header does not describe the current CSV.
+     */
+    private static boolean isStale(File csv) throws IOException {
+
+        Path seg = Path.of(SEGMENT_FILE);
+        if (!Files.exists(seg) || !Files.exists(Path.of(STRING_FILE))
+                || Files.size(seg) < HEADER_SIZE) {
+            return true;
+        }
+
+        try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate((int) HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(header, 0);
+            header.flip();
+
+            return header.getInt(0) != MAGIC
+                    || header.getInt(4) != VERSION
+                    || header.getLong(16) != csv.length()
+                    || header.getLong(24) != csv.lastModified()
+                    || header.getLong(32) != DataLock.version(DataLock.Table.EVENTS);
+        }
+    }
+
+    /*
+     * Streams event.csv into fresh segment files (written to temp files
+     * and moved into place so readers never see a half-built segment).
+     * Called with the DataLock held, so the CSV and its version match.
+     */
+    private static void rebuild(File csv) throws IOException {
+
+        Path segTmp = Path.of(SEGMENT_FILE + ".tmp");
+        Path strTmp = Path.of(STRING_FILE + ".tmp");
+
+        long csvLength = csv.length();
+        long csvModified = csv.lastModified();
+        long csvVersion = DataLock.version(DataLock.Table.EVENTS);
+        long count = 0;
+        long stringOffset = 0;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(csv));
+             FileChannel records = FileChannel.open(segTmp,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel strings = FileChannel.open(strTmp,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer recBuf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer strBuf = ByteBuffer.allocate(1 << 16);
+
+            // Reserve the header; it is written once the count is known
+            records.position(HEADER_SIZE);
+
+            br.readLine(); // skip header
+            String line;
+
+            while ((line = br.readLine()) != null) {
+
+                if (line.trim().isEmpty()) continue;
+
+                String[] parts = line.split(",");
+                byte[] title = parts[1].getBytes(StandardCharsets.UTF_8);
+                byte[] desc = parts[2].getBytes(StandardCharsets.UTF_8);
+
+                if (recBuf.remaining() < RECORD_SIZE) {
+                    drain(recBuf, records);
+                }
+
+                recBuf.putInt(Integer.parseInt(parts[0]));
+                recBuf.putInt(title.length);
+                recBuf.putLong(EventStore.toSeconds(LocalDateTime.parse(parts[3])));
+                recBuf.putLong(EventStore.toSeconds(LocalDateTime.parse(parts[4])));
+                recBuf.putLong(stringOffset);
+                recBuf.putLong(stringOffset + title.length);
+                recBuf.putInt(desc.length);
+                recBuf.putInt(0); // padding
+
+                stringOffset = appendBytes(strBuf, strings, title, stringOffset);
+                stringOffset = appendBytes(strBuf, strings, desc, stringOffset);
+                count++;
+            }
+
+            drain(recBuf, records);
+            drain(strBuf, strings);
+
+            ByteBuffer header = ByteBuffer.allocate((int) HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(csvLength).putLong(csvModified)
+                    .putLong(csvVersion);
+            header.flip();
+            records.write(header, 0);
+        }
+
+        Files.move(strTmp, Path.of(STRING_FILE), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(segTmp, Path.of(SEGMENT_FILE), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * Buffers bytes for the string file, returning the new end offset.
+     */
+    private static long appendBytes(ByteBuffer buf, FileChannel ch, byte[] bytes, long offset) throws IOException {
+
+        if (buf.remaining() < bytes.length) {
+            drain(buf, ch);
+        }
+
+        if (bytes.length > buf.capacity()) {
+            ch.write(ByteBuffer.wrap(bytes));
+        } else {
+            buf.put(bytes);
+        }
+
+        return offset + bytes.length;
+    }
+
+    /*
+     * Writes out and clears a buffer.
+     */
+    private static void drain(ByteBuffer buf, FileChannel ch) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+}
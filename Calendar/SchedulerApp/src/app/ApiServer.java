@@ -0,0 +1,515 @@
+package app;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.service.CalendarRepository;
+import app.service.CalendarRepository.Details;
+import app.service.CalendarRepository.Page;
+import app.service.CalendarRepository.WriteResult;
+import app.service.Query;
+import app.service.RecurrenceExpander;
+import app.service.ReminderService;
+import app.util.Json;
+import app.util.UnitOfWork;
+import app.util.WriteBehind;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * ApiServer
+ * ---------
+ * Serves the calendar over HTTP with JSON bodies ("--serve [port]").
+ *
+ * Every request runs on its own virtual thread, against one
+ * CalendarRepository loaded at start-up, so reads never touch the data
+ * files and writes go through the repository's UnitOfWork commits.
+ * Reads run in parallel; writes are serialized by the repository.
+ * Changes made by other instances (the menu, --batch) are picked up by
+ * refreshing the repository once a second.
+ *
+ * Endpoints:
+ *   GET    /events?from=&to=&offset=&limit=   events by start date
+ *   POST   /events                            add (201, returns the event)
+ *   GET    /events/{id}                       one event with its extras
+ *   PUT    /events/{id}                       update the given fields
+ *   DELETE /events/{id}
+ *   PUT    /events/{id}/reminder              {"minutes": n}
+ *   DELETE /events/{id}/reminder
+ *   PUT    /events/{id}/recurrence            {"interval": "1w", "times": n | "until": date}
+ *   DELETE /events/{id}/recurrence
+ *   GET    /search?q=&offset=&limit=          Query.parse syntax
+ *   GET    /view?from=&to=                    occurrences incl. recurring
+ *   GET    /reminders/next
+ *
+ * Dates are yyyy-MM-dd and date-times yyyy-MM-ddTHH:mm. Errors come back
+ * as {"error": "..."} with 400 / 404 / 405 / 409 / 500. Text fields may
+ * not contain commas or line breaks (400), since they are stored in CSV.
+ *
+ * The endpoints are unauthenticated, so the server listens on the
+ * loopback address only. Exposing it further is opt-in, e.g.
+ * -Dscheduler.serve.bind=0.0.0.0.
+ *
+ * This class does NOT handle file input/output directly.
+ */
+public class ApiServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+    private static final long REFRESH_SECONDS = 1;
+
+    // Address to listen on (default: loopback only)
+    private static final String BIND = System.getProperty("scheduler.serve.bind");
+
+    private final CalendarRepository repo;
+
+    private ApiServer(CalendarRepository repo) {
+        this.repo = repo;
+    }
+
+    /*
+     * Entry point for "--serve [port]". Returns once the server is
+     * listening; it runs until the process is stopped.
+     */
+    public static void run(String[] args) {
+
+        int port = DEFAULT_PORT;
+        if (args.length > 1) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("--serve expects a port number.");
+                return;
+            }
+        }
+
+        CalendarRepository repo = CalendarRepository.load();
+        ApiServer api = new ApiServer(repo);
+
+        HttpServer server;
+        try {
+            InetAddress address = BIND == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(BIND);
+            server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        } catch (IOException e) {
+            System.out.println("Cannot listen on port " + port + ": " + e.getMessage());
+            return;
+        }
+
+        server.createContext("/", api::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "repository-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(repo::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+
+        // Barrier on Ctrl+C: everything committed must be on disk before exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            WriteBehind.flush();
+        }));
+
+        InetSocketAddress bound = server.getAddress();
+        System.out.println("Serving " + repo.size() + " event(s) on http://"
+                + bound.getAddress().getHostAddress() + ":" + bound.getPort() + "/ (Ctrl+C to stop)");
+    }
+
+    // ===================== ROUTING =====================
+
+    private void handle(HttpExchange ex) throws IOException {
+
+        try {
+            String method = ex.getRequestMethod();
+            String[] path = ex.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+            Map<String, String> params = params(ex.getRequestURI().getRawQuery());
+
+            switch (path[0]) {
+                case "events" -> events(ex, method, path, params);
+                case "search" -> {
+                    if (path.length != 1) notFound(ex);
+                    else if (!method.equals("GET")) notAllowed(ex);
+                    else page(ex, repo.search(Query.parse(required(params, "q")), offset(params), limit(params)));
+                }
+                case "view" -> {
+                    if (path.length != 1) notFound(ex);
+                    else if (!method.equals("GET")) notAllowed(ex);
+                    else view(ex, params);
+                }
+                case "reminders" -> {
+                    if (path.length != 2 || !path[1].equals("next")) notFound(ex);
+                    else if (!method.equals("GET")) notAllowed(ex);
+                    else nextReminder(ex);
+                }
+                default -> notFound(ex);
+            }
+
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            System.out.println("Error handling " + ex.getRequestMethod() + " " + ex.getRequestURI() + ":");
+            e.printStackTrace();
+            send(ex, 500, error("Internal error."));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void events(HttpExchange ex, String method, String[] path, Map<String, String> params)
+            throws IOException {
+
+        if (path.length == 1) {
+            switch (method) {
+                case "GET" -> page(ex, repo.search(Query.between(date(params.get("from")), date(params.get("to"))),
+                        offset(params), limit(params)));
+                case "POST" -> add(ex, body(ex));
+                default -> notAllowed(ex);
+            }
+            return;
+        }
+
+        int id = id(path[1]);
+
+        if (path.length == 2) {
+            switch (method) {
+                case "GET" -> {
+                    Details d = repo.details(id);
+                    if (d == null) notFound(ex);
+                    else send(ex, 200, details(d));
+                }
+                case "PUT" -> update(ex, id, body(ex));
+                case "DELETE" -> written(ex, repo.delete(id), 200);
+                default -> notAllowed(ex);
+            }
+            return;
+        }
+
+        if (path.length == 3 && path[2].equals("reminder")) {
+            switch (method) {
+                case "PUT" -> {
+                    // Only DELETE removes the reminder; a PUT must say how long before
+                    Object minutes = body(ex).get("minutes");
+                    if (minutes == null) throw new IllegalArgumentException("minutes: required");
+                    written(ex, repo.setReminder(id, minutes(minutes)), 200);
+                }
+                case "DELETE" -> written(ex, repo.setReminder(id, null), 200);
+                default -> notAllowed(ex);
+            }
+            return;
+        }
+
+        if (path.length == 3 && path[2].equals("recurrence")) {
+            switch (method) {
+                case "PUT" -> written(ex, repo.setRule(id, rule(body(ex))), 200);
+                case "DELETE" -> written(ex, repo.setRule(id, null), 200);
+                default -> notAllowed(ex);
+            }
+            return;
+        }
+
+        notFound(ex);
+    }
+
+    // ===================== HANDLERS =====================
+
+    private void add(HttpExchange ex, Map<String, Object> body) throws IOException {
+
+        Event draft = new Event(-1, storable("title", required(body, "title")), text(body, "description", ""),
+                dateTime(required(body, "start")), dateTime(required(body, "end")));
+
+        Object recurrence = body.get("recurrence");
+        RecurringEvent rule = recurrence == null ? null : rule(object(recurrence, "recurrence"));
+
+        WriteResult result = repo.add(draft, text(body, "location", ""), text(body, "category", ""),
+                minutes(body.get("reminderMinutes")), rule);
+        written(ex, result, 201);
+    }
+
+    private void update(HttpExchange ex, int id, Map<String, Object> body) throws IOException {
+
+        // Parse everything first; the change itself runs on the current version
+        String title = text(body, "title", null);
+        String description = text(body, "description", null);
+        LocalDateTime start = body.containsKey("start") ? dateTime(required(body, "start")) : null;
+        LocalDateTime end = body.containsKey("end") ? dateTime(required(body, "end")) : null;
+
+        WriteResult result = repo.update(id, old -> new Event(id,
+                        title != null ? title : old.getTitle(),
+                        description != null ? description : old.getDescription(),
+                        start != null ? start : old.getStartDateTime(),
+                        end != null ? end : old.getEndDateTime()),
+                text(body, "location", null), text(body, "category", null));
+        written(ex, result, 200);
+    }
+
+    private void view(HttpExchange ex, Map<String, String> params) throws IOException {
+
+        LocalDate from = date(required(params, "from"));
+        LocalDate to = params.containsKey("to") ? date(params.get("to")) : from;
+        if (to.isBefore(from)) throw new IllegalArgumentException("to: must not be before from");
+
+        List<Event> events = repo.occurrences(from, to);
+        StringBuilder sb = new StringBuilder("{\"total\":").append(events.size()).append(",\"events\":[");
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) sb.append(',');
+            event(sb, events.get(i));
+        }
+        send(ex, 200, sb.append("]}").toString());
+    }
+
+    private void nextReminder(HttpExchange ex) throws IOException {
+
+        Optional<ReminderService.NextReminderInfo> next = repo.nextReminder(LocalDateTime.now());
+        if (next.isEmpty()) {
+            send(ex, 200, "{\"next\":null}");
+            return;
+        }
+
+        ReminderService.NextReminderInfo info = next.get();
+        StringBuilder sb = new StringBuilder("{\"next\":{\"event\":");
+        event(sb, info.event);
+        sb.append(",\"occurrenceStart\":").append(Json.quote(info.occurrenceStart.toString()))
+                .append(",\"notifyAt\":").append(Json.quote(info.notifyAt.toString()))
+                .append("}}");
+        send(ex, 200, sb.toString());
+    }
+
+    /*
+     * Maps a repository write onto a response: the written event on
+     * success, otherwise an error with the matching status.
+     */
+    private void written(HttpExchange ex, WriteResult result, int okStatus) throws IOException {
+
+        switch (result.status) {
+            case OK -> {
+                Details d = repo.details(result.eventId);
+                if (d == null) send(ex, okStatus, "{\"id\":" + result.eventId + "}");
+                else send(ex, okStatus, details(d));
+            }
+            case INVALID -> send(ex, 400, error("Start must be before end (or value out of range)."));
+            case NOT_FOUND -> notFound(ex);
+            case CONFLICT -> send(ex, 409, error("Time conflict with an existing event."));
+            case NOT_SAVED -> send(ex, 500, error("Change could not be saved."));
+        }
+    }
+
+    // ===================== JSON OUTPUT =====================
+
+    private void page(HttpExchange ex, Page page) throws IOException {
+
+        StringBuilder sb = new StringBuilder("{\"total\":").append(page.total).append(",\"events\":[");
+        for (int i = 0; i < page.events.size(); i++) {
+            if (i > 0) sb.append(',');
+            event(sb, page.events.get(i));
+        }
+        send(ex, 200, sb.append("]}").toString());
+    }
+
+    private static void event(StringBuilder sb, Event e) {
+        sb.append("{\"id\":").append(e.getEventId())
+                .append(",\"title\":").append(Json.quote(e.getTitle()))
+                .append(",\"description\":").append(Json.quote(e.getDescription()))
+                .append(",\"start\":").append(Json.quote(e.getStartDateTime().toString()))
+                .append(",\"end\":").append(Json.quote(e.getEndDateTime().toString()))
+                .append('}');
+    }
+
+    private static String details(Details d) {
+
+        StringBuilder sb = new StringBuilder();
+        event(sb, d.event);
+        sb.setLength(sb.length() - 1);
+
+        AdditionalEventFields a = d.additional;
+        sb.append(",\"location\":").append(Json.quote(a == null ? "" : a.getLocation()))
+                .append(",\"category\":").append(Json.quote(a == null ? "" : a.getCategory()))
+                .append(",\"reminderMinutes\":").append(d.reminder == null ? "null" : d.reminder.getMinutesBefore())
+                .append(",\"recurrence\":");
+
+        RecurringEvent r = d.rule;
+        if (r == null) {
+            sb.append("null");
+        } else {
+            sb.append("{\"interval\":").append(Json.quote(r.getInterval()));
+            if (r.getRecurrentEndDate() != null) {
+                sb.append(",\"until\":").append(Json.quote(r.getRecurrentEndDate().toString()));
+            } else {
+                sb.append(",\"times\":").append(r.getRecurrentTimes());
+            }
+            sb.append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void notFound(HttpExchange ex) throws IOException {
+        send(ex, 404, error("Not found."));
+    }
+
+    private static void notAllowed(HttpExchange ex) throws IOException {
+        send(ex, 405, error("Method not allowed."));
+    }
+
+    // ===================== REQUEST PARSING =====================
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(HttpExchange ex) throws IOException {
+        String text = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (!(Json.parse(text) instanceof Map<?, ?> map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object.");
+        }
+        return (Map<String, Object>) map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value, String key) {
+        if (!(value instanceof Map<?, ?> map)) throw new IllegalArgumentException(key + ": expects an object");
+        return (Map<String, Object>) map;
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    /*
+     * The rule in a recurrence object: interval plus exactly one of
+     * times / until.
+     */
+    private static RecurringEvent rule(Map<String, Object> body) {
+
+        String interval = required(body, "interval");
+        if (RecurrenceExpander.parseInterval(interval) == null) {
+            throw new IllegalArgumentException("interval: expects 1d / 1w / 1m / 1y");
+        }
+
+        if (body.containsKey("times") == body.containsKey("until")) {
+            throw new IllegalArgumentException("recurrence: needs exactly one of times or until");
+        }
+        if (body.containsKey("times")) {
+            if (!(body.get("times") instanceof Long times) || times < 1 || times > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("times: expects a positive number");
+            }
+            return new RecurringEvent(-1, interval, times.intValue(), null);
+        }
+        return new RecurringEvent(-1, interval, 0, date(required(body, "until")));
+    }
+
+    private static Integer minutes(Object value) {
+        if (value == null) return null;
+        if (!(value instanceof Long m) || m < 0 || m > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("minutes: expects a non-negative number");
+        }
+        return m.intValue();
+    }
+
+    private static String required(Map<String, ?> map, String key) {
+        Object value = map.get(key);
+        if (!(value instanceof String s) || s.isEmpty()) {
+            throw new IllegalArgumentException(key + ": required");
+        }
+        return s;
+    }
+
+    private static String text(Map<String, Object> body, String key, String fallback) {
+        Object value = body.get(key);
+        if (value == null) return fallback;
+        if (!(value instanceof String s)) throw new IllegalArgumentException(key + ": expects a string");
+        return storable(key, s);
+    }
+
+    private static String storable(String key, String text) {
+        if (!UnitOfWork.isStorable(text)) {
+            throw new IllegalArgumentException(key + ": may not contain commas or line breaks");
+        }
+        return text;
+    }
+
+    private static int offset(Map<String, String> params) {
+        return number(params, "offset", 0, Integer.MAX_VALUE, 0);
+    }
+
+    private static int limit(Map<String, String> params) {
+        return number(params, "limit", 0, MAX_LIMIT, DEFAULT_LIMIT);
+    }
+
+    private static int number(Map<String, String> params, String key, int min, int max, int fallback) {
+        if (!params.containsKey(key)) return fallback;
+        try {
+            int n = Integer.parseInt(params.get(key));
+            if (n < min || n > max) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": expects a number from " + min + " to " + max);
+        }
+    }
+
+    private static int id(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected an event ID, got: " + text);
+        }
+    }
+
+    private static LocalDateTime dateTime(String text) {
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("expected yyyy-MM-ddTHH:mm, got: " + text);
+        }
+    }
+
+    // null stays null (an open end of a range)
+    private static LocalDate date(String text) {
+        if (text == null) return null;
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("expected yyyy-MM-dd, got: " + text);
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package app;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+import app.service.Query;
+import app.service.QueryEngine;
+import app.service.RecurrenceExpander;
+import app.util.AdditionalFileHandler;
+import app.util.DataLock;
+import app.util.EventFileHandler;
+import app.util.EventStore;
+import app.util.IdSequence;
+import app.util.IntervalIndex;
+import app.util.RecurringFileHandler;
+import app.util.ReminderFileHandler;
+import app.util.UnitOfWork;
+import app.util.WriteBehind;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * BatchRunner
+ * -----------
+ * Non-interactive front end: runs commands from a file or stdin,
+ * one per line.
+ *
+ *     java app.Main --batch commands.txt [--commit-every N]
+ *     java app.Main --batch - < commands.txt
+ *
+ * Commands (values with spaces in double quotes):
+ *
+ *     add title=<text> start=<yyyy-MM-ddTHH:mm> end=<...> [desc=<text>]
+ *         [location=<text>] [category=<text>] [reminder=<minutes>]
+ *         [repeat=<1d|1w|1m|1y> times=<n> | until=<yyyy-MM-dd>]
+ *     update <id> [any add field]  (reminder=none / repeat=none remove them)
+ *     delete <id>
+ *     search <query>               (same syntax as the menu's combined search)
+ *     view <yyyy-MM-dd> [<yyyy-MM-dd>]  (including recurring occurrences)
+ *     commit
+ *
+ * Lines that are blank or start with '#' are ignored.
+ *
+ * The calendar is loaded once. Commands work on that copy and stage
+ * their changes in a UnitOfWork, so the data files are rewritten once
+ * per commit instead of once per command: at the end of the batch,
+ * after every N changing commands with --commit-every, and at an
+ * explicit "commit". search and view see the staged changes.
+ *
+ * New IDs are reserved from the sequence in blocks; the unused tail of
+ * the last block is given back when the batch ends.
+ *
+ * Other instances may write data/ while a batch runs:
+ * - Each command runs under the DataLock. If the version counters show
+ *   that another instance wrote since the working copy was loaded, the
+ *   copy is reloaded first, so checks never run against stale data.
+ * - While changes are staged the lock stays held, until the commit, so
+ *   nothing can invalidate them. Other instances wait for the batch's
+ *   next commit; use --commit-every to let them in more often.
+ *
+ * Conflict checks use an IntervalIndex of the calendar as loaded, plus
+ * small sorted sets of the intervals added and removed since, so each
+ * check stays O(log n) however long the batch. A command that fails
+ * (bad input, unknown ID, time conflict) is reported with its line
+ * number and skipped; the rest of the batch still runs.
+ */
+public class BatchRunner {
+
+    // Event IDs reserved from the sequence at a time
+    private static final int ID_BLOCK = 1024;
+
+    // Working copy of the calendar
+    private EventStore store;
+    private Map<Integer, AdditionalEventFields> additional;
+    private Map<Integer, Reminder> reminders;
+    private Map<Integer, RecurringEvent> rules;
+
+    // DataLock versions the working copy matches
+    private long[] versions;
+
+    // Whether this batch holds the DataLock (see begin())
+    private boolean locked;
+
+    // Conflict checks: loaded intervals, minus removed ones, plus added ones
+    private IntervalIndex loaded;
+    private IntervalSet removed;
+    private IntervalSet added;
+
+    // Position in the store by event ID (-1 = none). Deleted events stay
+    // in the store as tombstones, so positions never shift.
+    private int[] positions;
+
+    // Events present when the working copy was loaded, and those whose
+    // loaded interval has since moved to "removed"
+    private int loadedCount;
+    private BitSet movedOut;
+
+    // Query engine over the working copy (rebuilt after changes)
+    private QueryEngine engine;
+
+    // Changes staged since the last commit
+    private UnitOfWork uow = new UnitOfWork();
+    private int staged;
+    private final int commitEvery;
+
+    // Reserved IDs not handed out yet: [nextId, lastId]
+    private int nextId;
+    private int lastId = -1;
+
+    private int adds, updates, deletes, failures, commits;
+
+    private BatchRunner(int commitEvery) {
+        this.commitEvery = commitEvery;
+        load();
+    }
+
+    /*
+     * (Re)loads the working copy from the data files. Nothing may be
+     * staged.
+     */
+    private void load() {
+
+        // Counters first: a change racing the load is picked up before the next command
+        versions = DataLock.versions();
+
+        store = EventFileHandler.readStore();
+        additional = new LinkedHashMap<>();
+        reminders = new LinkedHashMap<>();
+        rules = new LinkedHashMap<>();
+        for (AdditionalEventFields a : AdditionalFileHandler.readAdditional()) additional.put(a.getEventId(), a);
+        for (Reminder r : ReminderFileHandler.readReminders()) reminders.put(r.getEventId(), r);
+        for (RecurringEvent r : RecurringFileHandler.readRecurringEvents()) rules.put(r.getEventId(), r);
+
+        loaded = new IntervalIndex();
+        removed = new IntervalSet();
+        added = new IntervalSet();
+        positions = new int[0];
+        movedOut = new BitSet();
+        engine = null;
+
+        loadedCount = store.size();
+        for (int i = 0; i < loadedCount; i++) {
+            long s = store.startSecondsAt(i), e = store.endSecondsAt(i);
+            loaded.addUnsorted(Math.min(s, e), Math.max(s, e));
+            setPosition(store.idAt(i), i);
+        }
+        loaded.sort();
+    }
+
+    /*
+     * Takes the DataLock for the next command, unless it is still held
+     * for staged changes, and reloads the working copy if another
+     * instance has written since it was loaded.
+     */
+    private void begin() {
+
+        if (locked) return;
+        DataLock.lock();
+        locked = true;
+
+        if (!Arrays.equals(DataLock.versions(), versions)) load();
+    }
+
+    /*
+     * Lets other instances in again. Only called with nothing staged.
+     */
+    private void end() {
+        if (!locked) return;
+        locked = false;
+        DataLock.unlock();
+    }
+
+    /*
+     * Entry point for "--batch <file|-> [--commit-every N]".
+     */
+    public static void run(String[] args) {
+
+        String source = args.length > 1 ? args[1] : "-";
+        int commitEvery = 0;
+
+        if (args.length > 3 && args[2].equals("--commit-every")) {
+            try {
+                commitEvery = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                System.out.println("--commit-every expects a number.");
+                return;
+            }
+        }
+
+        try (BufferedReader br = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : new BufferedReader(new FileReader(source, StandardCharsets.UTF_8))) {
+
+            new BatchRunner(commitEvery).execute(br);
+
+        } catch (IOException e) {
+            System.out.println("Cannot read batch file " + source + ".");
+        }
+    }
+
+    private void execute(BufferedReader br) throws IOException {
+        try {
+            runAll(br);
+        } finally {
+            end();
+            if (nextId <= lastId) IdSequence.release(nextId, lastId);
+        }
+    }
+
+    private void runAll(BufferedReader br) throws IOException {
+
+        String line;
+        int lineNo = 0;
+
+        while ((line = br.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            begin();
+            try {
+                runCommand(line);
+            } catch (IllegalArgumentException e) {
+                failures++;
+                System.out.println("line " + lineNo + ": " + e.getMessage());
+            }
+
+            if (commitEvery > 0 && staged >= commitEvery && !commit()) return;
+            if (staged == 0) end();
+        }
+
+        if (!commit()) return;
+        WriteBehind.flush();
+
+        System.out.println("Batch done: " + adds + " added, " + updates + " updated, " + deletes
+                + " deleted, " + failures + " failed, " + commits + " commit(s).");
+    }
+
+    private void runCommand(String line) {
+
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+        String rest = space < 0 ? "" : line.substring(space + 1).trim();
+
+        switch (command) {
+            case "add" -> add(fields(rest));
+            case "update" -> {
+                int split = rest.indexOf(' ');
+                update(parseId(split < 0 ? rest : rest.substring(0, split)),
+                        fields(split < 0 ? "" : rest.substring(split + 1)));
+            }
+            case "delete" -> delete(parseId(rest));
+            case "search" -> search(Query.parse(rest));
+            case "view" -> view(rest);
+            case "commit" -> commit();
+            default -> throw new IllegalArgumentException("unknown command: " + command);
+        }
+    }
+
+    // ===================== COMMANDS =====================
+
+    private void add(Map<String, String> f) {
+
+        String title = f.getOrDefault("title", "");
+        if (title.isBlank()) throw new IllegalArgumentException("add: title= is required");
+        if (!f.containsKey("start") || !f.containsKey("end")) {
+            throw new IllegalArgumentException("add: start= and end= are required");
+        }
+
+        LocalDateTime start = parseDateTime(f.get("start"));
+        LocalDateTime end = parseDateTime(f.get("end"));
+        checkTimes(start, end, -1);
+
+        RecurringEvent rule = parseRule(f, -1);
+        Integer minutes = parseReminder(f);
+
+        int id = allocateId();
+        Event e = new Event(id, title, f.getOrDefault("desc", ""), start, end);
+
+        putEvent(e);
+        setAdditional(id, f.getOrDefault("location", ""), f.getOrDefault("category", ""));
+        if (minutes != null) setReminder(id, minutes);
+        if (rule != null) setRule(new RecurringEvent(id, rule.getInterval(), rule.getRecurrentTimes(),
+                rule.getRecurrentEndDate()));
+
+        adds++;
+        changed();
+        System.out.println("added " + id);
+    }
+
+    private void update(int id, Map<String, String> f) {
+
+        int index = position(id);
+        if (index < 0) throw new IllegalArgumentException("update: no event " + id);
+        Event old = store.eventAt(index);
+
+        LocalDateTime start = f.containsKey("start") ? parseDateTime(f.get("start")) : old.getStartDateTime();
+        LocalDateTime end = f.containsKey("end") ? parseDateTime(f.get("end")) : old.getEndDateTime();
+        checkTimes(start, end, id);
+
+        RecurringEvent rule = parseRule(f, id);
+        Integer minutes = f.containsKey("reminder") && f.get("reminder").equalsIgnoreCase("none")
+                ? null : parseReminder(f);
+
+        putEvent(new Event(id, f.getOrDefault("title", old.getTitle()),
+                f.getOrDefault("desc", old.getDescription()), start, end));
+
+        if (f.containsKey("location") || f.containsKey("category")) {
+            AdditionalEventFields a = additional.get(id);
+            setAdditional(id,
+                    f.getOrDefault("location", a == null ? "" : a.getLocation()),
+                    f.getOrDefault("category", a == null ? "" : a.getCategory()));
+        }
+
+        if (f.containsKey("reminder")) {
+            if (minutes == null) {
+                if (reminders.remove(id) != null) uow.deleteReminder(id);
+            } else {
+                setReminder(id, minutes);
+            }
+        }
+
+        if (f.containsKey("repeat")) {
+            if (rule == null) {
+                if (rules.remove(id) != null) uow.deleteRecurring(id);
+            } else {
+                setRule(rule);
+            }
+        }
+
+        updates++;
+        changed();
+        System.out.println("updated " + id);
+    }
+
+    private void delete(int id) {
+
+        int index = position(id);
+        if (index < 0) throw new IllegalArgumentException("delete: no event " + id);
+
+        removeInterval(index);
+        setPosition(id, -1);
+        uow.deleteEvent(id);
+
+        if (additional.remove(id) != null) uow.deleteAdditional(id);
+        if (reminders.remove(id) != null) uow.deleteReminder(id);
+        if (rules.remove(id) != null) uow.deleteRecurring(id);
+
+        deletes++;
+        changed();
+        System.out.println("deleted " + id);
+    }
+
+    private void search(Query query) {
+        print(engine().run(query).filter(this::live).toList());
+    }
+
+    private void view(String rest) {
+
+        String[] parts = rest.trim().split("\\s+");
+        if (rest.isBlank() || parts.length > 2) {
+            throw new IllegalArgumentException("view: expects <yyyy-MM-dd> [<yyyy-MM-dd>]");
+        }
+
+        LocalDate from = parseDate(parts[0]);
+        LocalDate to = parts.length > 1 ? parseDate(parts[1]) : from;
+
+        List<Event> events = new ArrayList<>(engine().run(Query.between(from, to)).filter(this::live).toList());
+        for (Map.Entry<Integer, RecurringEvent> rule : rules.entrySet()) {
+            int index = position(rule.getKey());
+            if (index >= 0) {
+                RecurrenceExpander.forEachOccurrence(store.eventAt(index), rule.getValue(), from, to, events::add);
+            }
+        }
+        events.sort(Comparator.comparing(Event::getStartDateTime));
+        print(events);
+    }
+
+    /*
+     * Commits the staged changes. Returns false (and stops the batch) if
+     * they could not be saved, since the working copy no longer matches
+     * the files.
+     */
+    private boolean commit() {
+
+        if (uow.isEmpty()) return true;
+
+        if (!uow.commit()) {
+            System.out.println("Batch stopped: the last " + staged + " change(s) were not saved.");
+            return false;
+        }
+
+        // The lock has been held since the copy was loaded, so the counters
+        // moved for this commit only (with write-behind, at the flush)
+        WriteBehind.flush();
+        versions = DataLock.versions();
+
+        uow = new UnitOfWork();
+        staged = 0;
+        commits++;
+        return true;
+    }
+
+    // ===================== WORKING COPY =====================
+
+    /*
+     * Adds or replaces an event in the working copy and stages it.
+     * The caller has already checked it for conflicts.
+     */
+    private void putEvent(Event e) {
+
+        int index = position(e.getEventId());
+        if (index >= 0) {
+            removeInterval(index);
+            store.set(index, e);
+        } else {
+            store.add(e);
+            setPosition(e.getEventId(), store.size() - 1);
+        }
+
+        added.add(IntervalIndex.key(e.getStartDateTime()), IntervalIndex.key(e.getEndDateTime()));
+        uow.putEvent(e);
+    }
+
+    private void setAdditional(int id, String location, String category) {
+        AdditionalEventFields a = new AdditionalEventFields(id, location, category);
+        additional.put(id, a);
+        uow.putAdditional(a);
+    }
+
+    private void setReminder(int id, int minutes) {
+        Reminder r = new Reminder(id, minutes);
+        reminders.put(id, r);
+        uow.putReminder(r);
+    }
+
+    private void setRule(RecurringEvent rule) {
+        rules.put(rule.getEventId(), rule);
+        uow.putRecurring(rule);
+    }
+
+    /*
+     * Takes an event's current interval out of the conflict checks.
+     */
+    private void removeInterval(int index) {
+
+        long s = store.startSecondsAt(index), e = store.endSecondsAt(index);
+        if (index < loadedCount && !movedOut.get(index)) {
+            removed.add(s, e);
+            movedOut.set(index);
+        } else {
+            added.remove(s, e);
+        }
+    }
+
+    private int position(int id) {
+        return id >= 0 && id < positions.length ? positions[id] : -1;
+    }
+
+    private void setPosition(int id, int index) {
+        if (id < 0) return;
+        if (id >= positions.length) {
+            int old = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(id + 1, old * 2));
+            Arrays.fill(positions, old, positions.length, -1);
+        }
+        positions[id] = index;
+    }
+
+    /*
+     * False for the tombstones of events deleted in this batch.
+     */
+    private boolean live(Event e) {
+        return position(e.getEventId()) >= 0;
+    }
+
+    private void changed() {
+        engine = null;
+        staged++;
+    }
+
+    private QueryEngine engine() {
+        if (engine == null) {
+            engine = QueryEngine.of(store, new ArrayList<>(additional.values()),
+                    new ArrayList<>(reminders.values()), new ArrayList<>(rules.values()));
+        }
+        return engine;
+    }
+
+    private int allocateId() {
+        if (nextId > lastId) {
+            int first = IdSequence.reserve(ID_BLOCK);
+            if (first < 0) throw new IllegalArgumentException("could not allocate an event ID");
+            nextId = first;
+            lastId = first + ID_BLOCK - 1;
+        }
+        return nextId++;
+    }
+
+    // ===================== CHECKS =====================
+
+    /*
+     * Rejects an interval that is empty or overlaps another event
+     * (ignoring the event being updated, whose interval is skipped).
+     */
+    private void checkTimes(LocalDateTime start, LocalDateTime end, int updatingId) {
+
+        if (!start.isBefore(end)) throw new IllegalArgumentException("start must be before end");
+
+        long s = IntervalIndex.key(start), e = IntervalIndex.key(end);
+        int overlapping = loaded.countStartsBefore(e) - loaded.countEndsAtOrBefore(s)
+                - removed.count(s, e) + added.count(s, e);
+
+        // The event being updated still counts once until it is replaced
+        if (updatingId >= 0) {
+            int index = position(updatingId);
+            long ss = store.startSecondsAt(index), se = store.endSecondsAt(index);
+            if (Math.min(ss, se) < e && Math.max(ss, se) > s) overlapping--;
+        }
+
+        if (overlapping > 0) throw new IllegalArgumentException("time conflict at " + start);
+    }
+
+    // ===================== PARSING =====================
+
+    /*
+     * Parses key=value fields; values with spaces are double-quoted.
+     * Text fields are checked here, so a value the CSV tables cannot
+     * store fails its own command instead of the whole commit.
+     */
+    private static Map<String, String> fields(String text) {
+
+        Map<String, String> f = new HashMap<>();
+        for (String token : tokenize(text)) {
+            int eq = token.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("expected key=value, got: " + token);
+
+            String key = token.substring(0, eq).toLowerCase();
+            String value = token.substring(eq + 1);
+            switch (key) {
+                case "title", "desc" -> f.put(key, storable(key, value));
+                case "location", "category" -> f.put(key, storable(key, value).trim());
+                case "start", "end", "reminder", "repeat", "times", "until" -> f.put(key, value);
+                default -> throw new IllegalArgumentException("unknown field: " + key);
+            }
+        }
+        return f;
+    }
+
+    private static String storable(String key, String value) {
+        if (!UnitOfWork.isStorable(value)) {
+            throw new IllegalArgumentException(key + ": may not contain commas or line breaks");
+        }
+        return value;
+    }
+
+    private static List<String> tokenize(String text) {
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (char c : text.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+
+        if (quoted) throw new IllegalArgumentException("unclosed quote");
+        if (current.length() > 0) tokens.add(current.toString());
+        return tokens;
+    }
+
+    /*
+     * The rule given by repeat= (with times= or until=), or null if there
+     * is none or repeat=none.
+     */
+    private static RecurringEvent parseRule(Map<String, String> f, int id) {
+
+        String interval = f.get("repeat");
+        if (interval == null || interval.equalsIgnoreCase("none")) return null;
+        if (RecurrenceExpander.parseInterval(interval) == null) {
+            throw new IllegalArgumentException("repeat: expects 1d / 1w / 1m / 1y");
+        }
+
+        if (f.containsKey("times") == f.containsKey("until")) {
+            throw new IllegalArgumentException("repeat: needs exactly one of times= or until=");
+        }
+        if (f.containsKey("times")) {
+            try {
+                return new RecurringEvent(id, interval, Integer.parseInt(f.get("times")), null);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("times: expects a number");
+            }
+        }
+        return new RecurringEvent(id, interval, 0, parseDate(f.get("until")));
+    }
+
+    private static Integer parseReminder(Map<String, String> f) {
+        if (!f.containsKey("reminder")) return null;
+        try {
+            int minutes = Integer.parseInt(f.get("reminder"));
+            if (minutes < 0) throw new NumberFormatException();
+            return minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("reminder: expects minutes (or none)");
+        }
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected an event ID, got: " + text);
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String text) {
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("expected yyyy-MM-ddTHH:mm, got: " + text);
+        }
+    }
+
+    private static LocalDate parseDate(String text) {
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("expected yyyy-MM-dd, got: " + text);
+        }
+    }
+
+    private static void print(List<Event> events) {
+        for (Event e : events) {
+            System.out.println(e.getEventId() + "\t" + e.getStartDateTime() + "\t"
+                    + e.getEndDateTime() + "\t" + e.getTitle());
+        }
+        System.out.println("(" + events.size() + " event(s))");
+    }
+
+    /*
+     * IntervalSet
+     * -----------
+     * A small multiset of intervals keyed by start. Overlap counts scan
+     * only the starts that can reach the query, bounded by the longest
+     * interval ever added.
+     */
+    private static class IntervalSet {
+
+        private final TreeMap<Long, List<Long>> endsByStart = new TreeMap<>();
+        private long longest;
+
+        void add(long start, long end) {
+            if (end < start) {
+                long tmp = start;
+                start = end;
+                end = tmp;
+            }
+            endsByStart.computeIfAbsent(start, k -> new ArrayList<>()).add(end);
+            longest = Math.max(longest, end - start);
+        }
+
+        void remove(long start, long end) {
+            if (end < start) {
+                long tmp = start;
+                start = end;
+                end = tmp;
+            }
+            List<Long> ends = endsByStart.get(start);
+            if (ends == null) return;
+            ends.remove(Long.valueOf(end));
+            if (ends.isEmpty()) endsByStart.remove(start);
+        }
+
+        /*
+         * Number of stored intervals overlapping [start, end).
+         */
+        int count(long start, long end) {
+            int n = 0;
+            for (Map.Entry<Long, List<Long>> entry
+                    : endsByStart.subMap(start - longest, true, end, false).entrySet()) {
+                for (long e : entry.getValue()) {
+                    if (e > start) n++;
+                }
+            }
+            return n;
+        }
+    }
+}
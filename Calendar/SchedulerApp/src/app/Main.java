@@ -19,26 +19,101 @@ package app;
 import app.model.Event;
 import app.model.RecurringEvent;
 import app.model.Reminder;
+import app.service.AvailabilityIndex;
+import app.service.EventCursor;
+import app.service.FreeSlotFinder;
+import app.service.OverlapReport;
+import app.service.Query;
+import app.service.QueryEngine;
 import app.service.ReminderService;
+import app.service.Rollups;
+import app.service.UtilizationReport;
+import app.util.BackupContainer;
 import app.util.BackupManager;
 import app.util.AdditionalFileHandler;
+import app.util.DataLock;
 import app.util.EventFileHandler;
+import app.util.EventStore;
+import app.util.IcsExporter;
+import app.util.IcsImporter;
+import app.util.IdSequence;
+import app.util.IncrementalBackup;
 import app.util.RecurringFileHandler;
 import app.util.ReminderFileHandler;
+import app.util.SnapshotStore;
+import app.util.UnitOfWork;
+import app.util.WriteBehind;
 import app.view.CalendarView;
 import app.model.AdditionalEventFields;
 
+import java.io.File;
+import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 public class Main {
 
     private static final Scanner sc = new Scanner(System.in);
 
+    // How far ahead addEvent looks for alternatives after a conflict
+    private static final int SLOT_SEARCH_DAYS = 14;
+
+    // Dense calendars: answer free-slot searches from per-minute day bitmaps
+    // (run with -Dscheduler.bitmap=true)
+    private static final boolean USE_AVAILABILITY_BITMAP = Boolean.getBoolean("scheduler.bitmap");
+
+    // Tables whose changes invalidate the rollups
+    private static final DataLock.Table[] ROLLUP_SOURCES =
+            { DataLock.Table.EVENTS, DataLock.Table.RECURRING, DataLock.Table.ADDITIONAL };
+
+    // Session rollups (built on first use) and the data stamp they match
+    private static Rollups rollups;
+    private static long rollupsStamp;
+
+    // Session availability index for "busy at" (built on first use, then kept
+    // up to date by the add, update and delete flows) and the stamp it matches
+    private static AvailabilityIndex availability;
+    private static long availabilityStamp;
+
+    // Days on each side of a probe that the index expands recurring events for
+    private static final int AVAILABILITY_DAYS = 366;
+
     public static void main(String[] args) {
 
+        // Finish any save interrupted by a crash before reading data
+        UnitOfWork.recover();
+
+        // Offline maintenance: renumber IDs and exit
+        if (args.length > 0 && args[0].equals("--compact")) {
+            compactIds();
+            return;
+        }
+
+        // Scripted bulk operations (see BatchRunner) and exit
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.run(args);
+            return;
+        }
+
+        // Unattended snapshot (e.g. hourly from cron) and exit
+        if (args.length > 0 && args[0].equals("--snapshot")) {
+            SnapshotStore.snapshot(SnapshotStore.DEFAULT_DIR);
+            return;
+        }
+
+        // HTTP/JSON API (see ApiServer); runs until the process is stopped
+        if (args.length > 0 && args[0].equals("--serve")) {
+            ApiServer.run(args);
+            return;
+        }
+
         // Launch-time reminder notification
         showNextReminderAtLaunch();
 
@@ -62,7 +137,8 @@ public class Main {
                 case 2 -> viewMenu();
                 case 3 -> backupMenu();
                 case 0 -> {
-                    renumberAllData();
+                    // Barrier: everything committed must be on disk before exiting
+                    WriteBehind.flush();
                     System.out.println("Have a nice day!");
                     return;
                 }
@@ -93,6 +169,7 @@ public class Main {
                 3. Delete event
                 4. Search events
                 5. Reminders
+                6. Find a free slot
                 """);
         int choice;
         try {
@@ -109,6 +186,7 @@ public class Main {
             case 3 -> deleteEvent();
             case 4 -> searchEvents();
             case 5 -> reminderMenu();
+            case 6 -> findFreeSlot();
             default -> System.out.println("Invalid choice.");
         }
     }
@@ -119,6 +197,11 @@ public class Main {
                 1. Day calendar
                 2. Week calendar
                 3. Month calendar
+                4. Overlap report
+                5. Busy at a given time?
+                6. Year overview
+                7. Hours per category per week
+                8. Utilization report
                 """);
         int choice;
         try {
@@ -133,10 +216,63 @@ public class Main {
             case 1 -> viewDay();
             case 2 -> viewWeek();
             case 3 -> viewMonth();
+            case 4 -> overlapReport();
+            case 5 -> busyAt();
+            case 6 -> yearOverview();
+            case 7 -> categoryHours();
+            case 8 -> utilizationReport();
             default -> System.out.println("Invalid choice.");
         }
     }
 
+    // ================= BUSY AT TIME =================
+    private static void busyAt() {
+
+        LocalDateTime t;
+        try {
+            System.out.print("Time (yyyy-MM-ddTHH:mm): ");
+            t = LocalDateTime.parse(sc.nextLine().trim());
+        } catch (Exception e) {
+            System.out.println("Invalid date/time format. Please use yyyy-MM-ddTHH:mm (example: 2026-01-06T10:30)");
+            return;
+        }
+
+        System.out.println(availability(t.toLocalDate()).isBusyAt(t) ? "Busy at " + t + "." : "Free at " + t + ".");
+    }
+
+    // ================= OVERLAP REPORT =================
+    private static void overlapReport() {
+
+        LocalDate horizon;
+        try {
+            System.out.print("Include recurring occurrences up to (yyyy-MM-dd, leave blank for one year from today): ");
+            String input = sc.nextLine().trim();
+            horizon = input.isEmpty() ? LocalDate.now().plusYears(1) : LocalDate.parse(input);
+        } catch (Exception e) {
+            System.out.println("Invalid date format. Please use yyyy-MM-dd (example: 2026-01-06)");
+            return;
+        }
+
+        List<Event> events = EventFileHandler.readEvents();
+        List<RecurringEvent> recurringRules = RecurringFileHandler.readRecurringEvents();
+
+        System.out.println("\n=== Overlapping events (occurrences up to " + horizon + ") ===");
+
+        OverlapReport.Summary summary = OverlapReport.findOverlaps(events, recurringRules, horizon,
+                (a, b) -> System.out.println(
+                        "[" + a.getEventId() + "] " + a.getTitle() +
+                        " (" + a.getStartDateTime() + " → " + a.getEndDateTime() + ")" +
+                        "  overlaps  " +
+                        "[" + b.getEventId() + "] " + b.getTitle() +
+                        " (" + b.getStartDateTime() + " → " + b.getEndDateTime() + ")"));
+
+        if (summary.pairs == 0) {
+            System.out.println("No overlapping events found.");
+        }
+        System.out.println("Checked " + summary.intervals + " event(s)/occurrence(s): " +
+                summary.pairs + " overlapping pair(s) in " + summary.groups + " group(s).");
+    }
+
     private static void viewDay() {
         LocalDate date;
         try {
@@ -156,6 +292,12 @@ public class Main {
                 Backup menu:
                 1. Backup
                 2. Restore
+                3. Export to iCalendar (.ics)
+                4. Import from iCalendar (.ics)
+                5. Incremental backup
+                6. Restore from incremental backups
+                7. Snapshots
+                8. Preview restore (dry run)
                 """);
         int choice;
         try {
@@ -167,12 +309,130 @@ public class Main {
         }
 
         switch (choice) {
-            case 1 -> BackupManager.backup("backup.txt");
-            case 2 -> BackupManager.restore("backup.txt");
+            case 1 -> BackupContainer.backup(BackupContainer.DEFAULT_PATH);
+            case 2 -> restoreBackup();
+            case 3 -> exportIcs();
+            case 4 -> importIcs();
+            case 5 -> IncrementalBackup.backup(IncrementalBackup.DEFAULT_DIR);
+            case 6 -> IncrementalBackup.restoreChain(IncrementalBackup.DEFAULT_DIR, askMerge());
+            case 7 -> snapshotMenu();
+            case 8 -> previewRestore();
             default -> System.out.println("Invalid choice.");
         }
     }
 
+    private static void snapshotMenu() {
+        System.out.println("""
+                Snapshots:
+                1. Take snapshot
+                2. List snapshots
+                3. Compare two snapshots
+                4. Restore a snapshot
+                """);
+        int choice;
+        try {
+            System.out.print("Choose: ");
+            choice = Integer.parseInt(sc.nextLine());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid choice.");
+            return;
+        }
+
+        try {
+            switch (choice) {
+                case 1 -> SnapshotStore.snapshot(SnapshotStore.DEFAULT_DIR);
+                case 2 -> SnapshotStore.list(SnapshotStore.DEFAULT_DIR);
+                case 3 -> {
+                    System.out.print("From snapshot #: ");
+                    int from = Integer.parseInt(sc.nextLine().trim());
+                    System.out.print("To snapshot #: ");
+                    int to = Integer.parseInt(sc.nextLine().trim());
+                    SnapshotStore.diff(SnapshotStore.DEFAULT_DIR, from, to);
+                }
+                case 4 -> {
+                    System.out.print("Snapshot #: ");
+                    int id = Integer.parseInt(sc.nextLine().trim());
+                    SnapshotStore.restore(SnapshotStore.DEFAULT_DIR, id, askMerge());
+                }
+                default -> System.out.println("Invalid choice.");
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid snapshot number.");
+        }
+    }
+
+    /*
+     * Restores the compressed backup, or a text backup.txt from before it.
+     */
+    private static void restoreBackup() {
+        if (new File(BackupContainer.DEFAULT_PATH).exists()) {
+            BackupContainer.restore(BackupContainer.DEFAULT_PATH);
+        } else {
+            BackupManager.restore("backup.txt");
+        }
+    }
+
+    /*
+     * Asks how a point-in-time restore is applied: replace the current data
+     * with the restored state (the default), or merge it in as new events.
+     */
+    private static boolean askMerge() {
+        System.out.print("Replace current data (r) or merge in as new events (m)? [r]: ");
+        String ans = sc.nextLine().trim().toLowerCase();
+        return ans.equals("m") || ans.equals("merge");
+    }
+
+    /*
+     * Dry run of restoreBackup(): lists what would happen to every backup
+     * event, then the totals. Nothing is written.
+     */
+    private static void previewRestore() {
+        String path = new File(BackupContainer.DEFAULT_PATH).exists() ? BackupContainer.DEFAULT_PATH : "backup.txt";
+
+        System.out.println("Restore preview of " + path + " (+ restored, ! conflict, x invalid):");
+        BackupManager.RestoreSummary s = BackupContainer.preview(path, System.out);
+        if (s == null) return;
+
+        System.out.println();
+        System.out.println(s.restored + " event(s) would be restored under new IDs, "
+                + s.conflicts + " skipped for overlapping existing events, "
+                + s.backupConflicts + " for overlapping other backup events, "
+                + s.invalid + " invalid.");
+        System.out.println("Linked rows: " + s.recurring + " recurrence rule(s), "
+                + s.additional + " additional field row(s), " + s.reminders + " reminder(s); "
+                + s.orphans + " dropped with their event.");
+        System.out.println("Nothing was written.");
+    }
+
+    private static void exportIcs() {
+        System.out.print("Export file (leave blank for calendar.ics): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) {
+            path = "calendar.ics";
+        }
+
+        int count = IcsExporter.export(path);
+        if (count >= 0) {
+            System.out.println("Exported " + count + " event(s) to " + path);
+        }
+    }
+
+    private static void importIcs() {
+        System.out.print("Import file (leave blank for calendar.ics): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) {
+            path = "calendar.ics";
+        }
+
+        IcsImporter.ImportSummary summary = IcsImporter.importFile(path);
+        if (summary != null) {
+            System.out.println("Imported " + summary.imported + " event(s) from " + path +
+                    " (" + summary.conflicts + " skipped due to time conflicts, " +
+                    summary.invalid + " invalid" +
+                    (summary.notSaved > 0 ? ", " + summary.notSaved + " not saved" : "") + ").");
+        }
+    }
+
     private static void showNextReminderAtLaunch() {
         List<Event> events = EventFileHandler.readEvents();
         List<RecurringEvent> recurringRules = RecurringFileHandler.readRecurringEvents();
@@ -274,64 +534,96 @@ public class Main {
         }
     }
 
-    // ================= RENORMALIZE IDS ON EXIT =================
-    private static void renumberAllData() {
-        List<Event> events = EventFileHandler.readEvents();
-        if (events.isEmpty()) {
-            return;
-        }
+    // ================= COMPACT IDS (OFFLINE) =================
 
-        // Preserve current ordering from file read; assign new sequential IDs starting at 1.
-        List<Event> newEvents = new java.util.ArrayList<>();
-        java.util.Map<Integer, Integer> idMap = new java.util.HashMap<>();
+    /*
+     * Renumbers all events to 1..n (keeping file order), drops side-table
+     * rows without an event, and resets the ID sequence.
+     *
+     * The renumbering is one UnitOfWork (every old row deleted, every
+     * renumbered row added), so a crash leaves either the old tables or
+     * the new ones, never a mix of IDs. It runs under the DataLock so no
+     * other instance writes in between.
+     *
+     * IDs are otherwise stable, so this only runs on request:
+     *     java app.Main --compact
+     */
+    private static void compactIds() {
 
-        int nextId = 1;
-        for (Event e : events) {
-            idMap.put(e.getEventId(), nextId);
-            newEvents.add(new Event(nextId, e.getTitle(), e.getDescription(), e.getStartDateTime(), e.getEndDateTime()));
-            nextId++;
-        }
-        EventFileHandler.writeEvents(newEvents);
+        DataLock.lock();
+        try {
+            List<Event> events = EventFileHandler.readEvents();
+            if (events.isEmpty()) {
+                System.out.println("Nothing to compact.");
+                return;
+            }
+
+            UnitOfWork uow = new UnitOfWork();
 
-        // Update recurring rules
-        List<RecurringEvent> recurring = RecurringFileHandler.readRecurringEvents();
-        List<RecurringEvent> newRecurring = new java.util.ArrayList<>();
-        for (RecurringEvent r : recurring) {
-            Integer newId = idMap.get(r.getEventId());
-            if (newId != null) {
-                newRecurring.add(new RecurringEvent(newId, r.getInterval(), r.getRecurrentTimes(), r.getRecurrentEndDate()));
+            // Preserve current ordering from file read; assign new sequential IDs starting at 1.
+            // Deletes are staged first so a new ID never replaces an old row in place.
+            java.util.Map<Integer, Integer> idMap = new java.util.HashMap<>();
+            int nextId = 1;
+            for (Event e : events) {
+                idMap.put(e.getEventId(), nextId++);
+                uow.deleteEvent(e.getEventId());
             }
-        }
-        RecurringFileHandler.writeRecurringEvents(newRecurring);
 
-        // Update additional fields
-        List<AdditionalEventFields> additional = AdditionalFileHandler.readAdditional();
-        List<AdditionalEventFields> newAdditional = new java.util.ArrayList<>();
-        for (AdditionalEventFields a : additional) {
-            Integer newId = idMap.get(a.getEventId());
-            if (newId != null) {
-                newAdditional.add(new AdditionalEventFields(newId, a.getLocation(), a.getCategory()));
+            List<RecurringEvent> recurring = RecurringFileHandler.readRecurringEvents();
+            List<AdditionalEventFields> additional = AdditionalFileHandler.readAdditional();
+            List<Reminder> reminders = ReminderFileHandler.readReminders();
+            for (RecurringEvent r : recurring) uow.deleteRecurring(r.getEventId());
+            for (AdditionalEventFields a : additional) uow.deleteAdditional(a.getEventId());
+            for (Reminder r : reminders) uow.deleteReminder(r.getEventId());
+
+            for (Event e : events) {
+                uow.putEvent(new Event(idMap.get(e.getEventId()), e.getTitle(), e.getDescription(),
+                        e.getStartDateTime(), e.getEndDateTime()));
             }
-        }
-        AdditionalFileHandler.writeAdditional(newAdditional);
 
-        // Update reminders
-        List<Reminder> reminders = ReminderFileHandler.readReminders();
-        List<Reminder> newReminders = new java.util.ArrayList<>();
-        for (Reminder r : reminders) {
-            Integer newId = idMap.get(r.getEventId());
-            if (newId != null) {
-                newReminders.add(new Reminder(newId, r.getMinutesBefore()));
+            // Update recurring rules
+            for (RecurringEvent r : recurring) {
+                Integer newId = idMap.get(r.getEventId());
+                if (newId != null) {
+                    uow.putRecurring(new RecurringEvent(newId, r.getInterval(), r.getRecurrentTimes(), r.getRecurrentEndDate()));
+                }
             }
+
+            // Update additional fields
+            for (AdditionalEventFields a : additional) {
+                Integer newId = idMap.get(a.getEventId());
+                if (newId != null) {
+                    uow.putAdditional(new AdditionalEventFields(newId, a.getLocation(), a.getCategory()));
+                }
+            }
+
+            // Update reminders
+            for (Reminder r : reminders) {
+                Integer newId = idMap.get(r.getEventId());
+                if (newId != null) {
+                    uow.putReminder(new Reminder(newId, r.getMinutesBefore()));
+                }
+            }
+
+            if (!uow.commit()) {
+                System.out.println("Compaction not saved; IDs are unchanged.");
+                return;
+            }
+            WriteBehind.flush();
+
+            // A crash before this only leaves the mark too high, which is safe
+            if (IdSequence.reset(nextId - 1)) {
+                System.out.println("Compacted " + events.size() + " event(s); IDs now run from 1 to " + (nextId - 1) + ".");
+            }
+        } finally {
+            DataLock.unlock();
         }
-        ReminderFileHandler.writeReminders(newReminders);
     }
 
     // ================= ADD EVENT =================
     private static void addEvent() {
 
         List<Event> events = EventFileHandler.readEvents();
-        int id = EventFileHandler.getNextEventId(events);
 
         System.out.print("Title: ");
         String title = sc.nextLine();
@@ -358,15 +650,66 @@ public class Main {
             return;
         }
 
-        Event e = new Event(id, title, desc, start, end);
+        // The ID is only allocated once the event is going to be saved
+        Event e = new Event(-1, title, desc, start, end);
 
         if (EventFileHandler.hasConflict(e)) {
-            System.out.println("Time conflict detected. Event not added.");
+            System.out.println("Time conflict detected.");
+            e = offerAlternativeSlot(events, e);
+            if (e == null) {
+                System.out.println("Event not added.");
+                return;
+            }
+        }
+
+        int id = IdSequence.next();
+        if (id < 0) {
+            System.out.println("Event not added.");
             return;
         }
+        e = new Event(id, e.getTitle(), e.getDescription(), e.getStartDateTime(), e.getEndDateTime());
+
+        Rollups.Entry before = beginChange(id);
+
+        // The event and its extras are saved together in one commit
+        UnitOfWork uow = new UnitOfWork().putEvent(e);
+        boolean recurring = promptEventExtras(id, uow);
+
+        if (commitChecked(e, uow)) {
+            endChange(before, id);
+            System.out.println("Event added with ID " + id + (recurring ? " (recurring)" : ""));
+        } else {
+            IdSequence.release(id, id);
+            System.out.println("Event not added.");
+        }
+    }
+
+    /*
+     * Commits an added or updated event after checking it for conflicts
+     * again. The prompts run between the first check and the commit, so
+     * another instance (--serve, --batch) may have booked the slot since;
+     * the re-check and the commit hold the DataLock together.
+     */
+    private static boolean commitChecked(Event e, UnitOfWork uow) {
+
+        DataLock.lock();
+        try {
+            if (EventFileHandler.hasConflict(e)) {
+                System.out.println("Time conflict detected: the slot was booked in the meantime.");
+                return false;
+            }
+            return uow.commit();
+        } finally {
+            DataLock.unlock();
+        }
+    }
 
-        events.add(e);
-        EventFileHandler.writeEvents(events);
+    /*
+     * Asks for the optional fields of a newly added event: location,
+     * category, reminder and recurrence. Changes are staged in the
+     * unit of work, not written. Returns whether a recurrence was staged.
+     */
+    private static boolean promptEventExtras(int id, UnitOfWork uow) {
 
         // Additional fields (stored separately for marking purposes)
         System.out.print("Location (optional): ");
@@ -375,10 +718,10 @@ public class Main {
         System.out.print("Category (optional): ");
         String category = sc.nextLine();
 
-        AdditionalFileHandler.upsert(new AdditionalEventFields(id, location, category));
+        uow.putAdditional(new AdditionalEventFields(id, location, category));
 
         // Optional: add reminder immediately after creating the event
-        maybeAddReminderForEvent(id);
+        maybeAddReminderForEvent(id, uow);
 
         // Optional: add recurring settings immediately after creating the event
     System.out.print("Is this event recurring? (y/n): ");
@@ -397,9 +740,8 @@ public class Main {
                 System.out.print("Choose: ");
                 choice = Integer.parseInt(sc.nextLine());
             } catch (NumberFormatException nfeChoice) {
-                System.out.println("Invalid choice. Event was added as non-recurring.");
-                System.out.println("Event added with ID " + id);
-                return;
+                System.out.println("Invalid choice. The event will be added as non-recurring.");
+                return false;
             }
 
             int times = 0;
@@ -410,39 +752,146 @@ public class Main {
                     System.out.print("End date (yyyy-MM-dd): ");
                     endDate = LocalDate.parse(sc.nextLine());
                 } catch (Exception parseEndDateEx) {
-                    System.out.println("Invalid date format. Event was added as non-recurring.");
-                    System.out.println("Event added with ID " + id);
-                    return;
+                    System.out.println("Invalid date format. The event will be added as non-recurring.");
+                    return false;
                 }
             } else if (choice == 2) {
                 try {
                     System.out.print("Number of times: ");
                     times = Integer.parseInt(sc.nextLine());
                 } catch (NumberFormatException nfeTimes) {
-                    System.out.println("Invalid number. Event was added as non-recurring.");
-                    System.out.println("Event added with ID " + id);
-                    return;
+                    System.out.println("Invalid number. The event will be added as non-recurring.");
+                    return false;
                 }
             } else {
-                System.out.println("Invalid choice. Event was added as non-recurring.");
-                System.out.println("Event added with ID " + id);
-                return;
+                System.out.println("Invalid choice. The event will be added as non-recurring.");
+                return false;
             }
 
-            List<RecurringEvent> list = RecurringFileHandler.readRecurringEvents();
-            // Ensure we don't end up with duplicate recurring entries for the same event.
-            list.removeIf(r -> r.getEventId() == id);
-            list.add(new RecurringEvent(id, interval, times, endDate));
-            RecurringFileHandler.writeRecurringEvents(list);
+            // Replaces any existing entry, so there are no duplicates for the same event
+            uow.putRecurring(new RecurringEvent(id, interval, times, endDate));
+
+            return true;
+        }
+
+        return false;
+    }
 
-            System.out.println("Event added with ID " + id + " (recurring)");
+    /*
+     * Offers the nearest free slots of the same length after a conflict.
+     * Returns the event moved to the chosen slot, or null if the user declines.
+     */
+    private static Event offerAlternativeSlot(List<Event> events, Event rejected) {
+
+        Duration length = Duration.between(rejected.getStartDateTime(), rejected.getEndDateTime());
+        List<FreeSlotFinder.Slot> slots = FreeSlotFinder.findFreeSlots(
+                events,
+                RecurringFileHandler.readRecurringEvents(),
+                length,
+                rejected.getStartDateTime(),
+                rejected.getStartDateTime().plusDays(SLOT_SEARCH_DAYS),
+                null,
+                null,
+                3);
+
+        if (slots.isEmpty()) {
+            System.out.println("No free slot of the same length in the next " + SLOT_SEARCH_DAYS + " days.");
+            return null;
+        }
+
+        System.out.println("Nearest free alternatives:");
+        for (int i = 0; i < slots.size(); i++) {
+            System.out.println((i + 1) + ". " + slots.get(i).start + " → " + slots.get(i).end);
+        }
+
+        System.out.print("Choose 1-" + slots.size() + " to use a slot, or press Enter to cancel: ");
+        String ans = sc.nextLine().trim();
+        if (ans.isEmpty()) {
+            return null;
+        }
+
+        int pick;
+        try {
+            pick = Integer.parseInt(ans);
+        } catch (NumberFormatException ex) {
+            System.out.println("Invalid choice.");
+            return null;
+        }
+        if (pick < 1 || pick > slots.size()) {
+            System.out.println("Choice out of range.");
+            return null;
+        }
+
+        FreeSlotFinder.Slot slot = slots.get(pick - 1);
+        return new Event(rejected.getEventId(), rejected.getTitle(), rejected.getDescription(), slot.start, slot.end);
+    }
+
+    // ================= FIND FREE SLOT =================
+    private static void findFreeSlot() {
+
+        long minutes;
+        LocalDate from;
+        LocalDate to;
+        LocalTime workStart = null;
+        LocalTime workEnd = null;
+        int count;
+        try {
+            System.out.print("Duration in minutes: ");
+            minutes = Long.parseLong(sc.nextLine().trim());
+
+            System.out.print("From date (yyyy-MM-dd): ");
+            from = LocalDate.parse(sc.nextLine().trim());
+
+            System.out.print("To date (yyyy-MM-dd): ");
+            to = LocalDate.parse(sc.nextLine().trim());
+
+            System.out.print("Working hours (HH:mm-HH:mm, leave blank for any time): ");
+            String hours = sc.nextLine().trim();
+            if (!hours.isEmpty()) {
+                String[] parts = hours.split("-");
+                workStart = LocalTime.parse(parts[0].trim());
+                workEnd = LocalTime.parse(parts[1].trim());
+            }
+
+            System.out.print("How many slots? (leave blank for 5): ");
+            String countInput = sc.nextLine().trim();
+            count = countInput.isEmpty() ? 5 : Integer.parseInt(countInput);
+        } catch (Exception e) {
+            System.out.println("Invalid input.");
+            return;
+        }
+
+        if (minutes <= 0 || count <= 0 || to.isBefore(from)
+                || (workStart != null && !workStart.isBefore(workEnd))) {
+            System.out.println("Invalid input.");
+            return;
+        }
+
+        List<Event> events = EventFileHandler.readEvents();
+        List<RecurringEvent> recurringRules = RecurringFileHandler.readRecurringEvents();
+
+        List<FreeSlotFinder.Slot> slots;
+        if (USE_AVAILABILITY_BITMAP) {
+            AvailabilityIndex index = AvailabilityIndex.build(events, recurringRules, from, to);
+            slots = index.findFreeSlots(Duration.ofMinutes(minutes),
+                    from.atStartOfDay(), to.plusDays(1).atStartOfDay(), workStart, workEnd, count);
+        } else {
+            slots = FreeSlotFinder.findFreeSlots(events, recurringRules,
+                    Duration.ofMinutes(minutes),
+                    from.atStartOfDay(), to.plusDays(1).atStartOfDay(), workStart, workEnd, count);
+        }
+
+        if (slots.isEmpty()) {
+            System.out.println("No free slots found.");
             return;
         }
 
-        System.out.println("Event added with ID " + id);
+        for (FreeSlotFinder.Slot slot : slots) {
+            System.out.println("- " + slot.start + " → " + slot.end);
+        }
     }
 
-    private static void maybeAddReminderForEvent(int eventId) {
+    private static void maybeAddReminderForEvent(int eventId, UnitOfWork uow) {
         System.out.print("Add a reminder for this event? (y/n): ");
         String ans = sc.nextLine().trim().toLowerCase();
         if (!(ans.equals("y") || ans.equals("yes"))) {
@@ -454,10 +903,7 @@ public class Main {
             return;
         }
 
-        List<Reminder> reminders = ReminderFileHandler.readReminders();
-        reminders.removeIf(r -> r.getEventId() == eventId);
-        reminders.add(new Reminder(eventId, minutes));
-        ReminderFileHandler.writeReminders(reminders);
+        uow.putReminder(new Reminder(eventId, minutes));
 
         System.out.println("Reminder added (" + minutes + " minutes before the event)");
     }
@@ -517,37 +963,44 @@ public class Main {
             return;
         }
 
-        boolean ok = EventFileHandler.updateEvent(updated);
+        Rollups.Entry before = beginChange(id);
 
-        if (ok) {
-            var additionalMap = AdditionalFileHandler.readAdditionalMap();
-            AdditionalEventFields existingAdd = additionalMap.get(id);
+        // The event and its side-table changes are saved together in one commit
+        UnitOfWork uow = new UnitOfWork().putEvent(updated);
 
-            System.out.print("New Location (leave blank to keep current" + (existingAdd != null && existingAdd.getLocation() != null ? ": '" + existingAdd.getLocation() + "'" : "") + "): ");
-            String locationInput = sc.nextLine();
+        var additionalMap = AdditionalFileHandler.readAdditionalMap();
+        AdditionalEventFields existingAdd = additionalMap.get(id);
 
-            System.out.print("New Category (leave blank to keep current" + (existingAdd != null && existingAdd.getCategory() != null ? ": '" + existingAdd.getCategory() + "'" : "") + "): ");
-            String categoryInput = sc.nextLine();
+        System.out.print("New Location (leave blank to keep current" + (existingAdd != null && existingAdd.getLocation() != null ? ": '" + existingAdd.getLocation() + "'" : "") + "): ");
+        String locationInput = sc.nextLine();
 
-            String location = locationInput.isBlank() ? (existingAdd != null ? existingAdd.getLocation() : null) : locationInput;
-            String category = categoryInput.isBlank() ? (existingAdd != null ? existingAdd.getCategory() : null) : categoryInput;
+        System.out.print("New Category (leave blank to keep current" + (existingAdd != null && existingAdd.getCategory() != null ? ": '" + existingAdd.getCategory() + "'" : "") + "): ");
+        String categoryInput = sc.nextLine();
 
-            // Only write if there was an existing record or the user provided something.
-            if (existingAdd != null || !locationInput.isBlank() || !categoryInput.isBlank()) {
-                AdditionalFileHandler.upsert(new AdditionalEventFields(id, location, category));
-            }
+        String location = locationInput.isBlank() ? (existingAdd != null ? existingAdd.getLocation() : null) : locationInput;
+        String category = categoryInput.isBlank() ? (existingAdd != null ? existingAdd.getCategory() : null) : categoryInput;
 
-            // Recurrence: allow optional change/remove/keep
-            RecurringEvent existingRec = RecurringFileHandler.findByEventId(id);
-            handleRecurringUpdate(id, existingRec);
+        // Only write if there was an existing record or the user provided something.
+        if (existingAdd != null || !locationInput.isBlank() || !categoryInput.isBlank()) {
+            uow.putAdditional(new AdditionalEventFields(id, location, category));
+        }
 
-            // Reminder: optional keep/change/remove
-            handleReminderUpdate(id);
+        // Recurrence: allow optional change/remove/keep
+        RecurringEvent existingRec = RecurringFileHandler.findByEventId(id);
+        handleRecurringUpdate(id, existingRec, uow);
+
+        // Reminder: optional keep/change/remove
+        handleReminderUpdate(id, uow);
+
+        if (commitChecked(updated, uow)) {
+            endChange(before, id);
+            System.out.println("Event updated.");
+        } else {
+            System.out.println("Update cancelled.");
         }
-        System.out.println(ok ? "Event updated." : "Event not found.");
     }
 
-    private static void handleRecurringUpdate(int eventId, RecurringEvent existingRec) {
+    private static void handleRecurringUpdate(int eventId, RecurringEvent existingRec, UnitOfWork uow) {
         String existingLabel = existingRec == null ? "none" : (existingRec.getInterval() + (existingRec.getRecurrentEndDate() != null ? ", until " + existingRec.getRecurrentEndDate() : ", times=" + existingRec.getRecurrentTimes()));
         System.out.print("Recurring settings (current: " + existingLabel + ") — press Enter to keep, type 'change' to edit, or 'remove' to delete: ");
         String ans = sc.nextLine().trim().toLowerCase();
@@ -556,11 +1009,8 @@ public class Main {
             return; // no change
         }
 
-        List<RecurringEvent> list = RecurringFileHandler.readRecurringEvents();
-        list.removeIf(r -> r.getEventId() == eventId);
-
         if (ans.equals("remove")) {
-            RecurringFileHandler.writeRecurringEvents(list);
+            uow.deleteRecurring(eventId);
             System.out.println("Recurring settings removed.");
             return;
         }
@@ -568,24 +1018,14 @@ public class Main {
         if (ans.equals("change") || ans.equals("y") || ans.equals("yes")) {
             RecurringEvent updated = promptRecurringSettings(eventId);
             if (updated != null) {
-                list.add(updated);
-                RecurringFileHandler.writeRecurringEvents(list);
+                uow.putRecurring(updated);
                 System.out.println("Recurring settings updated.");
-            } else {
-                // If prompt failed, keep original (already removed; restore if existed)
-                if (existingRec != null) {
-                    list.add(existingRec);
-                    RecurringFileHandler.writeRecurringEvents(list);
-                }
             }
+            // If the prompt failed, nothing is staged and the original stays
             return;
         }
 
-        // Unrecognized answer: restore prior state
-        if (existingRec != null) {
-            list.add(existingRec);
-        }
-        RecurringFileHandler.writeRecurringEvents(list);
+        // Unrecognized answer: nothing is staged, prior state is kept
         System.out.println("Recurring unchanged (unrecognized input).");
     }
 
@@ -622,7 +1062,7 @@ public class Main {
         }
     }
 
-    private static void handleReminderUpdate(int eventId) {
+    private static void handleReminderUpdate(int eventId, UnitOfWork uow) {
         List<Reminder> reminders = ReminderFileHandler.readReminders();
         Reminder existing = reminders.stream().filter(r -> r.getEventId() == eventId).findFirst().orElse(null);
 
@@ -635,9 +1075,8 @@ public class Main {
         }
 
         if (ans.equals("remove")) {
-            boolean removed = reminders.removeIf(r -> r.getEventId() == eventId);
-            if (removed) {
-                ReminderFileHandler.writeReminders(reminders);
+            if (existing != null) {
+                uow.deleteReminder(eventId);
                 System.out.println("Reminder removed.");
             } else {
                 System.out.println("No reminder to remove.");
@@ -648,9 +1087,7 @@ public class Main {
         if (ans.equals("change") || ans.equals("add") || ans.equals("y") || ans.equals("yes")) {
             Integer minutes = promptReminderMinutes();
             if (minutes == null) return;
-            reminders.removeIf(r -> r.getEventId() == eventId);
-            reminders.add(new Reminder(eventId, minutes));
-            ReminderFileHandler.writeReminders(reminders);
+            uow.putReminder(new Reminder(eventId, minutes));
             System.out.println("Reminder updated (" + minutes + " minutes before the event)");
             return;
         }
@@ -667,26 +1104,33 @@ public class Main {
             return;
         }
 
-        boolean ok = EventFileHandler.deleteEvent(id);
+        boolean ok = events.stream().anyMatch(e -> e.getEventId() == id);
         if (ok) {
+            Rollups.Entry before = beginChange(id);
+
+            // The event and every row tied to it are removed in one commit
+            UnitOfWork uow = new UnitOfWork().deleteEvent(id);
+
             // Remove additional-field row for this event as well.
-            AdditionalFileHandler.deleteByEventId(id);
+            if (AdditionalFileHandler.readAdditionalMap().containsKey(id)) {
+                uow.deleteAdditional(id);
+            }
 
             // Remove reminders tied to this event.
-            List<Reminder> reminders = ReminderFileHandler.readReminders();
-            boolean removedReminder = reminders.removeIf(r -> r.getEventId() == id);
-            if (removedReminder) {
-                ReminderFileHandler.writeReminders(reminders);
+            if (ReminderFileHandler.readReminders().stream().anyMatch(r -> r.getEventId() == id)) {
+                uow.deleteReminder(id);
             }
 
             // Also remove any recurring settings tied to this event.
-            List<RecurringEvent> recurring = RecurringFileHandler.readRecurringEvents();
-            boolean removedRecurring = recurring.removeIf(r -> r.getEventId() == id);
+            boolean removedRecurring = RecurringFileHandler.findByEventId(id) != null;
             if (removedRecurring) {
-                RecurringFileHandler.writeRecurringEvents(recurring);
+                uow.deleteRecurring(id);
             }
 
-            System.out.println("Event deleted." + (removedRecurring ? " (Recurring entry removed.)" : ""));
+            if (uow.commit()) {
+                endChange(before, id);
+                System.out.println("Event deleted." + (removedRecurring ? " (Recurring entry removed.)" : ""));
+            }
         } else {
             System.out.println("Event not found.");
         }
@@ -708,8 +1152,195 @@ public class Main {
             return;
         }
 
+        if (month < 1 || month > 12) {
+            System.out.println("Invalid year/month.");
+            return;
+        }
+
         List<Event> events = EventFileHandler.readEvents();
-        CalendarView.showMonthView(events, year, month);
+        CalendarView.showMonthView(events, year, month,
+                rollups(YearMonth.of(year, month).atEndOfMonth()));
+    }
+
+    // ================= ROLLUP REPORTS =================
+    private static void yearOverview() {
+
+        int year;
+        try {
+            System.out.print("Year: ");
+            year = Integer.parseInt(sc.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid year.");
+            return;
+        }
+
+        CalendarView.showYearOverview(rollups(LocalDate.of(year, 12, 31)), year);
+    }
+
+    private static void categoryHours() {
+
+        LocalDate[] range = readDateRange();
+        if (range == null) return;
+
+        // Cover the Sunday of the last week so its totals are complete
+        LocalDate through = range[1].with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        CalendarView.showCategoryHoursByWeek(rollups(through), range[0], range[1]);
+    }
+
+    private static void utilizationReport() {
+
+        LocalDate[] range = readDateRange();
+        if (range == null) return;
+
+        System.out.print("Per (w)eek or (m)onth? ");
+        String per = sc.nextLine().trim().toLowerCase();
+        UtilizationReport.Granularity granularity;
+        if (per.startsWith("w")) {
+            granularity = UtilizationReport.Granularity.WEEK;
+        } else if (per.startsWith("m")) {
+            granularity = UtilizationReport.Granularity.MONTH;
+        } else {
+            System.out.println("Invalid choice.");
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        UtilizationReport.Result result = UtilizationReport.compute(
+                EventFileHandler.readEvents(),
+                RecurringFileHandler.readRecurringEvents(),
+                range[0], range[1].plusDays(1), granularity);
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        System.out.println("\n=== Utilization " + range[0] + " to " + range[1] + " ===");
+        System.out.println("Period starting   Booked h    Idle h  Longest free h  Peak overlap");
+        for (UtilizationReport.Bucket b : result.buckets) {
+            System.out.printf("%-15s %10.1f %9.1f %15.1f %13d%n",
+                    b.start, b.bookedMinutes / 60.0, b.idleMinutes / 60.0,
+                    b.longestFreeMinutes / 60.0, b.peakOverlap);
+        }
+        System.out.printf("%-15s %10.1f %9.1f %15.1f %13d%n",
+                "TOTAL", result.bookedMinutes / 60.0, result.idleMinutes / 60.0,
+                result.longestFreeMinutes / 60.0, result.peakOverlap);
+        System.out.println("(" + result.buckets.size() + " periods in " + ms + " ms)\n");
+    }
+
+    /*
+     * Returns the session rollups covering occurrences through the given
+     * date, rebuilding them if the data files changed outside this session's
+     * own edits.
+     */
+    private static Rollups rollups(LocalDate through) {
+
+        long stamp = dataStamp();
+        if (rollups == null || stamp != rollupsStamp) {
+            LocalDate horizon = LocalDate.now().plusYears(1);
+            rollups = Rollups.build(
+                    EventFileHandler.readEvents(),
+                    RecurringFileHandler.readRecurringEvents(),
+                    AdditionalFileHandler.readAdditionalMap(),
+                    through.isAfter(horizon) ? through : horizon);
+            rollupsStamp = stamp;
+        }
+
+        rollups.extendTo(through);
+        return rollups;
+    }
+
+    /*
+     * Returns the session availability index, rebuilding it if the data
+     * files changed outside this session's own edits or recurring events
+     * were not expanded for the given day.
+     */
+    private static AvailabilityIndex availability(LocalDate day) {
+
+        long stamp = dataStamp();
+        if (availability == null || stamp != availabilityStamp || !availability.covers(day)) {
+            availability = AvailabilityIndex.build(
+                    EventFileHandler.readEvents(),
+                    RecurringFileHandler.readRecurringEvents(),
+                    day.minusDays(AVAILABILITY_DAYS),
+                    day.plusDays(AVAILABILITY_DAYS));
+            availabilityStamp = stamp;
+        }
+        return availability;
+    }
+
+    /*
+     * Captures an event's contribution before it is edited.
+     * Drops the session rollups and availability index if they are
+     * already out of date.
+     */
+    private static Rollups.Entry beginChange(int id) {
+
+        long stamp = dataStamp();
+        if (availability != null && stamp != availabilityStamp) {
+            availability = null;
+        }
+
+        if (rollups == null) return null;
+        if (stamp != rollupsStamp) {
+            rollups = null;
+            return null;
+        }
+        return rollupEntry(id);
+    }
+
+    /*
+     * Applies an edited event's new contribution to the rollups and the
+     * availability index.
+     */
+    private static void endChange(Rollups.Entry before, int id) {
+
+        if (rollups == null && availability == null) return;
+
+        Rollups.Entry after = rollupEntry(id);
+        long stamp = dataStamp();
+
+        if (rollups != null) {
+            rollups.replace(before, after);
+            rollupsStamp = stamp;
+        }
+
+        if (availability != null) {
+            availability.removeEvent(id);
+            if (after != null) availability.addEvent(after.event, after.rule);
+            availabilityStamp = stamp;
+        }
+    }
+
+    /*
+     * Reads the current event, rule and category for one ID (null if the
+     * event does not exist).
+     */
+    private static Rollups.Entry rollupEntry(int id) {
+
+        EventStore store = EventFileHandler.readStore();
+        int i = store.indexOfId(id);
+        if (i < 0) return null;
+
+        AdditionalEventFields a = AdditionalFileHandler.readAdditionalMap().get(id);
+        return new Rollups.Entry(store.eventAt(i),
+                RecurringFileHandler.findByEventId(id),
+                a == null ? null : a.getCategory());
+    }
+
+    /*
+     * Combines the DataLock versions of the rollup source tables, which
+     * also move when another instance writes them.
+     *
+     * With write-behind, background flushes rewrite the files with changes
+     * the rollups already have, so only direct writes invalidate them.
+     */
+    private static long dataStamp() {
+        if (WriteBehind.ENABLED) {
+            return WriteBehind.directWrites();
+        }
+
+        long stamp = 17;
+        for (DataLock.Table table : ROLLUP_SOURCES) {
+            stamp = stamp * 31 + DataLock.version(table);
+        }
+        return stamp;
     }
 
     // ================= VIEW WEEK =================
@@ -731,8 +1362,6 @@ public class Main {
     // ================= SEARCH =================
     private static void searchEvents() {
 
-        List<Event> events = EventFileHandler.readEvents();
-
         System.out.println("""
                 Search events by:
                 1. Title
@@ -740,6 +1369,8 @@ public class Main {
                 3. Date range
                 4. Location
                 5. Category
+                6. Category within a date range
+                7. Combined search
                 """);
 
         int choice;
@@ -751,96 +1382,128 @@ public class Main {
             return;
         }
 
+        Query query;
+
         if (choice == 1) {
             System.out.print("Title keyword: ");
-            String q = sc.nextLine().trim().toLowerCase();
+            String q = sc.nextLine().trim();
             if (q.isEmpty()) {
                 System.out.println("Title cannot be empty.");
                 return;
             }
+            query = Query.titleContains(q);
 
-            List<Event> matches = events.stream()
-                    .filter(e -> e.getTitle() != null && e.getTitle().toLowerCase().contains(q))
-                    .toList();
-            displayResults(matches);
-            return;
-        }
-
-        if (choice == 2) {
+        } else if (choice == 2) {
             try {
                 System.out.print("Date (yyyy-MM-dd): ");
-                LocalDate date = LocalDate.parse(sc.nextLine());
-                displayResults(EventFileHandler.searchByDate(date));
+                query = Query.onDate(LocalDate.parse(sc.nextLine()));
             } catch (Exception e) {
                 System.out.println("Invalid date format. Please use yyyy-MM-dd (example: 2026-01-06)");
+                return;
             }
-            return;
-        }
 
-        if (choice == 3) {
-            try {
-                System.out.print("Start date (yyyy-MM-dd): ");
-                LocalDate start = LocalDate.parse(sc.nextLine());
+        } else if (choice == 3) {
+            LocalDate[] range = readDateRange();
+            if (range == null) return;
+            query = Query.between(range[0], range[1]);
 
-                System.out.print("End date (yyyy-MM-dd): ");
-                LocalDate end = LocalDate.parse(sc.nextLine());
+        } else if (choice == 4) {
+            System.out.print("Location keyword: ");
+            query = Query.locationContains(sc.nextLine().trim());
 
-                displayResults(EventFileHandler.searchByDateRange(start, end));
-            } catch (Exception e) {
-                System.out.println("Invalid date format. Please use yyyy-MM-dd (example: 2026-01-06)");
+        } else if (choice == 5) {
+            System.out.print("Category keyword: ");
+            query = Query.categoryContains(sc.nextLine().trim());
+
+        } else if (choice == 6) {
+            System.out.print("Category keyword: ");
+            String q = sc.nextLine().trim();
+
+            LocalDate[] range = readDateRange();
+            if (range == null) return;
+            query = Query.and(Query.categoryContains(q), Query.between(range[0], range[1]));
+
+        } else if (choice == 7) {
+            System.out.println("Terms: title:<text> category:<text> location:<text> date:<yyyy-MM-dd>");
+            System.out.println("       from:<yyyy-MM-dd> to:<yyyy-MM-dd> reminder recurring");
+            System.out.println("Terms are combined with AND; use OR between alternatives.");
+            System.out.println("Example: category:work from:2026-03-01 to:2026-03-31 OR reminder");
+            System.out.print("Search: ");
+            try {
+                query = Query.parse(sc.nextLine());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid search: " + e.getMessage());
+                return;
             }
+
+        } else {
+            System.out.println("Invalid choice.");
             return;
         }
 
-        if (choice == 4) {
-            System.out.print("Location keyword: ");
-            String q = sc.nextLine().trim().toLowerCase();
+        displayResults(QueryEngine.stream(query));
+    }
 
-            var additionalMap = AdditionalFileHandler.readAdditionalMap();
-            List<Event> matches = events.stream()
-                    .filter(e -> {
-                        var a = additionalMap.get(e.getEventId());
-                        if (a == null || a.getLocation() == null) return false;
-                        return a.getLocation().toLowerCase().contains(q);
-                    })
-                    .toList();
+    /*
+     * Prompts for an inclusive start/end date pair.
+     * Returns null (after printing a message) if either date is invalid
+     * or the end is before the start.
+     */
+    private static LocalDate[] readDateRange() {
+        try {
+            System.out.print("Start date (yyyy-MM-dd): ");
+            LocalDate start = LocalDate.parse(sc.nextLine());
 
-            displayResults(matches);
-            return;
+            System.out.print("End date (yyyy-MM-dd): ");
+            LocalDate end = LocalDate.parse(sc.nextLine());
+
+            if (end.isBefore(start)) {
+                System.out.println("End date must not be before start date.");
+                return null;
+            }
+            return new LocalDate[] { start, end };
+        } catch (Exception e) {
+            System.out.println("Invalid date format. Please use yyyy-MM-dd (example: 2026-01-06)");
+            return null;
         }
+    }
 
-        if (choice == 5) {
-            System.out.print("Category keyword: ");
-            String q = sc.nextLine().trim().toLowerCase();
+    /*
+     * Renders search results one page at a time.
+     * Matches are pulled lazily, so only the current page is ever materialized.
+     */
+    private static void displayResults(Stream<Event> matches) {
 
-            var additionalMap = AdditionalFileHandler.readAdditionalMap();
-            List<Event> matches = events.stream()
-                    .filter(e -> {
-                        var a = additionalMap.get(e.getEventId());
-                        if (a == null || a.getCategory() == null) return false;
-                        return a.getCategory().toLowerCase().contains(q);
-                    })
-                    .toList();
+        try (EventCursor cursor = new EventCursor(matches)) {
 
-            displayResults(matches);
-            return;
-        }
+            if (!cursor.hasNext()) {
+                System.out.println("No events found.");
+                return;
+            }
 
-        System.out.println("Invalid choice.");
-    }
+            while (true) {
+                int firstShown = cursor.getPosition() + 1;
+                List<Event> page = cursor.nextPage();
 
-    private static void displayResults(List<Event> events) {
+                for (Event e : page) {
+                    System.out.println("[" + e.getEventId() + "] " + e.getTitle());
+                    System.out.println("    " + e.getStartDateTime() +
+                            " → " + e.getEndDateTime());
+                    System.out.println();
+                }
 
-        if (events.isEmpty()) {
-            System.out.println("No events found.");
-            return;
-        }
+                if (!cursor.hasNext()) {
+                    System.out.println("Showing results " + firstShown + "-" + cursor.getPosition() + " (end of results)");
+                    return;
+                }
 
-        for (Event e : events) {
-            System.out.println("[" + e.getEventId() + "] " + e.getTitle());
-            System.out.println("    " + e.getStartDateTime() +
-                    " → " + e.getEndDateTime());
-            System.out.println();
+                System.out.print("Showing results " + firstShown + "-" + cursor.getPosition() +
+                        ". Press Enter for more, or 'q' to stop: ");
+                String ans = sc.nextLine().trim().toLowerCase();
+                if (ans.equals("q")) {
+                    return;
+                }
+            }
         }
     }
 
@@ -39,11 +39,10 @@ public class AdditionalEventFields {
         // Assign the associated event ID
         this.eventId = eventId;
 
-        // Assign the location of the event
-        this.location = location;
-
-        // Assign the category of the event
-        this.category = category;
+        // Assign the location and category of the event, without
+        // surrounding spaces (the CSV file does not keep them)
+        this.location = location == null ? null : location.trim();
+        this.category = category == null ? null : category.trim();
     }
 
     /*
@@ -0,0 +1,241 @@
+package app.service;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.util.EventStore;
+import app.util.OrdinalBitmap;
+import app.util.StringPool;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/*
+ * AttributeIndex
+ * --------------
+ * This service class indexes event locations and categories so that
+ * attribute filters can be answered with bitmap operations.
+ *
+ * Locations and categories repeat heavily, so each distinct value is
+ * dictionary-encoded to a small int code (via StringPool), and every
+ * code owns an OrdinalBitmap of the events that carry it. Events are
+ * identified by their ordinal, i.e. their position in the EventStore the
+ * index was built from.
+ *
+ * A query such as "all Work events in March" becomes:
+ *     category("Work").and(startingBetween(Mar 1, Mar 31))
+ * and only the surviving ordinals are turned into Event objects.
+ *
+ * The index is a snapshot: rebuild it after events or additional
+ * fields change.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class AttributeIndex {
+
+    // Events the ordinals refer to
+    private final EventStore events;
+
+    // (eventId << 32 | ordinal) pairs sorted by event ID
+    private long[] idToOrdinal;
+
+    // Dictionaries of distinct values
+    private final StringPool locations = new StringPool();
+    private final StringPool categories = new StringPool();
+
+    // One bitmap per dictionary code
+    private OrdinalBitmap[] byLocation;
+    private OrdinalBitmap[] byCategory;
+
+    private AttributeIndex(EventStore events) {
+        this.events = events;
+    }
+
+    /*
+     * Builds the index for the given events and their additional fields.
+     * Additional rows whose event does not exist are ignored.
+     */
+    public static AttributeIndex build(EventStore events, List<AdditionalEventFields> additional) {
+
+        AttributeIndex index = new AttributeIndex(events);
+        int n = events.size();
+
+        // Map event IDs to ordinals with a sorted (id, ordinal) array
+        long[] idToOrdinal = new long[n];
+        for (int i = 0; i < n; i++) {
+            idToOrdinal[i] = ((long) events.idAt(i) << 32) | i;
+        }
+        Arrays.sort(idToOrdinal);
+        index.idToOrdinal = idToOrdinal;
+
+        // Encode each event's location and category (-1 = none)
+        int[] locationCodes = new int[n];
+        int[] categoryCodes = new int[n];
+        Arrays.fill(locationCodes, -1);
+        Arrays.fill(categoryCodes, -1);
+
+        for (AdditionalEventFields a : additional) {
+            int ordinal = index.ordinalOf(a.getEventId());
+            if (ordinal < 0) continue;
+
+            if (a.getLocation() != null) locationCodes[ordinal] = index.locations.intern(a.getLocation());
+            if (a.getCategory() != null) categoryCodes[ordinal] = index.categories.intern(a.getCategory());
+        }
+
+        index.byLocation = bitmaps(locationCodes, index.locations.size(), n);
+        index.byCategory = bitmaps(categoryCodes, index.categories.size(), n);
+        return index;
+    }
+
+    // ===================== FILTERS =====================
+
+    /*
+     * Events whose category equals the value exactly.
+     */
+    public OrdinalBitmap category(String value) {
+        return exact(categories, byCategory, value);
+    }
+
+    /*
+     * Events whose location equals the value exactly.
+     */
+    public OrdinalBitmap location(String value) {
+        return exact(locations, byLocation, value);
+    }
+
+    /*
+     * Events whose category contains the keyword (case-insensitive).
+     * The keyword is matched against each distinct value once, not per row.
+     */
+    public OrdinalBitmap categoryContaining(String keyword) {
+        return containing(categories, byCategory, keyword);
+    }
+
+    /*
+     * Events whose location contains the keyword (case-insensitive).
+     */
+    public OrdinalBitmap locationContaining(String keyword) {
+        return containing(locations, byLocation, keyword);
+    }
+
+    /*
+     * Events whose start date lies in [from, to] (inclusive).
+     */
+    public OrdinalBitmap startingBetween(LocalDate from, LocalDate to) {
+
+        long lo = EventStore.toSeconds(from.atStartOfDay());
+        long hi = EventStore.toSeconds(to.plusDays(1).atStartOfDay());
+
+        int n = events.size();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            long s = events.startSecondsAt(i);
+            if (s >= lo && s < hi) count++;
+        }
+
+        OrdinalBitmap out = new OrdinalBitmap(n, count);
+        for (int i = 0; i < n; i++) {
+            long s = events.startSecondsAt(i);
+            if (s >= lo && s < hi) out.add(i);
+        }
+        return out;
+    }
+
+    /*
+     * Every event in the store.
+     */
+    public OrdinalBitmap all() {
+        int n = events.size();
+        OrdinalBitmap out = new OrdinalBitmap(n, n);
+        for (int i = 0; i < n; i++) out.add(i);
+        return out;
+    }
+
+    // ===================== RESULTS =====================
+
+    /*
+     * Lazily materializes the events selected by a bitmap, in store order.
+     */
+    public Stream<Event> events(OrdinalBitmap selection) {
+        return IntStream.of(selection.toArray()).mapToObj(events::eventAt);
+    }
+
+    /*
+     * Returns the ordinal of the event with the given ID, or -1 if absent.
+     */
+    public int ordinalOf(int eventId) {
+
+        int lo = 0, hi = idToOrdinal.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = (int) (idToOrdinal[mid] >> 32);
+            if (id < eventId) lo = mid + 1;
+            else if (id > eventId) hi = mid - 1;
+            else return (int) idToOrdinal[mid];
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the store the ordinals refer to.
+     */
+    public EventStore store() {
+        return events;
+    }
+
+    /*
+     * Number of distinct categories / locations in the dictionaries.
+     */
+    public int distinctCategories() {
+        return categories.size();
+    }
+
+    public int distinctLocations() {
+        return locations.size();
+    }
+
+    // ===================== HELPERS =====================
+
+    private OrdinalBitmap exact(StringPool dict, OrdinalBitmap[] bitmaps, String value) {
+        int code = dict.codeOf(value);
+        return code < 0 ? new OrdinalBitmap(events.size(), 0) : bitmaps[code];
+    }
+
+    private OrdinalBitmap containing(StringPool dict, OrdinalBitmap[] bitmaps, String keyword) {
+
+        String q = keyword.toLowerCase(Locale.ROOT);
+        OrdinalBitmap result = new OrdinalBitmap(events.size(), 0);
+
+        for (int code = 0; code < dict.size(); code++) {
+            if (dict.get(code).toLowerCase(Locale.ROOT).contains(q)) {
+                result = result.or(bitmaps[code]);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Builds one bitmap per code from the per-ordinal code array.
+     */
+    private static OrdinalBitmap[] bitmaps(int[] codes, int distinct, int universe) {
+
+        // Count first so each bitmap starts in its final representation
+        int[] counts = new int[distinct];
+        for (int c : codes) {
+            if (c >= 0) counts[c]++;
+        }
+
+        OrdinalBitmap[] out = new OrdinalBitmap[distinct];
+        for (int c = 0; c < distinct; c++) {
+            out[c] = new OrdinalBitmap(universe, counts[c]);
+        }
+
+        for (int ordinal = 0; ordinal < codes.length; ordinal++) {
+            if (codes[ordinal] >= 0) out[codes[ordinal]].add(ordinal);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,542 @@
+package app.service;
+
+import app.model.Event;
+import app.model.RecurringEvent;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * AvailabilityIndex
+ * -----------------
+ * An optional per-minute availability structure for dense calendars.
+ *
+ * Every day that has at least one event gets a 1440-bit bitmap
+ * (long[23], one bit per minute). Days without events are never
+ * materialized, so memory is bounded by the number of busy days.
+ * Bitmaps live in a small open-addressing map keyed by the primitive
+ * epoch-day, avoiding a boxed Long and map entry per day.
+ *
+ * With the bitmaps in place, "is anything booked in [start, end)?",
+ * "busy at time T?" and free-slot searches become word-level bit
+ * operations instead of scans over events.
+ *
+ * Time is tracked at minute granularity: busy intervals are widened to
+ * whole minutes (start rounded down, end rounded up).
+ *
+ * Because bits are not reference counted, removing an event clears its
+ * minutes and then re-marks the remaining events on the affected days.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class AvailabilityIndex {
+
+    // Minutes per day and words per day bitmap
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64; // 23
+
+    // First and last day (inclusive) covered by recurring expansion
+    private final LocalDate horizonStart;
+    private final LocalDate horizonEnd;
+
+    // epoch-day -> 1440-bit bitmap
+    private final DayMap days = new DayMap();
+
+    // Events and rules currently represented, used when re-marking days
+    private final Map<Integer, Event> eventsById = new HashMap<>();
+    private final Map<Integer, RecurringEvent> rulesById = new HashMap<>();
+
+    /*
+     * Creates an empty index. Recurring events are expanded only within
+     * [horizonStart, horizonEnd]; base events are always marked.
+     */
+    public AvailabilityIndex(LocalDate horizonStart, LocalDate horizonEnd) {
+        this.horizonStart = horizonStart;
+        this.horizonEnd = horizonEnd;
+    }
+
+    /*
+     * Builds an index for the given events and recurrence rules.
+     */
+    public static AvailabilityIndex build(List<Event> events,
+                                          List<RecurringEvent> rules,
+                                          LocalDate horizonStart,
+                                          LocalDate horizonEnd) {
+
+        AvailabilityIndex index = new AvailabilityIndex(horizonStart, horizonEnd);
+
+        Map<Integer, RecurringEvent> ruleById = new HashMap<>();
+        if (rules != null) {
+            for (RecurringEvent r : rules) ruleById.put(r.getEventId(), r);
+        }
+
+        for (Event e : events) {
+            index.addEvent(e, ruleById.get(e.getEventId()));
+        }
+
+        return index;
+    }
+
+    // ===================== MAINTENANCE =====================
+
+    /*
+     * Marks an event (and its occurrences within the horizon) as busy.
+     */
+    public void addEvent(Event event, RecurringEvent rule) {
+
+        eventsById.put(event.getEventId(), event);
+        if (rule != null) {
+            rulesById.put(event.getEventId(), rule);
+        }
+
+        markEvent(event, rule);
+    }
+
+    /*
+     * Removes an event (and its occurrences) from the index.
+     * Minutes still used by other events on the same days stay busy.
+     */
+    public void removeEvent(int eventId) {
+
+        Event event = eventsById.remove(eventId);
+        RecurringEvent rule = rulesById.remove(eventId);
+        if (event == null) return;
+
+        // Collect the days this event touched, then clear them
+        List<Event> intervals = intervalsOf(event, rule);
+        Set<Long> touched = new HashSet<>();
+        for (Event e : intervals) {
+            for (long d = dayOf(e.getStartDateTime()); d <= lastDayOf(e); d++) {
+                touched.add(d);
+            }
+            setRange(e.getStartDateTime(), e.getEndDateTime(), false);
+        }
+
+        // Re-mark every remaining event that shares one of those days
+        for (Event other : eventsById.values()) {
+            for (Event occ : intervalsOf(other, rulesById.get(other.getEventId()))) {
+                for (long d = dayOf(occ.getStartDateTime()); d <= lastDayOf(occ); d++) {
+                    if (touched.contains(d)) {
+                        setRange(occ.getStartDateTime(), occ.getEndDateTime(), true);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Drop days that became completely free
+        for (long d : touched) {
+            long[] bits = days.get(d);
+            if (bits != null && isEmpty(bits)) {
+                days.remove(d);
+            }
+        }
+    }
+
+    // ===================== QUERIES =====================
+
+    /*
+     * Returns true if the given minute is booked.
+     */
+    public boolean isBusyAt(LocalDateTime t) {
+
+        long[] bits = days.get(dayOf(t));
+        if (bits == null) return false;
+
+        int m = minuteOf(t);
+        return (bits[m >>> 6] & (1L << m)) != 0;
+    }
+
+    /*
+     * Returns true if any minute in [start, end) is booked.
+     */
+    public boolean isBooked(LocalDateTime start, LocalDateTime end) {
+
+        long from = globalMinuteFloor(start);
+        long to = globalMinuteCeil(end);
+
+        return from < to && nextSetMinute(from, to) >= 0;
+    }
+
+    /*
+     * Returns up to maxSlots of the earliest free slots of the given duration
+     * between from and to, with the same semantics as FreeSlotFinder.
+     */
+    public List<FreeSlotFinder.Slot> findFreeSlots(Duration duration,
+                                                   LocalDateTime from,
+                                                   LocalDateTime to,
+                                                   LocalTime workStart,
+                                                   LocalTime workEnd,
+                                                   int maxSlots) {
+
+        List<FreeSlotFinder.Slot> slots = new ArrayList<>();
+        long need = (duration.getSeconds() + 59) / 60;
+
+        long fromM = globalMinuteCeil(from);
+        long toM = globalMinuteFloor(to);
+
+        if (workStart == null || workEnd == null) {
+            collectGaps(slots, fromM, toM, need, maxSlots);
+            return slots;
+        }
+
+        // With working hours, search each day's window separately
+        for (long d = Math.floorDiv(fromM, MINUTES_PER_DAY);
+             d <= Math.floorDiv(toM, MINUTES_PER_DAY) && slots.size() < maxSlots;
+             d++) {
+
+            long windowStart = Math.max(fromM, d * MINUTES_PER_DAY + workStart.getHour() * 60 + workStart.getMinute());
+            long windowEnd = Math.min(toM, d * MINUTES_PER_DAY + workEnd.getHour() * 60 + workEnd.getMinute());
+
+            if (windowEnd - windowStart >= need) {
+                collectGaps(slots, windowStart, windowEnd, need, maxSlots);
+            }
+        }
+
+        return slots;
+    }
+
+    /*
+     * Returns true if recurring events were expanded for the given day,
+     * so queries on it are complete.
+     */
+    public boolean covers(LocalDate day) {
+        return !day.isBefore(horizonStart) && !day.isAfter(horizonEnd);
+    }
+
+    /*
+     * Returns the number of days that currently hold a bitmap.
+     */
+    public int materializedDays() {
+        return days.size();
+    }
+
+    // ===================== BIT OPERATIONS =====================
+
+    /*
+     * Adds one slot per free run of at least "need" minutes in [from, to).
+     */
+    private void collectGaps(List<FreeSlotFinder.Slot> slots,
+                             long from, long to, long need, int maxSlots) {
+
+        long cursor = from;
+
+        while (cursor < to && slots.size() < maxSlots) {
+
+            long freeStart = nextClearMinute(cursor, to);
+            if (freeStart < 0) return;
+
+            long busyStart = nextSetMinute(freeStart, to);
+            long freeEnd = busyStart < 0 ? to : busyStart;
+
+            if (freeEnd - freeStart >= need) {
+                slots.add(new FreeSlotFinder.Slot(toTime(freeStart), toTime(freeStart + need)));
+            }
+
+            cursor = freeEnd;
+        }
+    }
+
+    /*
+     * Returns the first booked minute in [from, to), or -1.
+     * Days without a bitmap are skipped with a single lookup.
+     */
+    private long nextSetMinute(long from, long to) {
+
+        long m = from;
+
+        while (m < to) {
+            long day = Math.floorDiv(m, MINUTES_PER_DAY);
+            long dayBase = day * MINUTES_PER_DAY;
+            long[] bits = days.get(day);
+            int limit = (int) Math.min(MINUTES_PER_DAY, to - dayBase);
+
+            if (bits != null) {
+                int found = nextBit(bits, (int) (m - dayBase), limit, true);
+                if (found >= 0) return dayBase + found;
+            }
+
+            m = dayBase + MINUTES_PER_DAY;
+        }
+
+        return -1;
+    }
+
+    /*
+     * Returns the first free minute in [from, to), or -1.
+     */
+    private long nextClearMinute(long from, long to) {
+
+        long m = from;
+
+        while (m < to) {
+            long day = Math.floorDiv(m, MINUTES_PER_DAY);
+            long dayBase = day * MINUTES_PER_DAY;
+            long[] bits = days.get(day);
+
+            // A day without a bitmap is completely free
+            if (bits == null) return m;
+
+            int limit = (int) Math.min(MINUTES_PER_DAY, to - dayBase);
+            int found = nextBit(bits, (int) (m - dayBase), limit, false);
+            if (found >= 0) return dayBase + found;
+
+            m = dayBase + MINUTES_PER_DAY;
+        }
+
+        return -1;
+    }
+
+    /*
+     * Finds the next set (or clear) bit in [from, limit) one word at a time.
+     */
+    private static int nextBit(long[] bits, int from, int limit, boolean set) {
+
+        if (from >= limit) return -1;
+
+        int wordIndex = from >>> 6;
+        long word = set ? bits[wordIndex] : ~bits[wordIndex];
+        word &= -1L << (from & 63);
+
+        while (true) {
+            if (word != 0) {
+                int bit = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return bit < limit ? bit : -1;
+            }
+            if (++wordIndex >= WORDS_PER_DAY || (wordIndex << 6) >= limit) {
+                return -1;
+            }
+            word = set ? bits[wordIndex] : ~bits[wordIndex];
+        }
+    }
+
+    /*
+     * Sets or clears every minute in [start, end), across days if needed.
+     */
+    private void setRange(LocalDateTime start, LocalDateTime end, boolean busy) {
+
+        if (end.isBefore(start)) {
+            LocalDateTime tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        long from = globalMinuteFloor(start);
+        long to = globalMinuteCeil(end);
+
+        while (from < to) {
+            long day = Math.floorDiv(from, MINUTES_PER_DAY);
+            long dayBase = day * MINUTES_PER_DAY;
+            int lo = (int) (from - dayBase);
+            int hi = (int) Math.min(MINUTES_PER_DAY, to - dayBase);
+
+            long[] bits = busy ? days.getOrCreate(day) : days.get(day);
+            if (bits != null) {
+                setBits(bits, lo, hi, busy);
+            }
+
+            from = dayBase + MINUTES_PER_DAY;
+        }
+    }
+
+    /*
+     * Sets or clears bits [lo, hi) using whole-word masks.
+     */
+    private static void setBits(long[] bits, int lo, int hi, boolean value) {
+
+        if (lo >= hi) return;
+
+        int firstWord = lo >>> 6;
+        int lastWord = (hi - 1) >>> 6;
+
+        for (int w = firstWord; w <= lastWord; w++) {
+            long mask = -1L;
+            if (w == firstWord) mask &= -1L << (lo & 63);
+            if (w == lastWord) mask &= -1L >>> (63 - ((hi - 1) & 63));
+
+            if (value) {
+                bits[w] |= mask;
+            } else {
+                bits[w] &= ~mask;
+            }
+        }
+    }
+
+    /*
+     * Returns true if no bit is set.
+     */
+    private static boolean isEmpty(long[] bits) {
+        for (long w : bits) {
+            if (w != 0) return false;
+        }
+        return true;
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Marks the event's base interval and its occurrences within the horizon.
+     */
+    private void markEvent(Event event, RecurringEvent rule) {
+        for (Event e : intervalsOf(event, rule)) {
+            setRange(e.getStartDateTime(), e.getEndDateTime(), true);
+        }
+    }
+
+    /*
+     * Returns the base interval plus occurrences within the horizon.
+     * Expansion starts one event length (plus a day) before the horizon,
+     * as in FreeSlotFinder, so occurrences that start earlier but run
+     * into it are included.
+     */
+    private List<Event> intervalsOf(Event event, RecurringEvent rule) {
+
+        List<Event> list = new ArrayList<>();
+        list.add(event);
+
+        if (rule != null) {
+            long spanDays = Duration.between(event.getStartDateTime(), event.getEndDateTime()).abs().toDays();
+            RecurrenceExpander.forEachOccurrence(event, rule, horizonStart.minusDays(spanDays + 1), horizonEnd,
+                    list::add);
+        }
+
+        return list;
+    }
+
+    private static long dayOf(LocalDateTime t) {
+        return t.toLocalDate().toEpochDay();
+    }
+
+    /*
+     * Returns the epoch-day of the last minute covered by the event.
+     */
+    private static long lastDayOf(Event e) {
+        LocalDateTime later = e.getEndDateTime().isBefore(e.getStartDateTime())
+                ? e.getStartDateTime()
+                : e.getEndDateTime();
+        return Math.floorDiv(globalMinuteCeil(later) - 1, MINUTES_PER_DAY);
+    }
+
+    private static int minuteOf(LocalDateTime t) {
+        return t.getHour() * 60 + t.getMinute();
+    }
+
+    private static long globalMinuteFloor(LocalDateTime t) {
+        return dayOf(t) * MINUTES_PER_DAY + minuteOf(t);
+    }
+
+    private static long globalMinuteCeil(LocalDateTime t) {
+        boolean partial = t.getSecond() != 0 || t.getNano() != 0;
+        return globalMinuteFloor(t) + (partial ? 1 : 0);
+    }
+
+    private static LocalDateTime toTime(long globalMinute) {
+        long day = Math.floorDiv(globalMinute, MINUTES_PER_DAY);
+        int minute = Math.floorMod(globalMinute, MINUTES_PER_DAY);
+        return LocalDate.ofEpochDay(day).atStartOfDay().plusMinutes(minute);
+    }
+
+    /*
+     * DayMap
+     * ------
+     * Open-addressing hash map from a primitive epoch-day to its bitmap.
+     * Uses linear probing and backward-shift deletion (no tombstones).
+     */
+    private static class DayMap {
+
+        private long[] keys = new long[64];
+        private long[][] values = new long[64][];
+        private int size;
+
+        long[] get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        long[] getOrCreate(long key) {
+            long[] existing = get(key);
+            if (existing != null) return existing;
+
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+
+            long[] bits = new long[WORDS_PER_DAY];
+            insert(key, bits);
+            return bits;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) return;
+
+            // Shift following entries back so probe chains stay intact
+            int gap = i;
+            int j = (i + 1) & mask;
+            while (values[j] != null) {
+                int home = slot(keys[j], mask);
+                boolean movable = gap <= j ? (home <= gap || home > j) : (home <= gap && home > j);
+                if (movable) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+                j = (j + 1) & mask;
+            }
+
+            values[gap] = null;
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void insert(long key, long[] bits) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = bits;
+            size++;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[][] oldValues = values;
+
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2][];
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
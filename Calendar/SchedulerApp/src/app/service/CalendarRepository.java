@@ -0,0 +1,813 @@
+package app.service;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+import app.util.AdditionalFileHandler;
+import app.util.DataLock;
+import app.util.EventFileHandler;
+import app.util.EventStore;
+import app.util.IdSequence;
+import app.util.IntervalIndex;
+import app.util.OrdinalBitmap;
+import app.util.PersistentIntMap;
+import app.util.RecurringFileHandler;
+import app.util.ReminderFileHandler;
+import app.util.UnitOfWork;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * CalendarRepository
+ * ------------------
+ * The whole calendar held in memory: events plus the additional fields,
+ * reminders and recurrence rules, all keyed by event ID.
+ *
+ * The data files are read once, in load(). Every write is first
+ * committed to the files through a UnitOfWork and only then made
+ * visible in memory, so the repository never shows a change that was
+ * not saved.
+ *
+ * Other instances may write the same data/ directory:
+ * - Each snapshot records the DataLock table versions it reflects.
+ * - refresh() compares them with the shared counters and reloads only
+ *   the tables another process changed. This is cheap enough to call
+ *   every second.
+ * - Writes refresh first and run under the DataLock, so validation and
+ *   commit see every other instance's changes.
+ *
+ * Versions:
+ * - The in-memory calendar is an immutable Snapshot built from
+ *   PersistentIntMaps. The current one is published through an
+ *   AtomicReference.
+ * - A write builds the next Snapshot by path copying, sharing all
+ *   untouched nodes with the previous one, and publishes it in a single
+ *   reference swap. Readers therefore never lock, never wait for a
+ *   write and never see a half-applied one.
+ * - snapshot() hands out the current version for free. A long read
+ *   (a report, an export) keeps seeing that version however many
+ *   writes are published meanwhile.
+ * - Writers are serialized by a mutex held for the whole write
+ *   (validation, commit, publish), so no write works from a stale copy.
+ * - The search indexes are shared between versions (see Indexes), and
+ *   the writers' conflict check uses an interval index carried from
+ *   one version to the next (see ConflictIndex), so neither a search
+ *   after a write nor the write itself walks the whole calendar.
+ *
+ * This class does NOT handle user interaction.
+ */
+public class CalendarRepository {
+
+    /*
+     * Outcome of a write.
+     */
+    public enum Status { OK, INVALID, NOT_FOUND, CONFLICT, NOT_SAVED }
+
+    public static class WriteResult {
+
+        public final Status status;
+
+        // ID of the event written (new ID for add), or -1
+        public final int eventId;
+
+        public WriteResult(Status status, int eventId) {
+            this.status = status;
+            this.eventId = eventId;
+        }
+    }
+
+    /*
+     * One page of matching events plus the total number of matches.
+     */
+    public static class Page {
+
+        public final int total;
+        public final List<Event> events;
+
+        public Page(int total, List<Event> events) {
+            this.total = total;
+            this.events = events;
+        }
+    }
+
+    /*
+     * An event together with its optional rows, read in one step.
+     */
+    public static class Details {
+
+        public final Event event;
+        public final AdditionalEventFields additional;  // may be null
+        public final Reminder reminder;                 // may be null
+        public final RecurringEvent rule;               // may be null
+
+        public Details(Event event, AdditionalEventFields additional, Reminder reminder, RecurringEvent rule) {
+            this.event = event;
+            this.additional = additional;
+            this.reminder = reminder;
+            this.rule = rule;
+        }
+    }
+
+    /*
+     * Compact, immutable event fields (times in epoch seconds). Events
+     * are rebuilt from rows on read.
+     */
+    private static final class Row {
+
+        final String title;
+        final String description;
+        final long start;
+        final long end;
+
+        Row(String title, String description, long start, long end) {
+            this.title = title;
+            this.description = description;
+            this.start = start;
+            this.end = end;
+        }
+
+        Event toEvent(int id) {
+            return new Event(id, title, description, EventStore.toDateTime(start), EventStore.toDateTime(end));
+        }
+    }
+
+    /*
+     * Indexes
+     * -------
+     * The flat EventStore and the QueryEngine of one version, built on
+     * first use and shared by the snapshots published after it until
+     * too many events have changed. Threads may race to build them;
+     * every copy is identical, so whichever is kept is correct.
+     */
+    private static final class Indexes {
+
+        private final PersistentIntMap<Row> events;
+        private final PersistentIntMap<AdditionalEventFields> additional;
+        private final PersistentIntMap<Reminder> reminders;
+        private final PersistentIntMap<RecurringEvent> rules;
+
+        private volatile EventStore store;
+        private volatile QueryEngine engine;
+
+        Indexes(PersistentIntMap<Row> events,
+                PersistentIntMap<AdditionalEventFields> additional,
+                PersistentIntMap<Reminder> reminders,
+                PersistentIntMap<RecurringEvent> rules) {
+            this.events = events;
+            this.additional = additional;
+            this.reminders = reminders;
+            this.rules = rules;
+        }
+
+        EventStore store() {
+            EventStore s = store;
+            if (s == null) store = s = storeOf(events);
+            return s;
+        }
+
+        QueryEngine engine() {
+            QueryEngine e = engine;
+            if (e == null) {
+                engine = e = QueryEngine.of(store(), additional.values(), reminders.values(), rules.values());
+            }
+            return e;
+        }
+    }
+
+    /*
+     * ConflictIndex
+     * -------------
+     * Event intervals for the writers' conflict checks, carried from one
+     * version to the next: an IntervalIndex of the events of one version
+     * plus two small ones of the intervals added and removed since.
+     * For a valid [s, e), #(starts < e) - #(ends <= s) is exactly the
+     * number of stored intervals it overlaps, so the three counts
+     * combine and a check costs O(log n) instead of a walk of every
+     * event. Only used under the writer mutex.
+     */
+    private static final class ConflictIndex {
+
+        private final IntervalIndex base = new IntervalIndex();
+        private final IntervalIndex added = new IntervalIndex();
+        private final IntervalIndex removed = new IntervalIndex();
+
+        // The events map this index currently describes
+        private PersistentIntMap<Row> events;
+
+        ConflictIndex(PersistentIntMap<Row> events) {
+            this.events = events;
+            events.forEach((id, r) -> base.addUnsorted(r.start, r.end));
+            base.sort();
+        }
+
+        int overlaps(long start, long end) {
+            return count(base, start, end) - count(removed, start, end) + count(added, start, end);
+        }
+
+        void change(Row before, Row after, PersistentIntMap<Row> next) {
+            if (before != null) insert(removed, before);
+            if (after != null) insert(added, after);
+            events = next;
+        }
+
+        int changes() {
+            return added.size() + removed.size();
+        }
+
+        private static int count(IntervalIndex index, long start, long end) {
+            return index.countStartsBefore(end) - index.countEndsAtOrBefore(start);
+        }
+
+        private static void insert(IntervalIndex index, Row r) {
+            index.mergeSorted(new long[] { Math.min(r.start, r.end) },
+                    new long[] { Math.max(r.start, r.end) }, 1);
+        }
+    }
+
+    /*
+     * Snapshot
+     * --------
+     * One immutable version of the calendar. All reads on a snapshot
+     * see the same data.
+     *
+     * Searches run on Indexes shared with earlier versions. The IDs of
+     * the events changed since those were built are kept, sorted, in
+     * changed: their indexed results are dropped and the events are
+     * matched again one by one, then merged back in ID order.
+     */
+    public static final class Snapshot {
+
+        private static final int[] NONE = new int[0];
+
+        private final PersistentIntMap<Row> events;
+        private final PersistentIntMap<AdditionalEventFields> additional;
+        private final PersistentIntMap<Reminder> reminders;
+        private final PersistentIntMap<RecurringEvent> rules;
+
+        // DataLock versions of the tables this snapshot was built from
+        private final long[] versions;
+
+        private final Indexes indexes;
+        private final int[] changed;
+
+        // Flat copy of this version's events, only built when changed is not empty
+        private volatile EventStore store;
+
+        private Snapshot(PersistentIntMap<Row> events,
+                         PersistentIntMap<AdditionalEventFields> additional,
+                         PersistentIntMap<Reminder> reminders,
+                         PersistentIntMap<RecurringEvent> rules,
+                         long[] versions) {
+            this(events, additional, reminders, rules, versions,
+                    new Indexes(events, additional, reminders, rules), NONE);
+        }
+
+        private Snapshot(PersistentIntMap<Row> events,
+                         PersistentIntMap<AdditionalEventFields> additional,
+                         PersistentIntMap<Reminder> reminders,
+                         PersistentIntMap<RecurringEvent> rules,
+                         long[] versions, Indexes indexes, int[] changed) {
+            this.events = events;
+            this.additional = additional;
+            this.reminders = reminders;
+            this.rules = rules;
+            this.versions = versions;
+            this.indexes = indexes;
+            this.changed = changed;
+        }
+
+        /*
+         * The version after a write to event id. Keeps the shared
+         * indexes while few events have changed: a rebuild costs
+         * O(n log n), each changed event adds a little to every search,
+         * so the limit grows with the calendar.
+         */
+        private Snapshot next(int id,
+                              PersistentIntMap<Row> events,
+                              PersistentIntMap<AdditionalEventFields> additional,
+                              PersistentIntMap<Reminder> reminders,
+                              PersistentIntMap<RecurringEvent> rules,
+                              long[] versions) {
+
+            int at = Arrays.binarySearch(changed, id);
+            if (at >= 0) return new Snapshot(events, additional, reminders, rules, versions, indexes, changed);
+            if (changed.length >= Math.max(64, events.size() / 256)) {
+                return new Snapshot(events, additional, reminders, rules, versions);
+            }
+
+            int insert = -at - 1;
+            int[] more = new int[changed.length + 1];
+            System.arraycopy(changed, 0, more, 0, insert);
+            more[insert] = id;
+            System.arraycopy(changed, insert, more, insert + 1, changed.length - insert);
+            return new Snapshot(events, additional, reminders, rules, versions, indexes, more);
+        }
+
+        public int size() {
+            return events.size();
+        }
+
+        public Event find(int id) {
+            Row r = events.get(id);
+            return r == null ? null : r.toEvent(id);
+        }
+
+        /*
+         * Returns null if there is no event with this ID.
+         */
+        public Details details(int id) {
+            Event e = find(id);
+            return e == null ? null : new Details(e, additional.get(id), reminders.get(id), rules.get(id));
+        }
+
+        /*
+         * Every event, in ID order.
+         */
+        public List<Event> events() {
+            return Collections.unmodifiableList(store().asList());
+        }
+
+        /*
+         * Events matching the query, in ID order, skipping the first
+         * offset matches and returning at most limit.
+         */
+        public Page search(Query query, int offset, int limit) {
+
+            QueryEngine e = indexes.engine();
+            OrdinalBitmap selected = e.select(query);
+            List<Event> rematched = rematch(query);
+
+            int total = selected.cardinality() + rematched.size();
+            for (int id : changed) {
+                if (e.selects(selected, id)) total--;
+            }
+            try (Stream<Event> matches = merge(e.events(selected), rematched)) {
+                return new Page(total, matches.skip(offset).limit(limit).toList());
+            }
+        }
+
+        /*
+         * Events and recurring occurrences starting within [from, to],
+         * sorted by start time.
+         */
+        public List<Event> occurrences(LocalDate from, LocalDate to) {
+
+            List<Event> result = new ArrayList<>();
+            Query range = Query.between(from, to);
+            QueryEngine e = indexes.engine();
+            try (Stream<Event> base = merge(e.events(e.select(range)), rematch(range))) {
+                base.forEach(result::add);
+            }
+
+            rules.forEach((id, rule) -> {
+                Event base = find(id);
+                if (base != null) RecurrenceExpander.forEachOccurrence(base, rule, from, to, result::add);
+            });
+
+            result.sort(Comparator.comparing(Event::getStartDateTime));
+            return result;
+        }
+
+        public Optional<ReminderService.NextReminderInfo> nextReminder(LocalDateTime now) {
+            return ReminderService.getNextUpcomingReminder(events(), rules.values(), reminders.values(), now);
+        }
+
+        private EventStore store() {
+            if (changed.length == 0) return indexes.store();
+            EventStore s = store;
+            if (s == null) store = s = storeOf(events);
+            return s;
+        }
+
+        /*
+         * The changed events (still present) that match the query now,
+         * in ID order.
+         */
+        private List<Event> rematch(Query query) {
+
+            List<Event> result = new ArrayList<>();
+            for (int id : changed) {
+                Event e = find(id);
+                if (e != null && QueryEngine.matches(query, e, additional.get(id),
+                        reminders.containsKey(id), rules.containsKey(id))) {
+                    result.add(e);
+                }
+            }
+            return result;
+        }
+
+        /*
+         * The indexed matches minus the changed events, merged in ID
+         * order with their rematched versions.
+         */
+        private Stream<Event> merge(Stream<Event> indexed, List<Event> rematched) {
+
+            if (changed.length == 0) return indexed;
+
+            Iterator<Event> left = indexed.filter(e -> Arrays.binarySearch(changed, e.getEventId()) < 0).iterator();
+            Iterator<Event> right = rematched.iterator();
+            Spliterator<Event> merged = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+                private Event nextLeft;
+                private Event nextRight;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Event> action) {
+                    if (nextLeft == null && left.hasNext()) nextLeft = left.next();
+                    if (nextRight == null && right.hasNext()) nextRight = right.next();
+                    if (nextLeft == null && nextRight == null) return false;
+
+                    if (nextRight == null || nextLeft != null && nextLeft.getEventId() < nextRight.getEventId()) {
+                        action.accept(nextLeft);
+                        nextLeft = null;
+                    } else {
+                        action.accept(nextRight);
+                        nextRight = null;
+                    }
+                    return true;
+                }
+            };
+            return StreamSupport.stream(merged, false).onClose(indexed::close);
+        }
+    }
+
+    private final AtomicReference<Snapshot> current;
+
+    // Serializes writes from start to finish
+    private final ReentrantLock writer = new ReentrantLock();
+
+    // Built on the first conflict check; guarded by the writer mutex
+    private ConflictIndex conflicts;
+
+    private CalendarRepository(Snapshot first) {
+        this.current = new AtomicReference<>(first);
+    }
+
+    /*
+     * Loads the four data files.
+     */
+    public static CalendarRepository load() {
+
+        // Counters first: a change racing the load is picked up by the next refresh
+        long[] versions = DataLock.versions();
+        return new CalendarRepository(new Snapshot(loadEvents(), loadAdditional(), loadReminders(), loadRules(),
+                versions));
+    }
+
+    // ===================== READS =====================
+
+    /*
+     * The current version. Never blocks; the snapshot stays valid and
+     * unchanged for as long as the caller holds it.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    public Event find(int id) {
+        return snapshot().find(id);
+    }
+
+    public Details details(int id) {
+        return snapshot().details(id);
+    }
+
+    public Page search(Query query, int offset, int limit) {
+        return snapshot().search(query, offset, limit);
+    }
+
+    public List<Event> occurrences(LocalDate from, LocalDate to) {
+        return snapshot().occurrences(from, to);
+    }
+
+    public Optional<ReminderService.NextReminderInfo> nextReminder(LocalDateTime now) {
+        return snapshot().nextReminder(now);
+    }
+
+    /*
+     * Reloads the tables other instances have written since this
+     * repository last looked, and publishes them as a new snapshot.
+     * Returns whether anything was reloaded.
+     */
+    public boolean refresh() {
+
+        writer.lock();
+        try {
+            Snapshot v = current.get();
+            return refreshLocked() != v;
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    // ===================== WRITES =====================
+
+    /*
+     * Adds an event (the draft's ID is ignored) with its optional extras.
+     * reminderMinutes and rule may be null; the rule's ID is ignored.
+     */
+    public WriteResult add(Event draft, String location, String category,
+                           Integer reminderMinutes, RecurringEvent rule) {
+
+        writer.lock();
+        DataLock.lock();
+        try {
+            Snapshot v = refreshLocked();
+
+            if (!draft.getStartDateTime().isBefore(draft.getEndDateTime())) return result(Status.INVALID, -1);
+            if (hasConflict(v, -1, draft.getStartDateTime(), draft.getEndDateTime())) return result(Status.CONFLICT, -1);
+
+            int id = IdSequence.next();
+            if (id < 0) return result(Status.NOT_SAVED, -1);
+
+            Event e = new Event(id, draft.getTitle(), draft.getDescription(),
+                    draft.getStartDateTime(), draft.getEndDateTime());
+            AdditionalEventFields a = new AdditionalEventFields(id, nullToEmpty(location), nullToEmpty(category));
+            Reminder r = reminderMinutes == null ? null : new Reminder(id, reminderMinutes);
+            RecurringEvent rec = rule == null ? null
+                    : new RecurringEvent(id, rule.getInterval(), rule.getRecurrentTimes(), rule.getRecurrentEndDate());
+
+            UnitOfWork uow = new UnitOfWork().putEvent(e).putAdditional(a);
+            if (r != null) uow.putReminder(r);
+            if (rec != null) uow.putRecurring(rec);
+            if (!uow.commit()) return result(Status.NOT_SAVED, -1);
+
+            publish(v, id, v.events.with(id, toRow(e)),
+                    v.additional.with(id, a),
+                    r == null ? v.reminders : v.reminders.with(id, r),
+                    rec == null ? v.rules : v.rules.with(id, rec));
+            return result(Status.OK, id);
+
+        } finally {
+            DataLock.unlock();
+            writer.unlock();
+        }
+    }
+
+    /*
+     * Replaces an event's fields with change applied to its current
+     * version, so concurrent updates of different fields are not lost.
+     * location / category left null keep their current values.
+     */
+    public WriteResult update(int id, UnaryOperator<Event> change, String location, String category) {
+
+        writer.lock();
+        DataLock.lock();
+        try {
+            Snapshot v = refreshLocked();
+
+            Event old = v.find(id);
+            if (old == null) return result(Status.NOT_FOUND, id);
+
+            Event changed = change.apply(old);
+            Event e = new Event(id, changed.getTitle(), changed.getDescription(),
+                    changed.getStartDateTime(), changed.getEndDateTime());
+
+            if (!e.getStartDateTime().isBefore(e.getEndDateTime())) return result(Status.INVALID, id);
+            if (hasConflict(v, id, e.getStartDateTime(), e.getEndDateTime())) return result(Status.CONFLICT, id);
+
+            UnitOfWork uow = new UnitOfWork().putEvent(e);
+
+            PersistentIntMap<AdditionalEventFields> additional = v.additional;
+            if (location != null || category != null) {
+                AdditionalEventFields oldFields = v.additional.get(id);
+                AdditionalEventFields a = new AdditionalEventFields(id,
+                        location != null ? location : oldFields == null ? "" : oldFields.getLocation(),
+                        category != null ? category : oldFields == null ? "" : oldFields.getCategory());
+                uow.putAdditional(a);
+                additional = additional.with(id, a);
+            }
+
+            if (!uow.commit()) return result(Status.NOT_SAVED, id);
+
+            publish(v, id, v.events.with(id, toRow(e)), additional, v.reminders, v.rules);
+            return result(Status.OK, id);
+
+        } finally {
+            DataLock.unlock();
+            writer.unlock();
+        }
+    }
+
+    /*
+     * Deletes an event and every row tied to it.
+     */
+    public WriteResult delete(int id) {
+
+        writer.lock();
+        DataLock.lock();
+        try {
+            Snapshot v = refreshLocked();
+            if (!v.events.containsKey(id)) return result(Status.NOT_FOUND, id);
+
+            UnitOfWork uow = new UnitOfWork().deleteEvent(id);
+            if (v.additional.containsKey(id)) uow.deleteAdditional(id);
+            if (v.reminders.containsKey(id)) uow.deleteReminder(id);
+            if (v.rules.containsKey(id)) uow.deleteRecurring(id);
+            if (!uow.commit()) return result(Status.NOT_SAVED, id);
+
+            publish(v, id, v.events.without(id), v.additional.without(id),
+                    v.reminders.without(id), v.rules.without(id));
+            return result(Status.OK, id);
+
+        } finally {
+            DataLock.unlock();
+            writer.unlock();
+        }
+    }
+
+    /*
+     * Sets (minutes != null) or removes (null) an event's reminder.
+     */
+    public WriteResult setReminder(int id, Integer minutes) {
+
+        writer.lock();
+        DataLock.lock();
+        try {
+            Snapshot v = refreshLocked();
+            if (!v.events.containsKey(id)) return result(Status.NOT_FOUND, id);
+            if (minutes != null && minutes < 0) return result(Status.INVALID, id);
+
+            UnitOfWork uow = new UnitOfWork();
+            Reminder r = minutes == null ? null : new Reminder(id, minutes);
+            if (r != null) uow.putReminder(r);
+            else if (v.reminders.containsKey(id)) uow.deleteReminder(id);
+            if (!uow.commit()) return result(Status.NOT_SAVED, id);
+
+            publish(v, id, v.events, v.additional,
+                    r != null ? v.reminders.with(id, r) : v.reminders.without(id), v.rules);
+            return result(Status.OK, id);
+
+        } finally {
+            DataLock.unlock();
+            writer.unlock();
+        }
+    }
+
+    /*
+     * Sets (rule != null) or removes (null) an event's recurrence rule.
+     */
+    public WriteResult setRule(int id, RecurringEvent rule) {
+
+        writer.lock();
+        DataLock.lock();
+        try {
+            Snapshot v = refreshLocked();
+            if (!v.events.containsKey(id)) return result(Status.NOT_FOUND, id);
+            if (rule != null && RecurrenceExpander.parseInterval(rule.getInterval()) == null) {
+                return result(Status.INVALID, id);
+            }
+
+            UnitOfWork uow = new UnitOfWork();
+            RecurringEvent rec = rule == null ? null
+                    : new RecurringEvent(id, rule.getInterval(), rule.getRecurrentTimes(), rule.getRecurrentEndDate());
+            if (rec != null) uow.putRecurring(rec);
+            else if (v.rules.containsKey(id)) uow.deleteRecurring(id);
+            if (!uow.commit()) return result(Status.NOT_SAVED, id);
+
+            publish(v, id, v.events, v.additional, v.reminders,
+                    rec != null ? v.rules.with(id, rec) : v.rules.without(id));
+            return result(Status.OK, id);
+
+        } finally {
+            DataLock.unlock();
+            writer.unlock();
+        }
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Makes a committed write to event id visible, and carries the
+     * conflict index over to it. Called with the writer mutex and the
+     * DataLock held, so the counters read here cover this write and no
+     * other instance's.
+     */
+    private void publish(Snapshot v, int id,
+                         PersistentIntMap<Row> events,
+                         PersistentIntMap<AdditionalEventFields> additional,
+                         PersistentIntMap<Reminder> reminders,
+                         PersistentIntMap<RecurringEvent> rules) {
+
+        if (conflicts != null && events != v.events) {
+            if (conflicts.events == v.events) conflicts.change(v.events.get(id), events.get(id), events);
+            else conflicts = null;
+        }
+        current.set(v.next(id, events, additional, reminders, rules, DataLock.versions()));
+    }
+
+    /*
+     * Same rule as EventFileHandler.hasConflict, ignoring event selfId.
+     * Rebuilds the conflict index when it describes other events than v
+     * (another instance's changes were reloaded) or has collected more
+     * changes than a rebuild costs.
+     */
+    private boolean hasConflict(Snapshot v, int selfId, LocalDateTime start, LocalDateTime end) {
+
+        if (conflicts == null || conflicts.events != v.events
+                || conflicts.changes() > Math.max(1024, v.events.size() / 8)) {
+            conflicts = new ConflictIndex(v.events);
+        }
+
+        long s = EventStore.toSeconds(start), e = EventStore.toSeconds(end);
+        int overlaps = conflicts.overlaps(s, e);
+
+        Row self = selfId < 0 ? null : v.events.get(selfId);
+        if (self != null && s < Math.max(self.start, self.end) && e > Math.min(self.start, self.end)) overlaps--;
+        return overlaps > 0;
+    }
+
+    /*
+     * Brings the current snapshot up to date with the data files,
+     * reloading only the tables whose counters moved. Called with the
+     * writer mutex held.
+     */
+    private Snapshot refreshLocked() {
+
+        Snapshot v = current.get();
+        long[] now = DataLock.versions();
+        if (Arrays.equals(now, v.versions)) return v;
+
+        Snapshot next = new Snapshot(
+                moved(v, now, DataLock.Table.EVENTS) ? loadEvents() : v.events,
+                moved(v, now, DataLock.Table.ADDITIONAL) ? loadAdditional() : v.additional,
+                moved(v, now, DataLock.Table.REMINDERS) ? loadReminders() : v.reminders,
+                moved(v, now, DataLock.Table.RECURRING) ? loadRules() : v.rules,
+                now);
+        current.set(next);
+        return next;
+    }
+
+    private static boolean moved(Snapshot v, long[] now, DataLock.Table table) {
+        return now[table.ordinal()] != v.versions[table.ordinal()];
+    }
+
+    private static PersistentIntMap<Row> loadEvents() {
+
+        EventStore store = EventFileHandler.readStore();
+        PersistentIntMap.Builder<Row> events = new PersistentIntMap.Builder<>();
+        for (int i = 0; i < store.size(); i++) {
+            events.put(store.idAt(i), new Row(store.titleAt(i), store.descriptionAt(i),
+                    store.startSecondsAt(i), store.endSecondsAt(i)));
+        }
+        return events.build();
+    }
+
+    private static PersistentIntMap<AdditionalEventFields> loadAdditional() {
+        PersistentIntMap.Builder<AdditionalEventFields> map = new PersistentIntMap.Builder<>();
+        for (AdditionalEventFields a : AdditionalFileHandler.readAdditional()) map.put(a.getEventId(), a);
+        return map.build();
+    }
+
+    private static PersistentIntMap<Reminder> loadReminders() {
+        PersistentIntMap.Builder<Reminder> map = new PersistentIntMap.Builder<>();
+        for (Reminder r : ReminderFileHandler.readReminders()) map.put(r.getEventId(), r);
+        return map.build();
+    }
+
+    private static PersistentIntMap<RecurringEvent> loadRules() {
+        PersistentIntMap.Builder<RecurringEvent> map = new PersistentIntMap.Builder<>();
+        for (RecurringEvent r : RecurringFileHandler.readRecurringEvents()) map.put(r.getEventId(), r);
+        return map.build();
+    }
+
+    private static EventStore storeOf(PersistentIntMap<Row> events) {
+        EventStore store = new EventStore(events.size());
+        events.forEach((id, r) -> store.add(id, r.title, r.description, r.start, r.end));
+        return store;
+    }
+
+    private static Row toRow(Event e) {
+        return new Row(e.getTitle(), e.getDescription(),
+                EventStore.toSeconds(e.getStartDateTime()), EventStore.toSeconds(e.getEndDateTime()));
+    }
+
+    private static WriteResult result(Status status, int eventId) {
+        return new WriteResult(status, eventId);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,123 @@
+package app.service;
+
+import app.model.Event;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * EventCursor
+ * -----------
+ * A forward-only cursor over a lazily evaluated stream of events.
+ *
+ * Search results are handed out one page at a time, so only the page
+ * that is currently being displayed is ever held in memory. The cursor
+ * pulls matches from the underlying stream on demand, which means a
+ * broad keyword on a large calendar does not build a full result list
+ * before the first line is printed.
+ *
+ * The cursor owns the stream it wraps (which may hold a file open) and
+ * must be closed when the caller is done with it.
+ */
+public class EventCursor implements Iterator<Event>, AutoCloseable {
+
+    // Default number of results shown per page
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    // The source stream (closed together with the cursor)
+    private final Stream<Event> source;
+
+    // Iterator used to pull events lazily from the source
+    private final Iterator<Event> it;
+
+    // Maximum number of events returned by nextPage()
+    private final int pageSize;
+
+    // Zero-based position of the next event to be returned
+    private int position;
+
+    /*
+     * Creates a cursor that starts at the given offset.
+     *
+     * Skipped events are consumed from the stream but never collected.
+     */
+    public EventCursor(Stream<Event> source, int offset, int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+
+        this.source = source;
+        this.it = source.iterator();
+        this.pageSize = pageSize;
+
+        // Advance past the requested offset without keeping anything
+        while (position < offset && it.hasNext()) {
+            it.next();
+            position++;
+        }
+    }
+
+    /*
+     * Creates a cursor at the beginning of the stream using the default page size.
+     */
+    public EventCursor(Stream<Event> source) {
+        this(source, 0, DEFAULT_PAGE_SIZE);
+    }
+
+    /*
+     * Returns true if at least one more event is available.
+     */
+    @Override
+    public boolean hasNext() {
+        return it.hasNext();
+    }
+
+    /*
+     * Returns the next single event.
+     */
+    @Override
+    public Event next() {
+        Event e = it.next();
+        position++;
+        return e;
+    }
+
+    /*
+     * Returns up to pageSize events, or an empty list if the cursor is exhausted.
+     */
+    public List<Event> nextPage() {
+
+        List<Event> page = new ArrayList<>(pageSize);
+
+        while (page.size() < pageSize && it.hasNext()) {
+            page.add(next());
+        }
+
+        return page;
+    }
+
+    /*
+     * Returns the zero-based position of the next event.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /*
+     * Returns the configured page size.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /*
+     * Releases the underlying stream (and any file it holds open).
+     */
+    @Override
+    public void close() {
+        source.close();
+    }
+}
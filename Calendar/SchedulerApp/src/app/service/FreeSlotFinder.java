@@ -0,0 +1,232 @@
+package app.service;
+
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.util.IntervalIndex;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * FreeSlotFinder
+ * --------------
+ * This service class finds the earliest free time slots of a given length.
+ *
+ * Busy time is collected from base events and recurring occurrences,
+ * sorted once and merged into disjoint intervals. The search itself is
+ * then a single linear walk over the gaps between busy intervals,
+ * optionally clipped to daily working hours.
+ *
+ * At most one slot is returned per free gap (per day when working hours
+ * apply): the earliest start in that gap.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class FreeSlotFinder {
+
+    /*
+     * Slot
+     * ----
+     * A free time window of the requested duration.
+     */
+    public static class Slot {
+
+        // Start of the free slot
+        public final LocalDateTime start;
+
+        // End of the free slot (start + requested duration)
+        public final LocalDateTime end;
+
+        public Slot(LocalDateTime start, LocalDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /*
+     * Returns up to maxSlots of the earliest free slots of the given duration
+     * between from and to.
+     *
+     * workStart/workEnd restrict slots to daily working hours; pass null for
+     * both to allow any time of day. Working hours must not span midnight.
+     */
+    public static List<Slot> findFreeSlots(List<Event> events,
+                                           List<RecurringEvent> rules,
+                                           Duration duration,
+                                           LocalDateTime from,
+                                           LocalDateTime to,
+                                           LocalTime workStart,
+                                           LocalTime workEnd,
+                                           int maxSlots) {
+
+        long[][] busy = mergedBusy(events, rules, from, to);
+        return walkGaps(busy[0], busy[1], duration, from, to, workStart, workEnd, maxSlots);
+    }
+
+    /*
+     * Collects busy intervals that touch [from, to] and merges overlapping
+     * or adjacent ones. Returns { starts, ends }, both sorted and disjoint.
+     */
+    static long[][] mergedBusy(List<Event> events,
+                               List<RecurringEvent> rules,
+                               LocalDateTime from,
+                               LocalDateTime to) {
+
+        long fromKey = IntervalIndex.key(from);
+        long toKey = IntervalIndex.key(to);
+
+        // Occurrences that start before "from" may still run into the range,
+        // so expand from the longest recurring event's duration earlier
+        Set<Integer> recurringIds = new HashSet<>();
+        if (rules != null) {
+            for (RecurringEvent r : rules) recurringIds.add(r.getEventId());
+        }
+        long longestDays = 0;
+        for (Event e : events) {
+            if (recurringIds.contains(e.getEventId())) {
+                long days = Duration.between(e.getStartDateTime(), e.getEndDateTime()).abs().toDays();
+                longestDays = Math.max(longestDays, days);
+            }
+        }
+
+        List<Event> all = RecurrenceExpander.withOccurrences(events, rules,
+                from.toLocalDate().minusDays(longestDays + 1), to.toLocalDate());
+
+        long[] starts = new long[all.size()];
+        long[] ends = new long[all.size()];
+        int n = 0;
+
+        for (Event e : all) {
+            long s = IntervalIndex.key(e.getStartDateTime());
+            long en = IntervalIndex.key(e.getEndDateTime());
+            if (en < s) {
+                long tmp = s;
+                s = en;
+                en = tmp;
+            }
+
+            // Keep only intervals that intersect the search range
+            if (en > fromKey && s < toKey) {
+                starts[n] = s;
+                ends[n] = en;
+                n++;
+            }
+        }
+
+        // Sort by start; ends travel with their starts via an index sort
+        long[][] sorted = sortByStart(starts, ends, n);
+        starts = sorted[0];
+        ends = sorted[1];
+
+        // Merge into disjoint intervals in one pass
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m > 0 && starts[i] <= ends[m - 1]) {
+                ends[m - 1] = Math.max(ends[m - 1], ends[i]);
+            } else {
+                starts[m] = starts[i];
+                ends[m] = ends[i];
+                m++;
+            }
+        }
+
+        return new long[][] { Arrays.copyOf(starts, m), Arrays.copyOf(ends, m) };
+    }
+
+    /*
+     * Walks the gaps between merged busy intervals and collects free slots.
+     */
+    static List<Slot> walkGaps(long[] busyStarts, long[] busyEnds,
+                               Duration duration,
+                               LocalDateTime from, LocalDateTime to,
+                               LocalTime workStart, LocalTime workEnd,
+                               int maxSlots) {
+
+        List<Slot> slots = new ArrayList<>();
+        long need = duration.getSeconds();
+        long cursor = IntervalIndex.key(from);
+        long toKey = IntervalIndex.key(to);
+
+        for (int i = 0; i <= busyStarts.length && slots.size() < maxSlots; i++) {
+
+            // The gap runs from the cursor to the next busy start (or the range end)
+            long gapEnd = i < busyStarts.length ? Math.min(busyStarts[i], toKey) : toKey;
+
+            if (gapEnd - cursor >= need) {
+                addSlotsInGap(slots, cursor, gapEnd, need, workStart, workEnd, maxSlots);
+            }
+
+            if (i < busyStarts.length) {
+                cursor = Math.max(cursor, busyEnds[i]);
+            }
+            if (cursor >= toKey) break;
+        }
+
+        return slots;
+    }
+
+    /*
+     * Adds the earliest fitting slot of a gap, or one per day when
+     * working hours apply.
+     */
+    private static void addSlotsInGap(List<Slot> slots,
+                                      long gapStart, long gapEnd, long need,
+                                      LocalTime workStart, LocalTime workEnd,
+                                      int maxSlots) {
+
+        if (workStart == null || workEnd == null) {
+            slots.add(new Slot(toTime(gapStart), toTime(gapStart + need)));
+            return;
+        }
+
+        LocalDate day = toTime(gapStart).toLocalDate();
+        LocalDate lastDay = toTime(gapEnd).toLocalDate();
+
+        while (!day.isAfter(lastDay) && slots.size() < maxSlots) {
+
+            // Clip the gap to this day's working hours
+            long windowStart = Math.max(gapStart, IntervalIndex.key(day.atTime(workStart)));
+            long windowEnd = Math.min(gapEnd, IntervalIndex.key(day.atTime(workEnd)));
+
+            if (windowEnd - windowStart >= need) {
+                slots.add(new Slot(toTime(windowStart), toTime(windowStart + need)));
+            }
+
+            day = day.plusDays(1);
+        }
+    }
+
+    /*
+     * Sorts parallel start/end arrays by start time.
+     */
+    private static long[][] sortByStart(long[] starts, long[] ends, int n) {
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        long[] s = new long[n];
+        long[] e = new long[n];
+        for (int i = 0; i < n; i++) {
+            s[i] = starts[order[i]];
+            e[i] = ends[order[i]];
+        }
+
+        return new long[][] { s, e };
+    }
+
+    /*
+     * Converts a key back into a LocalDateTime.
+     */
+    private static LocalDateTime toTime(long key) {
+        return LocalDateTime.ofEpochSecond(key, 0, ZoneOffset.UTC);
+    }
+}
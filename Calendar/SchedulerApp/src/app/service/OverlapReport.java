@@ -0,0 +1,140 @@
+package app.service;
+
+import app.model.Event;
+import app.model.RecurringEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/*
+ * OverlapReport
+ * -------------
+ * This service class finds every pair of overlapping events in the calendar
+ * using a single sort followed by a sweep line.
+ *
+ * Unlike EventFileHandler.hasConflict, which tests one candidate against
+ * all events, this audits the whole dataset at once in O(n log n + k),
+ * where k is the number of overlapping pairs reported. Recurring
+ * occurrences up to a horizon date are included.
+ *
+ * Overlapping pairs are handed to a callback as soon as they are found,
+ * so the caller can stream the report instead of collecting it first.
+ * Pairs are also grouped: a group is a maximal run of events connected
+ * by overlaps.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class OverlapReport {
+
+    /*
+     * Summary
+     * -------
+     * Totals describing the result of an overlap sweep.
+     */
+    public static class Summary {
+
+        // Number of intervals swept (base events plus occurrences)
+        public final int intervals;
+
+        // Number of overlapping pairs reported
+        public final long pairs;
+
+        // Number of overlap groups (clusters of connected overlaps)
+        public final int groups;
+
+        public Summary(int intervals, long pairs, int groups) {
+            this.intervals = intervals;
+            this.pairs = pairs;
+            this.groups = groups;
+        }
+    }
+
+    /*
+     * Sweeps all base events plus recurring occurrences that start on or
+     * before horizonEnd and reports each overlapping pair to onPair.
+     *
+     * The first event passed to onPair always starts at or before the second.
+     */
+    public static Summary findOverlaps(List<Event> events,
+                                       List<RecurringEvent> rules,
+                                       LocalDate horizonEnd,
+                                       BiConsumer<Event, Event> onPair) {
+
+        List<Event> all = new ArrayList<>(events);
+
+        // Occurrences from the earliest base event up to the horizon
+        LocalDate earliest = events.stream()
+                .map(e -> startOf(e).toLocalDate())
+                .min(Comparator.naturalOrder())
+                .orElse(horizonEnd);
+        RecurrenceExpander.forEachOccurrence(events, rules, earliest, horizonEnd, all::add);
+
+        // Sort once by start time
+        all.sort(Comparator.comparing(OverlapReport::startOf)
+                           .thenComparing(OverlapReport::endOf));
+
+        // Events whose interval is still open at the sweep position, by end time
+        PriorityQueue<Event> active =
+                new PriorityQueue<>(Comparator.comparing(OverlapReport::endOf));
+
+        long pairs = 0;
+        int groups = 0;
+        boolean groupHasOverlap = false;
+
+        for (Event current : all) {
+
+            LocalDateTime start = startOf(current);
+
+            // Retire everything that ended at or before this start
+            while (!active.isEmpty() && !endOf(active.peek()).isAfter(start)) {
+                active.poll();
+            }
+
+            // An empty active set closes the previous group
+            if (active.isEmpty()) {
+                groupHasOverlap = false;
+            }
+
+            // Everything still active overlaps the current interval
+            // (zero-length intervals are ignored; the app never creates them)
+            if (startOf(current).isBefore(endOf(current))) {
+                for (Event other : active) {
+                    onPair.accept(other, current);
+                    pairs++;
+                }
+
+                if (!active.isEmpty() && !groupHasOverlap) {
+                    groupHasOverlap = true;
+                    groups++;
+                }
+
+                active.add(current);
+            }
+        }
+
+        return new Summary(all.size(), pairs, groups);
+    }
+
+    /*
+     * Returns the earlier of the event's two timestamps (defensive normalization).
+     */
+    private static LocalDateTime startOf(Event e) {
+        return e.getEndDateTime().isBefore(e.getStartDateTime())
+                ? e.getEndDateTime()
+                : e.getStartDateTime();
+    }
+
+    /*
+     * Returns the later of the event's two timestamps (defensive normalization).
+     */
+    private static LocalDateTime endOf(Event e) {
+        return e.getEndDateTime().isBefore(e.getStartDateTime())
+                ? e.getStartDateTime()
+                : e.getEndDateTime();
+    }
+}
@@ -0,0 +1,266 @@
+package app.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Query
+ * -----
+ * A composable search over events.
+ *
+ * A query is a tree of predicates combined with AND / OR:
+ * - TitleContains      title contains a keyword (case-insensitive)
+ * - CategoryContains   category contains a keyword (case-insensitive)
+ * - LocationContains   location contains a keyword (case-insensitive)
+ * - DateRange          start date within [from, to], either bound optional
+ * - HasReminder        the event has a reminder
+ * - IsRecurring        the event has a recurrence rule
+ *
+ * Queries only describe what to find; QueryEngine decides how.
+ *
+ * Queries can also be written as text (see parse()), so the menu and any
+ * non-interactive front end share the same syntax:
+ *
+ *     category:work from:2026-03-01 to:2026-03-31
+ *     title:exam OR location:"lecture hall a" reminder
+ *
+ * Terms next to each other are ANDed; OR separates alternatives and
+ * binds looser than AND.
+ */
+public abstract class Query {
+
+    // ===================== PREDICATES =====================
+
+    public static final class TitleContains extends Query {
+        public final String keyword;
+
+        TitleContains(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    public static final class CategoryContains extends Query {
+        public final String keyword;
+
+        CategoryContains(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    public static final class LocationContains extends Query {
+        public final String keyword;
+
+        LocationContains(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    public static final class DateRange extends Query {
+        // Either bound may be null (open-ended)
+        public final LocalDate from;
+        public final LocalDate to;
+
+        DateRange(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public static final class HasReminder extends Query {
+    }
+
+    public static final class IsRecurring extends Query {
+    }
+
+    public static final class And extends Query {
+        public final List<Query> parts;
+
+        And(List<Query> parts) {
+            this.parts = parts;
+        }
+    }
+
+    public static final class Or extends Query {
+        public final List<Query> parts;
+
+        Or(List<Query> parts) {
+            this.parts = parts;
+        }
+    }
+
+    // ===================== FACTORIES =====================
+
+    public static Query titleContains(String keyword) {
+        return new TitleContains(keyword);
+    }
+
+    public static Query categoryContains(String keyword) {
+        return new CategoryContains(keyword);
+    }
+
+    public static Query locationContains(String keyword) {
+        return new LocationContains(keyword);
+    }
+
+    /*
+     * Events starting on a day in [from, to]; either bound may be null.
+     * Throws IllegalArgumentException if from is after to.
+     */
+    public static Query between(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from:" + from + " is after to:" + to);
+        }
+        return new DateRange(from, to);
+    }
+
+    public static Query onDate(LocalDate date) {
+        return new DateRange(date, date);
+    }
+
+    public static Query hasReminder() {
+        return new HasReminder();
+    }
+
+    public static Query isRecurring() {
+        return new IsRecurring();
+    }
+
+    public static Query and(Query... parts) {
+        return parts.length == 1 ? parts[0] : new And(List.of(parts));
+    }
+
+    public static Query or(Query... parts) {
+        return parts.length == 1 ? parts[0] : new Or(List.of(parts));
+    }
+
+    // ===================== TEXT SYNTAX =====================
+
+    /*
+     * Parses the text form of a query.
+     *
+     * Terms:
+     *   title:<text>  category:<text>  location:<text>
+     *   date:<yyyy-MM-dd>  from:<yyyy-MM-dd>  to:<yyyy-MM-dd>
+     *   reminder  recurring
+     *
+     * Values containing spaces are written in double quotes.
+     * from:/to: within the same AND group form one date range.
+     *
+     * Throws IllegalArgumentException if the text cannot be parsed.
+     */
+    public static Query parse(String text) {
+
+        List<Query> alternatives = new ArrayList<>();
+        List<Query> group = new ArrayList<>();
+        LocalDate[] range = new LocalDate[2];
+
+        for (String token : tokenize(text)) {
+
+            if (token.equalsIgnoreCase("OR")) {
+                alternatives.add(closeGroup(group, range));
+                group = new ArrayList<>();
+                range = new LocalDate[2];
+                continue;
+            }
+
+            int colon = token.indexOf(':');
+            String key = (colon < 0 ? token : token.substring(0, colon)).toLowerCase();
+            String value = colon < 0 ? "" : token.substring(colon + 1);
+
+            switch (key) {
+                case "title" -> group.add(titleContains(requireValue(key, value)));
+                case "category" -> group.add(categoryContains(requireValue(key, value)));
+                case "location" -> group.add(locationContains(requireValue(key, value)));
+                case "date" -> group.add(onDate(parseDate(key, value)));
+                case "from" -> range[0] = parseDate(key, value);
+                case "to" -> range[1] = parseDate(key, value);
+                case "reminder" -> group.add(hasReminder());
+                case "recurring" -> group.add(isRecurring());
+                default -> throw new IllegalArgumentException("Unknown search term: " + token);
+            }
+        }
+
+        alternatives.add(closeGroup(group, range));
+        return or(alternatives.toArray(new Query[0]));
+    }
+
+    private static Query closeGroup(List<Query> group, LocalDate[] range) {
+
+        if (range[0] != null || range[1] != null) {
+            group.add(between(range[0], range[1]));
+        }
+        if (group.isEmpty()) {
+            throw new IllegalArgumentException("Empty search (or dangling OR).");
+        }
+        return and(group.toArray(new Query[0]));
+    }
+
+    private static String requireValue(String key, String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(key + ": needs a value");
+        }
+        return value;
+    }
+
+    private static LocalDate parseDate(String key, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(key + ": expects yyyy-MM-dd");
+        }
+    }
+
+    /*
+     * Splits on whitespace, keeping double-quoted sections together
+     * (the quotes themselves are dropped).
+     */
+    private static List<String> tokenize(String text) {
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (char c : text.trim().toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unclosed quote in search.");
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        if (this instanceof TitleContains q) return "title:\"" + q.keyword + "\"";
+        if (this instanceof CategoryContains q) return "category:\"" + q.keyword + "\"";
+        if (this instanceof LocationContains q) return "location:\"" + q.keyword + "\"";
+        if (this instanceof DateRange q) {
+            return (q.from == null ? "" : "from:" + q.from) + (q.from != null && q.to != null ? " " : "")
+                    + (q.to == null ? "" : "to:" + q.to);
+        }
+        if (this instanceof HasReminder) return "reminder";
+        if (this instanceof IsRecurring) return "recurring";
+        if (this instanceof And q) return join(q.parts, " ");
+        if (this instanceof Or q) return join(q.parts, " OR ");
+        return super.toString();
+    }
+
+    private static String join(List<Query> parts, String sep) {
+        return String.join(sep, parts.stream().map(Query::toString).toList());
+    }
+}
@@ -0,0 +1,431 @@
+package app.service;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+import app.util.AdditionalFileHandler;
+import app.util.EventFileHandler;
+import app.util.EventStore;
+import app.util.OrdinalBitmap;
+import app.util.RecurringFileHandler;
+import app.util.ReminderFileHandler;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+ * QueryEngine
+ * -----------
+ * This service class runs Query trees against a snapshot of the calendar.
+ *
+ * Every predicate evaluates to an OrdinalBitmap of matching events:
+ * - category / location   dictionary bitmaps (AttributeIndex)
+ * - date range            a slice of the events sorted by start time
+ * - reminder / recurring  bitmaps built once from the side tables
+ * - title                 a scan, but only over the current candidates
+ *
+ * The planner orders the parts of an AND by estimated result size, so
+ * the most selective index runs first and each later part only has to
+ * narrow down what is left. Title scans always run last; when the
+ * remaining candidates are fewer than a date range would return, the
+ * range is checked per candidate instead of being materialized.
+ *
+ * The engine is a snapshot: load a new one after data changes. For a
+ * one-off query, stream() skips building the indexes when a plain date
+ * range can be read straight from the event file (or off-heap segment).
+ *
+ * This class does NOT handle user interaction.
+ */
+public class QueryEngine {
+
+    // Calendar snapshot
+    private final EventStore store;
+    private final AttributeIndex attributes;
+
+    // Ordinals sorted by start time, and the matching start times
+    private final int[] byStart;
+    private final long[] sortedStarts;
+
+    // Events with a reminder / a recurrence rule
+    private final OrdinalBitmap withReminder;
+    private final OrdinalBitmap recurring;
+
+    private QueryEngine(EventStore store,
+                        List<AdditionalEventFields> additional,
+                        List<Reminder> reminders,
+                        List<RecurringEvent> rules) {
+
+        this.store = store;
+        this.attributes = AttributeIndex.build(store, additional);
+
+        int n = store.size();
+
+        byStart = sortByStart(store);
+        sortedStarts = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedStarts[i] = store.startSecondsAt(byStart[i]);
+        }
+
+        int[] reminderIds = reminders.stream().mapToInt(Reminder::getEventId).toArray();
+        int[] recurringIds = rules.stream().mapToInt(RecurringEvent::getEventId).toArray();
+        withReminder = bitmapOfIds(reminderIds);
+        recurring = bitmapOfIds(recurringIds);
+    }
+
+    /*
+     * Loads a snapshot of all four data files.
+     */
+    public static QueryEngine load() {
+        return new QueryEngine(
+                EventFileHandler.readStore(),
+                AdditionalFileHandler.readAdditional(),
+                ReminderFileHandler.readReminders(),
+                RecurringFileHandler.readRecurringEvents());
+    }
+
+    /*
+     * Builds an engine over data the caller has already loaded.
+     */
+    public static QueryEngine of(EventStore store,
+                                 List<AdditionalEventFields> additional,
+                                 List<Reminder> reminders,
+                                 List<RecurringEvent> rules) {
+        return new QueryEngine(store, additional, reminders, rules);
+    }
+
+    // ===================== RUNNING =====================
+
+    /*
+     * Streams the events matching the query from the data files, in file
+     * order. A bounded date range on its own is streamed lazily by
+     * EventFileHandler; anything else loads an engine first.
+     * The caller must close the stream.
+     */
+    public static Stream<Event> stream(Query query) {
+
+        if (query instanceof Query.DateRange d && d.from != null && d.to != null) {
+            return EventFileHandler.streamByDateRange(d.from, d.to);
+        }
+        return load().run(query);
+    }
+
+    /*
+     * Streams the events matching the query, in file order.
+     */
+    public Stream<Event> run(Query query) {
+        return attributes.events(select(query));
+    }
+
+    /*
+     * Returns the ordinals of the events matching the query.
+     */
+    public OrdinalBitmap select(Query query) {
+        return evaluate(query, null, new IdentityHashMap<>());
+    }
+
+    /*
+     * Returns the number of events matching the query.
+     */
+    public int count(Query query) {
+        return select(query).cardinality();
+    }
+
+    /*
+     * Streams the events of a selection from select(), in file order.
+     */
+    public Stream<Event> events(OrdinalBitmap selection) {
+        return attributes.events(selection);
+    }
+
+    /*
+     * Whether a selection from select() contains the event with this ID.
+     */
+    public boolean selects(OrdinalBitmap selection, int eventId) {
+        int ordinal = attributes.ordinalOf(eventId);
+        return ordinal >= 0 && selection.contains(ordinal);
+    }
+
+    /*
+     * Evaluates the query against a single event, by the same rules as the
+     * indexes. additional may be null. Used for events that changed after
+     * an engine was built.
+     */
+    public static boolean matches(Query q, Event e, AdditionalEventFields additional,
+                                  boolean hasReminder, boolean recurring) {
+
+        if (q instanceof Query.And and) {
+            for (Query part : and.parts) {
+                if (!matches(part, e, additional, hasReminder, recurring)) return false;
+            }
+            return true;
+        }
+        if (q instanceof Query.Or or) {
+            for (Query part : or.parts) {
+                if (matches(part, e, additional, hasReminder, recurring)) return true;
+            }
+            return false;
+        }
+        if (q instanceof Query.TitleContains t) return containsIgnoreCase(e.getTitle(), t.keyword);
+        if (q instanceof Query.CategoryContains c) {
+            return additional != null && containsLower(additional.getCategory(), c.keyword);
+        }
+        if (q instanceof Query.LocationContains l) {
+            return additional != null && containsLower(additional.getLocation(), l.keyword);
+        }
+        if (q instanceof Query.DateRange d) {
+            long[] bounds = bounds(d);
+            long start = EventStore.toSeconds(e.getStartDateTime());
+            return start >= bounds[0] && start < bounds[1];
+        }
+        if (q instanceof Query.HasReminder) return hasReminder;
+        if (q instanceof Query.IsRecurring) return recurring;
+        throw new IllegalArgumentException("Unsupported query: " + q);
+    }
+
+    // ===================== PLANNING =====================
+
+    /*
+     * Evaluates a query, restricted to the candidates (null = all events).
+     * Index lookups are cached per query node so estimating a part and
+     * then evaluating it does the lookup only once.
+     */
+    private OrdinalBitmap evaluate(Query q, OrdinalBitmap candidates, Map<Query, OrdinalBitmap> cache) {
+
+        if (q instanceof Query.And and) {
+
+            // Most selective parts first; stop as soon as nothing is left
+            List<Query> ordered = and.parts.stream()
+                    .sorted(Comparator.comparingLong(p -> estimate(p, cache)))
+                    .toList();
+
+            OrdinalBitmap result = candidates;
+            for (Query part : ordered) {
+                result = evaluate(part, result, cache);
+                if (result.isEmpty()) break;
+            }
+            return result != null ? result : attributes.all();
+        }
+
+        if (q instanceof Query.Or or) {
+            OrdinalBitmap result = empty();
+            for (Query part : or.parts) {
+                result = result.or(evaluate(part, candidates, cache));
+            }
+            return result;
+        }
+
+        if (q instanceof Query.TitleContains t) {
+            return scanTitles(t.keyword, candidates);
+        }
+
+        if (q instanceof Query.DateRange d) {
+            long[] bounds = bounds(d);
+
+            // Probing a few candidates is cheaper than slicing a wide range
+            if (candidates != null && candidates.cardinality() < rangeSize(bounds)) {
+                return probeRange(bounds, candidates);
+            }
+            return restrict(sliceRange(bounds), candidates);
+        }
+
+        return restrict(lookup(q, cache), candidates);
+    }
+
+    /*
+     * Estimates how many events a query part will return.
+     * Title scans are costed at the whole calendar so they run last.
+     */
+    private long estimate(Query q, Map<Query, OrdinalBitmap> cache) {
+
+        if (q instanceof Query.And and) {
+            return and.parts.stream().mapToLong(p -> estimate(p, cache)).min().orElse(0);
+        }
+        if (q instanceof Query.Or or) {
+            long sum = or.parts.stream().mapToLong(p -> estimate(p, cache)).sum();
+            return Math.min(sum, store.size());
+        }
+        if (q instanceof Query.TitleContains) {
+            return store.size() + 1L;
+        }
+        if (q instanceof Query.DateRange d) {
+            return rangeSize(bounds(d));
+        }
+        return lookup(q, cache).cardinality();
+    }
+
+    /*
+     * Bitmap for an indexed predicate, computed once per query node.
+     */
+    private OrdinalBitmap lookup(Query q, Map<Query, OrdinalBitmap> cache) {
+        return cache.computeIfAbsent(q, key -> {
+            if (key instanceof Query.CategoryContains c) return attributes.categoryContaining(c.keyword);
+            if (key instanceof Query.LocationContains l) return attributes.locationContaining(l.keyword);
+            if (key instanceof Query.HasReminder) return withReminder;
+            if (key instanceof Query.IsRecurring) return recurring;
+            throw new IllegalArgumentException("Unsupported query: " + key);
+        });
+    }
+
+    // ===================== DATE RANGE =====================
+
+    /*
+     * Converts a date range into [lo, hi) start-time seconds.
+     */
+    private static long[] bounds(Query.DateRange d) {
+        long lo = d.from == null ? Long.MIN_VALUE : EventStore.toSeconds(d.from.atStartOfDay());
+        long hi = d.to == null ? Long.MAX_VALUE : EventStore.toSeconds(d.to.plusDays(1).atStartOfDay());
+        return new long[] { lo, hi };
+    }
+
+    private long rangeSize(long[] bounds) {
+        return Math.max(0, lowerBound(bounds[1]) - lowerBound(bounds[0]));
+    }
+
+    /*
+     * Collects the ordinals in the sorted-by-start slice for the range.
+     */
+    private OrdinalBitmap sliceRange(long[] bounds) {
+
+        int from = lowerBound(bounds[0]);
+        int to = Math.max(from, lowerBound(bounds[1]));
+
+        int[] ordinals = Arrays.copyOfRange(byStart, from, to);
+        Arrays.sort(ordinals);
+
+        OrdinalBitmap out = new OrdinalBitmap(store.size(), ordinals.length);
+        for (int o : ordinals) out.add(o);
+        return out;
+    }
+
+    /*
+     * Keeps the candidates whose start time falls in the range.
+     */
+    private OrdinalBitmap probeRange(long[] bounds, OrdinalBitmap candidates) {
+
+        int[] members = candidates.toArray();
+        OrdinalBitmap out = new OrdinalBitmap(store.size(), members.length);
+        for (int o : members) {
+            long s = store.startSecondsAt(o);
+            if (s >= bounds[0] && s < bounds[1]) out.add(o);
+        }
+        return out;
+    }
+
+    /*
+     * First position in sortedStarts whose value is >= key.
+     */
+    private int lowerBound(long key) {
+        int lo = 0, hi = sortedStarts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedStarts[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Returns the ordinals ordered by start time.
+     *
+     * When all starts lie within about 68 years of each other, the
+     * offset from the earliest start fits in 31 bits and is packed with
+     * the ordinal into one long, so a primitive sort does the work.
+     */
+    private static int[] sortByStart(EventStore store) {
+
+        int n = store.size();
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, store.startSecondsAt(i));
+            max = Math.max(max, store.startSecondsAt(i));
+        }
+
+        int[] out = new int[n];
+
+        if (n == 0 || max - min < Integer.MAX_VALUE) {
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = ((store.startSecondsAt(i) - min) << 32) | i;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < n; i++) out[i] = (int) packed[i];
+            return out;
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(store::startSecondsAt));
+        for (int i = 0; i < n; i++) out[i] = order[i];
+        return out;
+    }
+
+    /*
+     * Case-insensitive title scan over the candidates (or every event).
+     */
+    private OrdinalBitmap scanTitles(String keyword, OrdinalBitmap candidates) {
+
+        int n = store.size();
+        int[] members = candidates == null ? null : candidates.toArray();
+        int total = members == null ? n : members.length;
+
+        int[] hits = new int[total];
+        int count = 0;
+        for (int k = 0; k < total; k++) {
+            int o = members == null ? k : members[k];
+            if (containsIgnoreCase(store.titleAt(o), keyword)) hits[count++] = o;
+        }
+
+        OrdinalBitmap out = new OrdinalBitmap(n, count);
+        for (int k = 0; k < count; k++) out.add(hits[k]);
+        return out;
+    }
+
+    private static boolean containsIgnoreCase(String text, String keyword) {
+        if (text == null) return false;
+        int max = text.length() - keyword.length();
+        for (int i = 0; i <= max; i++) {
+            if (text.regionMatches(true, i, keyword, 0, keyword.length())) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Same comparison as AttributeIndex's "containing" lookups.
+     */
+    private static boolean containsLower(String text, String keyword) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(keyword.toLowerCase(Locale.ROOT));
+    }
+
+    private static OrdinalBitmap restrict(OrdinalBitmap bitmap, OrdinalBitmap candidates) {
+        return candidates == null ? bitmap : candidates.and(bitmap);
+    }
+
+    private OrdinalBitmap empty() {
+        return new OrdinalBitmap(store.size(), 0);
+    }
+
+    /*
+     * Builds a bitmap from event IDs, ignoring IDs with no event.
+     */
+    private OrdinalBitmap bitmapOfIds(int[] ids) {
+
+        int[] ordinals = Arrays.stream(ids)
+                .map(attributes::ordinalOf)
+                .filter(o -> o >= 0)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        OrdinalBitmap out = new OrdinalBitmap(store.size(), ordinals.length);
+        for (int o : ordinals) out.add(o);
+        return out;
+    }
+}
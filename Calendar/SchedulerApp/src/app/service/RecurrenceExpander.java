@@ -0,0 +1,222 @@
+package app.service;
+
+import app.model.Event;
+import app.model.RecurringEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+ * RecurrenceExpander
+ * ------------------
+ * This service class turns recurrence rules into concrete event occurrences.
+ *
+ * It is shared by the calendar views and by the reporting / scheduling
+ * features so that every part of the application agrees on when a
+ * recurring event actually happens.
+ *
+ * Expansion rules (unchanged from the original calendar views):
+ * - the base event itself is not generated again
+ * - occurrences are base start + N * interval (N = 1, 2, ...)
+ * - a recurrence count limits the number of generated occurrences
+ * - a recurrence end date stops generation after that date
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class RecurrenceExpander {
+
+    /*
+     * Returns the events plus every recurring occurrence whose start date
+     * falls within [rangeStart, rangeEnd]. The input list is not modified.
+     */
+    public static List<Event> withOccurrences(List<Event> events,
+                                              List<RecurringEvent> rules,
+                                              LocalDate rangeStart,
+                                              LocalDate rangeEnd) {
+
+        // Create a new list to avoid mutating the original events list
+        List<Event> expanded = new ArrayList<>(events);
+
+        forEachOccurrence(events, rules, rangeStart, rangeEnd, expanded::add);
+
+        return expanded;
+    }
+
+    /*
+     * Passes every recurring occurrence whose start date falls within
+     * [rangeStart, rangeEnd] to the sink. Base events are not passed.
+     */
+    public static void forEachOccurrence(List<Event> events,
+                                         List<RecurringEvent> rules,
+                                         LocalDate rangeStart,
+                                         LocalDate rangeEnd,
+                                         Consumer<Event> sink) {
+
+        if (rules == null || rules.isEmpty()) {
+            return;
+        }
+
+        // Map base events by ID so each rule finds its event in O(1)
+        Map<Integer, Event> baseById = new HashMap<>();
+        for (Event e : events) {
+            baseById.put(e.getEventId(), e);
+        }
+
+        for (RecurringEvent rule : rules) {
+
+            // Skip orphan recurrence rules
+            Event base = baseById.get(rule.getEventId());
+            if (base == null) {
+                continue;
+            }
+
+            forEachOccurrence(base, rule, rangeStart, rangeEnd, sink);
+        }
+    }
+
+    /*
+     * Passes the occurrences of a single recurring event whose start date
+     * falls within [rangeStart, rangeEnd] to the sink.
+     */
+    public static void forEachOccurrence(Event base,
+                                         RecurringEvent rule,
+                                         LocalDate rangeStart,
+                                         LocalDate rangeEnd,
+                                         Consumer<Event> sink) {
+
+        // Parse recurrence interval string into a Period
+        Period period = parseInterval(rule.getInterval());
+        if (period == null) {
+            // Unsupported or malformed interval
+            return;
+        }
+
+        // Retrieve base event start and end times
+        LocalDateTime start = base.getStartDateTime();
+        LocalDateTime end = base.getEndDateTime();
+
+        // Calculate event duration in minutes
+        long durationMinutes = ChronoUnit.MINUTES.between(start, end);
+
+        int maxOccurrences = rule.getRecurrentTimes();
+        LocalDate endDateLimit = rule.getRecurrentEndDate();
+
+        // Start generating from the next occurrence (base event already exists)
+        int occurrenceIndex = firstIndexNear(start.toLocalDate(), period, rangeStart);
+        int generated = occurrenceIndex - 1;
+
+        while (true) {
+
+            // Calculate start time of the next occurrence
+            LocalDateTime occStart = start
+                    .plusYears((long) period.getYears() * occurrenceIndex)
+                    .plusMonths((long) period.getMonths() * occurrenceIndex)
+                    .plusDays((long) period.getDays() * occurrenceIndex);
+
+            // Stop if recurrence count limit is reached
+            if (maxOccurrences > 0 && generated >= maxOccurrences) {
+                break;
+            }
+
+            generated++;
+            LocalDate occDate = occStart.toLocalDate();
+
+            // Stop if end date limit is exceeded
+            if (endDateLimit != null && occDate.isAfter(endDateLimit)) {
+                break;
+            }
+
+            // Stop if beyond requested range
+            if (occDate.isAfter(rangeEnd)) {
+                break;
+            }
+
+            // Emit occurrence if it falls within the requested range
+            if (!occDate.isBefore(rangeStart)) {
+                sink.accept(new Event(
+                        base.getEventId(),
+                        base.getTitle(),
+                        base.getDescription(),
+                        occStart,
+                        occStart.plusMinutes(durationMinutes)
+                ));
+            }
+
+            occurrenceIndex++;
+        }
+    }
+
+    /*
+     * Returns an occurrence index N (>= 1) such that every occurrence
+     * before N starts before rangeStart, so expansion of a distant window
+     * can skip ahead instead of stepping through every earlier occurrence.
+     *
+     * Each step is at most maxDays long (months are taken as 31 days and
+     * years as 366), so occurrence k starts no later than base + k * maxDays.
+     */
+    private static int firstIndexNear(LocalDate baseDate, Period period, LocalDate rangeStart) {
+
+        long gapDays = ChronoUnit.DAYS.between(baseDate, rangeStart);
+        long maxDays = period.getYears() * 366L + period.getMonths() * 31L + period.getDays();
+
+        if (gapDays <= 0 || maxDays <= 0) return 1;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, gapDays / maxDays));
+    }
+
+    /*
+     * Parses a recurrence interval string into a Period object.
+     *
+     * Supported formats:
+     * - "Nd" : every N days
+     * - "Nw" : every N weeks
+     * - "Nm" : every N months
+     * - "Ny" : every N years
+     * - "N"  : every N days
+     * - "1"  : legacy value meaning weekly recurrence
+     */
+    public static Period parseInterval(String interval) {
+
+        if (interval == null) return null;
+
+        String trimmed = interval.trim().toLowerCase();
+        if (trimmed.isEmpty()) return null;
+
+        // Legacy support: "1" means weekly recurrence
+        if (trimmed.equals("1")) {
+            return Period.ofDays(7);
+        }
+
+        int len = trimmed.length();
+        char last = trimmed.charAt(len - 1);
+
+        try {
+            // Pure numeric value treated as days
+            if (Character.isDigit(last)) {
+                int days = Integer.parseInt(trimmed);
+                return days > 0 ? Period.ofDays(days) : null;
+            }
+
+            // Numeric value followed by unit character
+            int value = Integer.parseInt(trimmed.substring(0, len - 1));
+            if (value <= 0) return null;
+
+            return switch (last) {
+                case 'd' -> Period.ofDays(value);
+                case 'w' -> Period.ofDays(value * 7);
+                case 'm' -> Period.ofMonths(value);
+                case 'y' -> Period.ofYears(value);
+                default -> null;
+            };
+
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
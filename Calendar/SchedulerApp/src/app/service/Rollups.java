@@ -0,0 +1,292 @@
+package app.service;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * Rollups
+ * -------
+ * This service class keeps precomputed event counts and booked time per
+ * day, ISO week, month, and category per week.
+ *
+ * Recurring events contribute every occurrence up to a horizon date;
+ * extendTo() moves the horizon forward by expanding only the new part.
+ * add() and remove() apply a single event's contribution, so edits
+ * update the totals without rebuilding them.
+ *
+ * Counting rules:
+ * - an event (or occurrence) is counted once, on the day it starts
+ * - its duration is split across the days it spans, so booked time
+ *   that crosses midnight (or a week/month boundary) lands in both
+ *
+ * Reads are a single map lookup per bucket and never expand occurrences.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class Rollups {
+
+    // Category bucket for events without one
+    public static final String NO_CATEGORY = "(none)";
+
+    /*
+     * Totals
+     * ------
+     * The count and booked time of one bucket.
+     */
+    public static class Totals {
+
+        // Events or occurrences starting in the bucket
+        public final int count;
+
+        // Booked minutes falling in the bucket
+        public final long minutes;
+
+        public Totals(int count, long minutes) {
+            this.count = count;
+            this.minutes = minutes;
+        }
+
+        public double hours() {
+            return minutes / 60.0;
+        }
+    }
+
+    /*
+     * Entry
+     * -----
+     * Everything that decides one event's contribution.
+     * rule and category may be null.
+     */
+    public static class Entry {
+
+        public final Event event;
+        public final RecurringEvent rule;
+        public final String category;
+
+        public Entry(Event event, RecurringEvent rule, String category) {
+            this.event = event;
+            this.rule = rule;
+            this.category = category;
+        }
+    }
+
+    private static final long[] ZERO = { 0, 0 };
+
+    // Buckets hold { count, seconds }
+    private final Map<Long, long[]> byDay = new HashMap<>();      // epoch day
+    private final Map<Long, long[]> byWeek = new HashMap<>();     // epoch day of the ISO week's Monday
+    private final Map<Long, long[]> byMonth = new HashMap<>();    // year * 12 + (month - 1)
+    private final Map<String, Map<Long, long[]>> byCategoryWeek = new HashMap<>();
+
+    // Recurring series, so the horizon can be extended later
+    private final Map<Integer, Entry> series = new HashMap<>();
+
+    // Occurrences are included up to and including this date
+    private LocalDate horizon;
+
+    private Rollups(LocalDate horizon) {
+        this.horizon = horizon;
+    }
+
+    /*
+     * Builds rollups for all events, expanding recurring occurrences up
+     * to the horizon.
+     */
+    public static Rollups build(List<Event> events,
+                                List<RecurringEvent> rules,
+                                Map<Integer, AdditionalEventFields> additional,
+                                LocalDate horizon) {
+
+        Map<Integer, RecurringEvent> ruleById = new HashMap<>();
+        if (rules != null) {
+            for (RecurringEvent r : rules) ruleById.put(r.getEventId(), r);
+        }
+
+        Rollups rollups = new Rollups(horizon);
+        for (Event e : events) {
+            AdditionalEventFields a = additional.get(e.getEventId());
+            rollups.add(new Entry(e, ruleById.get(e.getEventId()), a == null ? null : a.getCategory()));
+        }
+        return rollups;
+    }
+
+    // ===================== MAINTENANCE =====================
+
+    /*
+     * Adds an event's contribution (with its occurrences up to the horizon).
+     */
+    public void add(Entry entry) {
+        apply(entry, 1);
+        if (entry.rule != null) series.put(entry.event.getEventId(), entry);
+    }
+
+    /*
+     * Removes a contribution previously passed to add().
+     */
+    public void remove(Entry entry) {
+        apply(entry, -1);
+        if (entry.rule != null) series.remove(entry.event.getEventId());
+    }
+
+    /*
+     * Replaces one event's contribution; either side may be null
+     * (for an added or deleted event).
+     */
+    public void replace(Entry before, Entry after) {
+        if (before != null) remove(before);
+        if (after != null) add(after);
+    }
+
+    /*
+     * Moves the horizon forward, expanding recurring series only over
+     * the newly covered dates.
+     */
+    public void extendTo(LocalDate newHorizon) {
+
+        if (!newHorizon.isAfter(horizon)) return;
+
+        LocalDate from = horizon.plusDays(1);
+        for (Entry entry : series.values()) {
+            RecurrenceExpander.forEachOccurrence(entry.event, entry.rule, from, newHorizon,
+                    occ -> addInterval(occ, category(entry), 1));
+        }
+        horizon = newHorizon;
+    }
+
+    public LocalDate horizon() {
+        return horizon;
+    }
+
+    // ===================== READS =====================
+
+    public Totals day(LocalDate date) {
+        return totals(byDay.get(date.toEpochDay()));
+    }
+
+    /*
+     * Totals for the ISO week (Monday to Sunday) containing the date.
+     */
+    public Totals week(LocalDate anyDay) {
+        return totals(byWeek.get(weekKey(anyDay)));
+    }
+
+    public Totals month(YearMonth month) {
+        return totals(byMonth.get(monthKey(month)));
+    }
+
+    /*
+     * Totals for one category in the ISO week containing the date.
+     */
+    public Totals categoryWeek(String category, LocalDate anyDay) {
+        Map<Long, long[]> weeks = byCategoryWeek.get(category(category));
+        return totals(weeks == null ? null : weeks.get(weekKey(anyDay)));
+    }
+
+    /*
+     * Every category that has contributed, sorted by name.
+     */
+    public Set<String> categories() {
+        return new TreeSet<>(byCategoryWeek.keySet());
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Adds (sign = 1) or subtracts (sign = -1) an entry's base event and
+     * its occurrences up to the horizon.
+     */
+    private void apply(Entry entry, int sign) {
+
+        String category = category(entry);
+        addInterval(entry.event, category, sign);
+
+        if (entry.rule != null) {
+            RecurrenceExpander.forEachOccurrence(entry.event, entry.rule,
+                    entry.event.getStartDateTime().toLocalDate(), horizon,
+                    occ -> addInterval(occ, category, sign));
+        }
+    }
+
+    /*
+     * Counts the event on its start day and spreads its duration over
+     * every day it touches.
+     */
+    private void addInterval(Event e, String category, int sign) {
+
+        LocalDateTime start = e.getStartDateTime();
+        LocalDateTime end = e.getEndDateTime();
+        if (end.isBefore(start)) {
+            LocalDateTime tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        LocalDate firstDay = start.toLocalDate();
+        bump(firstDay, category, sign, 0);
+
+        long s = start.toEpochSecond(ZoneOffset.UTC);
+        long en = end.toEpochSecond(ZoneOffset.UTC);
+        LocalDate day = firstDay;
+
+        while (s < en) {
+            long dayEnd = day.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long piece = Math.min(en, dayEnd) - s;
+            bump(day, category, 0, sign * piece);
+            s += piece;
+            day = day.plusDays(1);
+        }
+    }
+
+    private void bump(LocalDate day, String category, int count, long seconds) {
+
+        long week = weekKey(day);
+        bump(byDay, day.toEpochDay(), count, seconds);
+        bump(byWeek, week, count, seconds);
+        bump(byMonth, monthKey(YearMonth.from(day)), count, seconds);
+        bump(byCategoryWeek.computeIfAbsent(category, k -> new HashMap<>()), week, count, seconds);
+    }
+
+    private static void bump(Map<Long, long[]> map, long key, int count, long seconds) {
+
+        long[] b = map.computeIfAbsent(key, k -> new long[2]);
+        b[0] += count;
+        b[1] += seconds;
+
+        // Drop buckets that return to zero so removed data leaves no trace
+        if (b[0] == 0 && b[1] == 0) map.remove(key);
+    }
+
+    private static Totals totals(long[] b) {
+        if (b == null) b = ZERO;
+        return new Totals((int) b[0], b[1] / 60);
+    }
+
+    private static String category(Entry entry) {
+        return category(entry.category);
+    }
+
+    private static String category(String value) {
+        return value == null || value.isBlank() ? NO_CATEGORY : value;
+    }
+
+    private static long weekKey(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+    }
+
+    private static long monthKey(YearMonth month) {
+        return month.getYear() * 12L + (month.getMonthValue() - 1);
+    }
+}
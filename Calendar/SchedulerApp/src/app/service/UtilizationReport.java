@@ -0,0 +1,494 @@
+package app.service;
+
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.util.EventStore;
+import app.util.IntervalIndex;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * UtilizationReport
+ * -----------------
+ * This service class computes calendar utilization per week or month:
+ * - booked hours   (time covered by at least one event)
+ * - idle hours     (the rest of the period)
+ * - longest free block
+ * - peak overlap   (most events running at the same moment)
+ *
+ * The periods are split into chunks that run as RecursiveTasks on the
+ * common ForkJoinPool. Each chunk collects the base events touching its
+ * own window and expands recurring series only for that window, so a
+ * multi-year report never materializes every occurrence at once.
+ * Chunk results are merged in order; free time that runs across a chunk
+ * boundary is joined during the merge so the overall longest free block
+ * is exact.
+ *
+ * This class does NOT handle file input/output or user interaction.
+ */
+public class UtilizationReport {
+
+    /*
+     * Reporting granularity.
+     */
+    public enum Granularity { WEEK, MONTH }
+
+    /*
+     * Bucket
+     * ------
+     * Utilization of one week or month.
+     */
+    public static class Bucket {
+
+        // First day of the period, and the day after it ends (both
+        // clipped to the report range)
+        public final LocalDate start;
+        public final LocalDate end;
+
+        public final long bookedMinutes;
+        public final long idleMinutes;
+        public final long longestFreeMinutes;
+        public final int peakOverlap;
+
+        Bucket(LocalDate start, LocalDate end, long bookedMinutes, long idleMinutes,
+               long longestFreeMinutes, int peakOverlap) {
+            this.start = start;
+            this.end = end;
+            this.bookedMinutes = bookedMinutes;
+            this.idleMinutes = idleMinutes;
+            this.longestFreeMinutes = longestFreeMinutes;
+            this.peakOverlap = peakOverlap;
+        }
+    }
+
+    /*
+     * Result
+     * ------
+     * Every bucket plus totals for the whole range.
+     */
+    public static class Result {
+
+        public final List<Bucket> buckets;
+        public final long bookedMinutes;
+        public final long idleMinutes;
+
+        // Longest free block anywhere in the range (may span periods)
+        public final long longestFreeMinutes;
+        public final int peakOverlap;
+
+        Result(List<Bucket> buckets, long bookedMinutes, long idleMinutes,
+               long longestFreeMinutes, int peakOverlap) {
+            this.buckets = buckets;
+            this.bookedMinutes = bookedMinutes;
+            this.idleMinutes = idleMinutes;
+            this.longestFreeMinutes = longestFreeMinutes;
+            this.peakOverlap = peakOverlap;
+        }
+    }
+
+    // Periods handled by one task without splitting further
+    private static final int CHUNK_PERIODS = 4;
+
+    /*
+     * Computes utilization for every week or month overlapping [from, to).
+     * Periods are ISO weeks (Monday to Sunday) or calendar months; the
+     * first and last are clipped to the range, so only time inside it is
+     * counted as booked or idle.
+     */
+    public static Result compute(List<Event> events,
+                                 List<RecurringEvent> rules,
+                                 LocalDate from,
+                                 LocalDate to,
+                                 Granularity granularity) {
+
+        long[] bounds = periodBounds(from, to, granularity);
+        Input input = new Input(events, rules);
+
+        Partial p = new ChunkTask(input, bounds, 0, bounds.length - 1).invoke();
+
+        long booked = 0;
+        long idle = 0;
+        int peak = 0;
+        for (Bucket b : p.buckets) {
+            booked += b.bookedMinutes;
+            idle += b.idleMinutes;
+            peak = Math.max(peak, b.peakOverlap);
+        }
+
+        return new Result(p.buckets, booked, idle, p.longestFree / 60, peak);
+    }
+
+    // ===================== INPUT =====================
+
+    /*
+     * Input
+     * -----
+     * Read-only data shared by every task: base events sorted by start,
+     * and the recurring series.
+     */
+    private static class Input {
+
+        final long[] starts;
+        final long[] ends;
+        final long longestEvent;
+
+        final List<Event> seriesBases = new ArrayList<>();
+        final List<RecurringEvent> seriesRules = new ArrayList<>();
+        final long longestSeriesDays;
+
+        Input(List<Event> events, List<RecurringEvent> rules) {
+
+            int n = events.size();
+            long[][] pairs = new long[2][n];
+
+            // Store-backed lists are read without creating Event objects
+            EventStore store = EventStore.backing(events);
+            for (int i = 0; i < n; i++) {
+                long s, e;
+                if (store != null) {
+                    s = store.startSecondsAt(i);
+                    e = store.endSecondsAt(i);
+                } else {
+                    Event ev = events.get(i);
+                    s = IntervalIndex.key(ev.getStartDateTime());
+                    e = IntervalIndex.key(ev.getEndDateTime());
+                }
+                pairs[0][i] = Math.min(s, e);
+                pairs[1][i] = Math.max(s, e);
+            }
+
+            long[][] sorted = sortByStart(pairs[0], pairs[1]);
+            starts = sorted[0];
+            ends = sorted[1];
+
+            long longest = 0;
+            for (int i = 0; i < n; i++) longest = Math.max(longest, ends[i] - starts[i]);
+            longestEvent = longest;
+
+            // Pair every rule with its base event
+            Map<Integer, RecurringEvent> ruleById = new HashMap<>();
+            if (rules != null) {
+                for (RecurringEvent r : rules) ruleById.put(r.getEventId(), r);
+            }
+
+            long longestDays = 0;
+            if (!ruleById.isEmpty()) {
+                for (int i = 0; i < n; i++) {
+                    int id = store != null ? store.idAt(i) : events.get(i).getEventId();
+                    RecurringEvent r = ruleById.get(id);
+                    if (r == null) continue;
+                    Event e = events.get(i);
+                    seriesBases.add(e);
+                    seriesRules.add(r);
+                    longestDays = Math.max(longestDays,
+                            Duration.between(e.getStartDateTime(), e.getEndDateTime()).abs().toDays());
+                }
+            }
+            longestSeriesDays = longestDays;
+        }
+    }
+
+    // ===================== FORK / JOIN =====================
+
+    /*
+     * Partial
+     * -------
+     * The result of a run of consecutive periods, with the free time at
+     * its edges so neighbouring results can be joined.
+     */
+    private static class Partial {
+
+        final List<Bucket> buckets;
+        final long length;       // seconds covered
+        final long leadingFree;  // free seconds from the start to the first busy moment
+        final long trailingFree; // free seconds from the last busy moment to the end
+        final long longestFree;  // longest free run inside, in seconds
+
+        Partial(List<Bucket> buckets, long length, long leadingFree, long trailingFree, long longestFree) {
+            this.buckets = buckets;
+            this.length = length;
+            this.leadingFree = leadingFree;
+            this.trailingFree = trailingFree;
+            this.longestFree = longestFree;
+        }
+
+        /*
+         * Joins this result with the one that immediately follows it.
+         */
+        Partial then(Partial next) {
+
+            List<Bucket> all = new ArrayList<>(buckets.size() + next.buckets.size());
+            all.addAll(buckets);
+            all.addAll(next.buckets);
+
+            boolean thisFree = leadingFree == length;
+            boolean nextFree = next.leadingFree == next.length;
+
+            long longest = Math.max(Math.max(longestFree, next.longestFree), trailingFree + next.leadingFree);
+
+            return new Partial(all,
+                    length + next.length,
+                    thisFree ? length + next.leadingFree : leadingFree,
+                    nextFree ? trailingFree + next.length : next.trailingFree,
+                    longest);
+        }
+    }
+
+    /*
+     * ChunkTask
+     * ---------
+     * Computes periods [lo, hi) of the bounds array, splitting in half
+     * until a chunk is small enough to compute directly.
+     */
+    private static class ChunkTask extends RecursiveTask<Partial> {
+
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized; the input is shared by reference
+        private final transient Input input;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+
+        ChunkTask(Input input, long[] bounds, int lo, int hi) {
+            this.input = input;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Partial compute() {
+
+            if (hi - lo <= CHUNK_PERIODS) {
+                return computeChunk(input, bounds, lo, hi);
+            }
+
+            int mid = (lo + hi) >>> 1;
+            ChunkTask left = new ChunkTask(input, bounds, lo, mid);
+            ChunkTask right = new ChunkTask(input, bounds, mid, hi);
+
+            left.fork();
+            Partial r = right.compute();
+            return left.join().then(r);
+        }
+    }
+
+    // ===================== CHUNK WORK =====================
+
+    /*
+     * Collects the busy intervals of one chunk's window and computes each
+     * of its periods.
+     */
+    private static Partial computeChunk(Input in, long[] bounds, int lo, int hi) {
+
+        long windowStart = bounds[lo];
+        long windowEnd = bounds[hi];
+
+        long[] s = new long[64];
+        long[] e = new long[64];
+        int n = 0;
+
+        // Base events: only those starting late enough to reach the window
+        int first = lowerBound(in.starts, windowStart - in.longestEvent);
+        for (int i = first; i < in.starts.length && in.starts[i] < windowEnd; i++) {
+            if (in.ends[i] > windowStart) {
+                if (n == s.length) {
+                    s = Arrays.copyOf(s, n * 2);
+                    e = Arrays.copyOf(e, n * 2);
+                }
+                s[n] = in.starts[i];
+                e[n] = in.ends[i];
+                n++;
+            }
+        }
+
+        // Recurring occurrences for this window only
+        LocalDate expandFrom = toTime(windowStart).toLocalDate().minusDays(in.longestSeriesDays + 1);
+        LocalDate expandTo = toTime(windowEnd).toLocalDate();
+        List<long[]> occurrences = new ArrayList<>();
+        for (int k = 0; k < in.seriesBases.size(); k++) {
+            RecurrenceExpander.forEachOccurrence(in.seriesBases.get(k), in.seriesRules.get(k),
+                    expandFrom, expandTo, occ -> {
+                        long os = IntervalIndex.key(occ.getStartDateTime());
+                        long oe = IntervalIndex.key(occ.getEndDateTime());
+                        long a = Math.min(os, oe);
+                        long b = Math.max(os, oe);
+                        if (b > windowStart && a < windowEnd) occurrences.add(new long[] { a, b });
+                    });
+        }
+        if (n + occurrences.size() > s.length) {
+            s = Arrays.copyOf(s, n + occurrences.size());
+            e = Arrays.copyOf(e, n + occurrences.size());
+        }
+        for (long[] o : occurrences) {
+            s[n] = o[0];
+            e[n] = o[1];
+            n++;
+        }
+
+        long[][] sorted = sortByStart(Arrays.copyOf(s, n), Arrays.copyOf(e, n));
+
+        Partial result = null;
+        for (int p = lo; p < hi; p++) {
+            Partial one = computePeriod(sorted[0], sorted[1], bounds[p], bounds[p + 1]);
+            result = result == null ? one : result.then(one);
+        }
+        return result;
+    }
+
+    /*
+     * Sweeps the intervals (sorted by start) clipped to one period.
+     */
+    private static Partial computePeriod(long[] starts, long[] ends, long pStart, long pEnd) {
+
+        // Clip to the period
+        long[] cs = new long[starts.length];
+        long[] ce = new long[starts.length];
+        int n = 0;
+        for (int i = 0; i < starts.length && starts[i] < pEnd; i++) {
+            if (ends[i] > pStart) {
+                cs[n] = Math.max(starts[i], pStart);
+                ce[n] = Math.min(ends[i], pEnd);
+                n++;
+            }
+        }
+
+        // Booked time and free gaps via a merge of the sorted intervals
+        long booked = 0;
+        long leading = -1;
+        long longest = 0;
+        long cursor = pStart;
+
+        for (int i = 0; i < n; i++) {
+            if (cs[i] > cursor) {
+                long gap = cs[i] - cursor;
+                if (leading < 0) leading = gap;
+                longest = Math.max(longest, gap);
+                booked += ce[i] - cs[i];
+                cursor = ce[i];
+            } else if (ce[i] > cursor) {
+                booked += ce[i] - cursor;
+                cursor = ce[i];
+            }
+            if (leading < 0) leading = 0;
+        }
+
+        long trailing = pEnd - cursor;
+        longest = Math.max(longest, trailing);
+        if (leading < 0) leading = pEnd - pStart;
+
+        // Peak overlap: ends sort before starts at the same moment
+        long[] points = new long[n * 2];
+        for (int i = 0; i < n; i++) {
+            points[2 * i] = (cs[i] << 1) | 1;   // start
+            points[2 * i + 1] = ce[i] << 1;     // end
+        }
+        Arrays.sort(points);
+        int running = 0;
+        int peak = 0;
+        for (long pt : points) {
+            running += (pt & 1) == 1 ? 1 : -1;
+            peak = Math.max(peak, running);
+        }
+
+        long length = pEnd - pStart;
+        Bucket bucket = new Bucket(toTime(pStart).toLocalDate(), toTime(pEnd).toLocalDate(),
+                booked / 60, (length - booked) / 60, longest / 60, peak);
+
+        List<Bucket> list = new ArrayList<>(1);
+        list.add(bucket);
+        return new Partial(list, length, leading, trailing, longest);
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Returns the period boundaries (as keys) covering [from, to):
+     * bounds[i] is the start of period i, the last entry is the end.
+     * The first and last boundaries are clipped to from and to.
+     */
+    private static long[] periodBounds(LocalDate from, LocalDate to, Granularity granularity) {
+
+        LocalDate start = granularity == Granularity.WEEK
+                ? from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                : from.withDayOfMonth(1);
+
+        List<LocalDate> days = new ArrayList<>();
+        LocalDate d = start;
+        days.add(d);
+        do {
+            d = granularity == Granularity.WEEK ? d.plusWeeks(1) : d.plusMonths(1);
+            days.add(d);
+        } while (d.isBefore(to));
+        days.set(0, from);
+        days.set(days.size() - 1, to);
+
+        long[] bounds = new long[days.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = IntervalIndex.key(days.get(i).atStartOfDay());
+        }
+        return bounds;
+    }
+
+    /*
+     * Sorts parallel start/end arrays by start. When the starts span less
+     * than about 68 years, (start offset, index) pairs are packed into
+     * longs so a primitive sort can be used.
+     */
+    private static long[][] sortByStart(long[] starts, long[] ends) {
+
+        int n = starts.length;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (long v : starts) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+
+        int[] order = new int[n];
+        if (n == 0 || max - min < Integer.MAX_VALUE) {
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) packed[i] = ((starts[i] - min) << 32) | i;
+            Arrays.sort(packed);
+            for (int i = 0; i < n; i++) order[i] = (int) packed[i];
+        } else {
+            Integer[] boxed = new Integer[n];
+            for (int i = 0; i < n; i++) boxed[i] = i;
+            Arrays.sort(boxed, (a, b) -> Long.compare(starts[a], starts[b]));
+            for (int i = 0; i < n; i++) order[i] = boxed[i];
+        }
+
+        long[] s = new long[n];
+        long[] e = new long[n];
+        for (int i = 0; i < n; i++) {
+            s[i] = starts[order[i]];
+            e[i] = ends[order[i]];
+        }
+        return new long[][] { s, e };
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static LocalDateTime toTime(long key) {
+        return LocalDateTime.ofEpochSecond(key, 0, ZoneOffset.UTC);
+    }
+}
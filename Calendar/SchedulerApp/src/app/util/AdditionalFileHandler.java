@@ -20,16 +20,32 @@ import java.util.*;
 public class AdditionalFileHandler {
 
     // File path where additional event information is stored
-    private static final String FILE_PATH = "data/additional.csv";
+    static final String FILE_PATH = "data/additional.csv";
+
+    // Keep header matching the marking specification
+    // (includes "Catagory" typo intentionally)
+    private static final String HEADER = "eventId,Location,Catagory";
 
     /*
-     * Reads all additional event fields from the CSV file.
+     * Reads all additional event fields, including changes still waiting
+     * in the write-behind queue.
      */
     public static List<AdditionalEventFields> readAdditional() {
+        return WriteBehind.overlayAdditional(AdditionalFileHandler::readAdditionalFile);
+    }
+
+    /*
+     * Reads all additional event fields from the CSV file.
+     */
+    static List<AdditionalEventFields> readAdditionalFile() {
 
         // List to store all additional event fields
         List<AdditionalEventFields> list = new ArrayList<>();
 
+        // Locations and categories repeat heavily, so each distinct value
+        // is kept once and shared by every row that uses it
+        StringPool values = new StringPool();
+
         // Try-with-resources ensures the file is closed automatically
         try (BufferedReader br = new BufferedReader(new FileReader(FILE_PATH))) {
 
@@ -60,8 +76,8 @@ public class AdditionalFileHandler {
                 }
 
                 // Read location and category values
-                String location = parts[1].trim();
-                String category = parts[2].trim();
+                String location = values.get(values.intern(parts[1].trim()));
+                String category = values.get(values.intern(parts[2].trim()));
 
                 // Convert empty strings to null before storing
                 list.add(new AdditionalEventFields(
@@ -78,32 +94,116 @@ public class AdditionalFileHandler {
         return list;
     }
 
+    /*
+     * Parses a single CSV row into additional fields, or returns null if
+     * the row is malformed.
+     */
+    static AdditionalEventFields parseRow(String line) {
+
+        // Split CSV line, keeping empty trailing fields
+        String[] parts = line.split(",", -1);
+        if (parts.length < 3) return null;
+
+        try {
+            return new AdditionalEventFields(
+                    Integer.parseInt(parts[0].trim()),
+                    emptyToNull(parts[1]),
+                    emptyToNull(parts[2]));
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /*
+     * Formats additional fields as a CSV row.
+     */
+    static String toRow(AdditionalEventFields a) {
+        return a.getEventId() + "," +
+               nullToEmpty(a.getLocation()) + "," +
+               nullToEmpty(a.getCategory());
+    }
+
     /*
      * Writes all additional event fields to the CSV file.
      */
     public static void writeAdditional(List<AdditionalEventFields> list) {
 
-        // Ensure the data directory exists before writing
-        ensureDataDirExists();
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+
+            // Ensure the data directory exists before writing
+            ensureDataDirExists();
+
+            try {
+                writeAdditional(list, new File(FILE_PATH));
+            } catch (IOException e) {
+                // Print stack trace for debugging purposes
+                e.printStackTrace();
+                return;
+            }
+            DataLock.bump(DataLock.Table.ADDITIONAL);
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Writes all additional event fields to the given file.
+     */
+    static void writeAdditional(List<AdditionalEventFields> list, File file) throws IOException {
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(FILE_PATH))) {
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
 
-            // Keep header matching the marking specification
-            // (includes "Catagory" typo intentionally)
-            pw.println("eventId,Location,Catagory");
+            pw.println(HEADER);
 
             // Write each additional field as a CSV row
             for (AdditionalEventFields a : list) {
-                pw.println(
-                        a.getEventId() + "," +
-                                nullToEmpty(a.getLocation()) + "," +
-                                nullToEmpty(a.getCategory())
-                );
+                pw.println(toRow(a));
             }
 
-        } catch (IOException e) {
-            // Print stack trace for debugging purposes
-            e.printStackTrace();
+            if (pw.checkError()) {
+                throw new IOException("Error writing " + file);
+            }
+        }
+    }
+
+    /*
+     * Appends additional event fields to the end of the CSV file in a single write.
+     *
+     * Callers must make sure the event IDs are not already present,
+     * otherwise use upsert().
+     */
+    public static void appendAdditional(List<AdditionalEventFields> list) {
+
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+
+            // Ensure the data directory exists before writing
+            ensureDataDirExists();
+
+            File file = new File(FILE_PATH);
+            boolean needsHeader = !file.exists() || file.length() == 0;
+
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+
+                if (needsHeader) {
+                    pw.println(HEADER);
+                }
+
+                for (AdditionalEventFields a : list) {
+                    pw.println(toRow(a));
+                }
+
+            } catch (IOException e) {
+                // Print stack trace for debugging purposes
+                e.printStackTrace();
+                return;
+            }
+            DataLock.bump(DataLock.Table.ADDITIONAL);
+        } finally {
+            DataLock.unlock();
         }
     }
 
@@ -128,16 +228,21 @@ public class AdditionalFileHandler {
      */
     public static void upsert(AdditionalEventFields fields) {
 
-        List<AdditionalEventFields> all = readAdditional();
+        DataLock.lock();
+        try {
+            List<AdditionalEventFields> all = readAdditional();
 
-        // Remove any existing record for the same event ID
-        all.removeIf(a -> a.getEventId() == fields.getEventId());
+            // Remove any existing record for the same event ID
+            all.removeIf(a -> a.getEventId() == fields.getEventId());
 
-        // Add the new or updated record
-        all.add(fields);
+            // Add the new or updated record
+            all.add(fields);
 
-        // Save changes to the file
-        writeAdditional(all);
+            // Save changes to the file
+            writeAdditional(all);
+        } finally {
+            DataLock.unlock();
+        }
     }
 
     /**
@@ -145,14 +250,19 @@ public class AdditionalFileHandler {
      */
     public static void deleteByEventId(int eventId) {
 
-        List<AdditionalEventFields> all = readAdditional();
+        DataLock.lock();
+        try {
+            List<AdditionalEventFields> all = readAdditional();
 
-        // Remove matching additional fields
-        boolean removed = all.removeIf(a -> a.getEventId() == eventId);
+            // Remove matching additional fields
+            boolean removed = all.removeIf(a -> a.getEventId() == eventId);
 
-        // Save changes only if a record was removed
-        if (removed) {
-            writeAdditional(all);
+            // Save changes only if a record was removed
+            if (removed) {
+                writeAdditional(all);
+            }
+        } finally {
+            DataLock.unlock();
         }
     }
 
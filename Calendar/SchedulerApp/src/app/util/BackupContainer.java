@@ -0,0 +1,492 @@
+package app.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * BackupContainer
+ * ---------------
+ * This utility class writes and restores the compressed backup file
+ * (backup.sbk): the four data files as framed, Deflate-compressed
+ * sections.
+ *
+ *     "SBAK" version sectionCount
+ *     per section:
+ *         name  sourceSize  sourceModified
+ *         rawLength  rawCrc32c  compressedLength  compressedCrc32c
+ *         compressed bytes
+ *
+ * A section whose data file has the same size and modification time as
+ * when the previous container was written is not read or compressed
+ * again: its frame is copied from the previous container with
+ * FileChannel.transferTo, after its compressed checksum is checked (a
+ * damaged frame is compressed again instead). The new container is written to a temp file
+ * and then moved over the old one.
+ *
+ * Restore reads and checks every section (both checksums and the raw
+ * length) before anything is restored, so a damaged container never
+ * touches data/. The sections are then inflated into the regular
+ * backup format and handed to BackupManager.restore (new IDs, conflict
+ * checks). Files that are not containers are restored as text backups.
+ * preview() does the same checks and a dry run of the restore.
+ *
+ * This class does NOT handle user interaction.
+ */
+public class BackupContainer {
+
+    public static final String DEFAULT_PATH = "backup.sbk";
+
+    private static final byte[] MAGIC = { 'S', 'B', 'A', 'K' };
+    private static final int VERSION = 1;
+
+    // Fast level: the tables are plain CSV and compress well at any level
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    // Section names (as in the text backup) and their data files
+    private static final String[] TABLES = { "EVENTS", "RECURRENT", "ADDITIONAL", "REMINDERS" };
+    private static final String[] FILES = {
+            EventFileHandler.FILE_PATH,
+            RecurringFileHandler.FILE_PATH,
+            AdditionalFileHandler.FILE_PATH,
+            ReminderFileHandler.REMINDER_FILE
+    };
+
+    /*
+     * Frame
+     * -----
+     * One section header plus where its frame lies in the container.
+     */
+    private static class Frame {
+
+        String name;
+        long sourceSize;
+        long sourceModified;
+        long rawLength;
+        int rawCrc;
+        long compressedLength;
+        int compressedCrc;
+
+        // Offset of the frame (header included) and of its payload
+        long frameStart;
+        long payloadStart;
+
+        long frameLength() {
+            return payloadStart - frameStart + compressedLength;
+        }
+    }
+
+    // ===================== BACKUP =====================
+
+    /*
+     * Writes a container holding all four data files.
+     */
+    public static void backup(String backupPath) {
+
+        // The container is built from the files, so they must hold every committed change
+        if (WriteBehind.ENABLED) WriteBehind.flush();
+
+        Path target = Path.of(backupPath);
+        Path tmp = Path.of(backupPath + ".tmp");
+
+        // Frames of the previous container that may be reused
+        Map<String, Frame> previous = readFramesQuietly(target);
+
+        int reused = 0;
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel old = previous.isEmpty() ? null : FileChannel.open(target, StandardOpenOption.READ)) {
+
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            DataOutputStream dh = new DataOutputStream(head);
+            dh.write(MAGIC);
+            dh.writeInt(VERSION);
+            dh.writeInt(TABLES.length);
+            writeFully(out, head.toByteArray());
+
+            for (int t = 0; t < TABLES.length; t++) {
+
+                File file = new File(FILES[t]);
+                long size = file.exists() ? file.length() : -1;
+                long modified = file.exists() ? file.lastModified() : 0;
+
+                // Unchanged table: copy its frame from the previous container,
+                // unless that frame is damaged (it would be carried forward)
+                Frame prev = previous.get(TABLES[t]);
+                if (old != null && prev != null && prev.sourceSize == size && prev.sourceModified == modified) {
+                    if (payloadIntact(old, prev)) {
+                        transferFully(old, prev.frameStart, prev.frameLength(), out);
+                        reused++;
+                        continue;
+                    }
+                    System.out.println("Section " + TABLES[t] + " of the previous backup is damaged; compressing it again.");
+                }
+
+                writeSection(out, TABLES[t], file, size, modified);
+            }
+
+            out.force(true);
+
+        } catch (IOException e) {
+            System.out.println("Backup failed: " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // Leftover temp file is overwritten by the next backup
+            }
+            return;
+        }
+
+        try {
+            replace(tmp, target);
+        } catch (IOException e) {
+            System.out.println("Backup failed: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Backup completed to " + backupPath
+                + (reused > 0 ? " (" + reused + " unchanged section(s) copied)." : "."));
+    }
+
+    /*
+     * Compresses one data file and appends its frame.
+     */
+    private static void writeSection(FileChannel out, String name, File file,
+                                     long size, long modified) throws IOException {
+
+        CRC32C rawCrc = new CRC32C();
+        long rawLength = 0;
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) Math.max(1024, size / 4));
+        Deflater deflater = new Deflater(LEVEL);
+
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater, 1 << 16)) {
+            if (size >= 0) {
+                try (FileInputStream in = new FileInputStream(file)) {
+                    byte[] buf = new byte[1 << 16];
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        rawCrc.update(buf, 0, n);
+                        rawLength += n;
+                        dos.write(buf, 0, n);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] payload = compressed.toByteArray();
+        CRC32C payloadCrc = new CRC32C();
+        payloadCrc.update(payload);
+
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        DataOutputStream dh = new DataOutputStream(head);
+        dh.writeUTF(name);
+        dh.writeLong(size);
+        dh.writeLong(modified);
+        dh.writeLong(rawLength);
+        dh.writeInt((int) rawCrc.getValue());
+        dh.writeLong(payload.length);
+        dh.writeInt((int) payloadCrc.getValue());
+
+        writeFully(out, head.toByteArray());
+        writeFully(out, payload);
+    }
+
+    // ===================== RESTORE =====================
+
+    /*
+     * Restores a container (or a text backup) into the application.
+     */
+    public static void restore(String backupPath) {
+
+        Path path = Path.of(backupPath);
+        if (!Files.exists(path)) {
+            System.out.println("Restore failed: " + backupPath + " not found.");
+            return;
+        }
+
+        if (!isContainer(path)) {
+            BackupManager.restore(backupPath);
+            return;
+        }
+
+        BufferedReader br = openVerified(path);
+        if (br == null) return;
+
+        try (br) {
+            BackupManager.restore(br, backupPath);
+        } catch (IOException e) {
+            System.out.println("Restore failed.");
+        }
+    }
+
+    /*
+     * Dry run of restore(String) (see BackupManager.preview). Returns
+     * null if the backup is missing or damaged.
+     */
+    public static BackupManager.RestoreSummary preview(String backupPath, PrintStream diff) {
+
+        Path path = Path.of(backupPath);
+        if (!Files.exists(path)) {
+            System.out.println("Restore preview failed: " + backupPath + " not found.");
+            return null;
+        }
+
+        if (!isContainer(path)) {
+            return BackupManager.preview(backupPath, diff);
+        }
+
+        BufferedReader br = openVerified(path);
+        if (br == null) return null;
+
+        try (br) {
+            return BackupManager.preview(br, diff);
+        } catch (IOException e) {
+            System.out.println("Restore preview failed.");
+            return null;
+        }
+    }
+
+    /*
+     * Reads and checks every section, then returns the sections as
+     * backup-format lines (events first). Returns null, after printing
+     * the problem, if the container is damaged.
+     */
+    private static BufferedReader openVerified(Path path) {
+
+        List<Frame> frames = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            for (Frame f : readFrames(ch)) {
+
+                byte[] payload = new byte[(int) f.compressedLength];
+                ByteBuffer buf = ByteBuffer.wrap(payload);
+                long pos = f.payloadStart;
+                while (buf.hasRemaining()) {
+                    int n = ch.read(buf, pos);
+                    if (n < 0) throw new EOFException("section " + f.name + " is truncated");
+                    pos += n;
+                }
+
+                String problem = verify(f, payload);
+                if (problem != null) {
+                    System.out.println("Backup is damaged (" + problem + "); nothing restored.");
+                    return null;
+                }
+
+                frames.add(f);
+                payloads.add(payload);
+            }
+
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Backup is damaged (" + e.getMessage() + "); nothing restored.");
+            return null;
+        }
+
+        // Inflate the sections into backup-format lines
+        List<InputStream> parts = new ArrayList<>();
+        for (int i = 0; i < frames.size(); i++) {
+            parts.add(new ByteArrayInputStream(("\n#" + frames.get(i).name + "\n").getBytes(StandardCharsets.UTF_8)));
+            parts.add(new InflaterInputStream(new ByteArrayInputStream(payloads.get(i))));
+        }
+
+        return new BufferedReader(new InputStreamReader(
+                new SequenceInputStream(Collections.enumeration(parts)), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /*
+     * Checks a section's payload; returns what is wrong, or null if it is intact.
+     */
+    private static String verify(Frame f, byte[] payload) {
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != f.compressedCrc) {
+            return "checksum mismatch in " + f.name;
+        }
+
+        // The compressed bytes are intact; the raw checksum catches a bad writer
+        CRC32C raw = new CRC32C();
+        long length = 0;
+        Inflater inflater = new Inflater();
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(payload), inflater, 1 << 16)) {
+            byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                raw.update(buf, 0, n);
+                length += n;
+            }
+        } catch (IOException e) {
+            return "cannot decompress " + f.name;
+        } finally {
+            inflater.end();
+        }
+
+        if (length != f.rawLength || (int) raw.getValue() != f.rawCrc) {
+            return "content mismatch in " + f.name;
+        }
+        return null;
+    }
+
+    /*
+     * Checks a previous frame's compressed bytes against their checksum,
+     * reading them in chunks straight from the channel.
+     */
+    private static boolean payloadIntact(FileChannel ch, Frame f) throws IOException {
+
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long pos = f.payloadStart;
+        long end = f.payloadStart + f.compressedLength;
+
+        while (pos < end) {
+            buf.clear().limit((int) Math.min(buf.capacity(), end - pos));
+            int n = ch.read(buf, pos);
+            if (n < 0) return false;
+            buf.flip();
+            crc.update(buf);
+            pos += n;
+        }
+        return (int) crc.getValue() == f.compressedCrc;
+    }
+
+    // ===================== FRAMES =====================
+
+    private static boolean isContainer(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            return Arrays.equals(head, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Reads the section headers of a container, checking that every frame
+     * lies inside the file.
+     */
+    private static List<Frame> readFrames(FileChannel ch) throws IOException {
+
+        long fileSize = ch.size();
+        ch.position(0);
+
+        // Unbuffered on purpose: the channel position must track the headers
+        DataInputStream in = new DataInputStream(Channels.newInputStream(ch));
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a backup container");
+        if (in.readInt() != VERSION) throw new IOException("unsupported container version");
+
+        int count = in.readInt();
+        if (count < 0 || count > TABLES.length) throw new IOException("bad section count");
+
+        List<Frame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+
+            Frame f = new Frame();
+            f.frameStart = ch.position();
+            f.name = in.readUTF();
+            f.sourceSize = in.readLong();
+            f.sourceModified = in.readLong();
+            f.rawLength = in.readLong();
+            f.rawCrc = in.readInt();
+            f.compressedLength = in.readLong();
+            f.compressedCrc = in.readInt();
+            f.payloadStart = ch.position();
+
+            if (f.compressedLength < 0 || f.compressedLength > Integer.MAX_VALUE
+                    || f.payloadStart + f.compressedLength > fileSize) {
+                throw new IOException("section " + f.name + " is truncated");
+            }
+
+            frames.add(f);
+            ch.position(f.payloadStart + f.compressedLength);
+        }
+
+        if (ch.position() != fileSize) throw new IOException("unexpected data after the last section");
+        return frames;
+    }
+
+    /*
+     * Frames of an existing container by name; empty if there is none or
+     * it cannot be read (the next backup then compresses every table).
+     */
+    private static Map<String, Frame> readFramesQuietly(Path path) {
+
+        Map<String, Frame> frames = new HashMap<>();
+        if (!isContainer(path)) return frames;
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Frame f : readFrames(ch)) frames.put(f.name, f);
+        } catch (IOException e) {
+            frames.clear();
+        }
+        return frames;
+    }
+
+    // ===================== HELPERS =====================
+
+    private static void writeFully(FileChannel out, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /*
+     * Copies a byte range between channels without passing it through the
+     * heap (transferTo may copy less than asked, so it loops).
+     */
+    private static void transferFully(FileChannel from, long position, long count, FileChannel to) throws IOException {
+        while (count > 0) {
+            long n = from.transferTo(position, count, to);
+            if (n <= 0) throw new EOFException("previous backup is truncated");
+            position += n;
+            count -= n;
+        }
+    }
+
+    private static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package app.util;
 
+import app.model.AdditionalEventFields;
 import app.model.Event;
 import app.model.RecurringEvent;
 import app.model.Reminder;
 
 import java.io.*;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /*
  * BackupManager
@@ -33,11 +36,52 @@ public class BackupManager {
     private static final String ADDITIONAL_FILE = "data/additional.csv";
     private static final String REMINDER_FILE = "data/reminder.csv";
 
+    /*
+     * Counts from a restore or a restore preview.
+     */
+    public static class RestoreSummary {
+
+        // Backup events restored (or that would be) under new IDs
+        public final int restored;
+
+        // Backup events skipped because they overlap an existing event
+        public final int conflicts;
+
+        // Backup events skipped because they overlap an earlier event in the backup
+        public final int backupConflicts;
+
+        // Event rows skipped because they are malformed
+        public final int invalid;
+
+        // Linked rows restored with their event
+        public final int recurring;
+        public final int additional;
+        public final int reminders;
+
+        // Linked rows dropped because their event is not restored
+        public final int orphans;
+
+        public RestoreSummary(int restored, int conflicts, int backupConflicts, int invalid,
+                              int recurring, int additional, int reminders, int orphans) {
+            this.restored = restored;
+            this.conflicts = conflicts;
+            this.backupConflicts = backupConflicts;
+            this.invalid = invalid;
+            this.recurring = recurring;
+            this.additional = additional;
+            this.reminders = reminders;
+            this.orphans = orphans;
+        }
+    }
+
     /*
      * Creates a backup file that contains all application data.
      */
     public static void backup(String backupPath) {
 
+        // The backup copies the files, so they must hold every committed change
+        if (WriteBehind.ENABLED) WriteBehind.flush();
+
         // Write all data into a single backup file
         try (PrintWriter pw = new PrintWriter(new FileWriter(backupPath))) {
 
@@ -91,27 +135,252 @@ public class BackupManager {
      * Restore strategy:
      * - Existing events are preserved
      * - Restored events are assigned new IDs to avoid collisions
+     * - Backup events that overlap an existing or earlier restored event
+     *   are skipped
      * - All linked data (recurrence, reminders, additional fields)
      *   are updated to use the new IDs
+     *
+     * The backup is read in a single pass. Conflicts are checked against
+     * an IntervalIndex of the existing events plus a sorted map of the
+     * events restored so far, and linked rows are matched through hash
+     * maps, so the restore runs in O(n log n). Nothing is written until
+     * the whole file has parsed; then the new rows of all four tables are
+     * committed in one UnitOfWork, so either all of them are added or
+     * none. Event rows that cannot be parsed are counted as invalid and
+     * skipped.
+     *
+     * backup() writes the #EVENTS section first, which is what lets
+     * linked rows be mapped to their new IDs as they are read.
      */
     public static void restore(String backupPath) {
 
-        // Read existing events to avoid overwriting them
-        List<Event> currentEvents = EventFileHandler.readEvents();
-        int nextId = EventFileHandler.getNextEventId(currentEvents);
+        try (BufferedReader br = new BufferedReader(new FileReader(backupPath))) {
+            restore(br, backupPath);
+        } catch (IOException e) {
+            System.out.println("Restore failed.");
+        }
+    }
+
+    /*
+     * Dry run of restore(String): runs the same conflict checks and ID
+     * mapping, prints one line per backup event to diff, and writes
+     * nothing. Returns the counts, or null if the backup could not be read.
+     */
+    public static RestoreSummary preview(String backupPath, PrintStream diff) {
+
+        try (BufferedReader br = new BufferedReader(new FileReader(backupPath))) {
+            return preview(br, diff);
+        } catch (IOException e) {
+            System.out.println("Restore preview failed.");
+            return null;
+        }
+    }
+
+    /*
+     * Restores backup-format lines from a reader (see restore(String)).
+     * source is only used in messages.
+     */
+    static void restore(BufferedReader br, String source) {
+
+        RestoreSummary summary = run(br, null);
+        if (summary != null) {
+            System.out.println("Restore completed from " + source + " (" + summary.restored
+                    + " event(s) restored, " + (summary.conflicts + summary.backupConflicts)
+                    + " skipped due to time conflicts"
+                    + (summary.invalid > 0 ? ", " + summary.invalid + " invalid row(s) skipped" : "") + ").");
+        }
+    }
+
+    /*
+     * Previews restoring backup-format lines from a reader (see preview(String, PrintStream)).
+     */
+    static RestoreSummary preview(BufferedReader br, PrintStream diff) {
+        return run(br, diff);
+    }
+
+    /*
+     * Point-in-time restore of backup-format lines: the four tables are
+     * replaced by the backup's rows, keeping their IDs, in one UnitOfWork
+     * (so either all tables change or none do). Current rows that are not
+     * in the backup are deleted. source is only used in messages.
+     *
+     * Unlike restore(BufferedReader, String) nothing is merged and no
+     * conflict checks are made: the backup already was a valid state.
+     * Malformed rows, and linked rows whose event is not in the backup,
+     * are skipped. The ID sequence is only ever raised, so IDs handed out
+     * after the backup was taken are not reused.
+     */
+    static void replace(BufferedReader br, String source) {
+
+        // Backup rows by ID; a repeated row replaces the earlier one
+        Map<Integer, Event> events = new LinkedHashMap<>();
+        Map<Integer, RecurringEvent> recurring = new LinkedHashMap<>();
+        Map<Integer, AdditionalEventFields> additional = new LinkedHashMap<>();
+        Map<Integer, Reminder> reminders = new LinkedHashMap<>();
+        int invalid = 0;
+
+        try {
+            String line;
+            String section = "";
+
+            while ((line = br.readLine()) != null) {
+
+                if (line.startsWith("#")) {
+                    section = line;
+                    continue;
+                }
+                if (line.trim().isEmpty() || line.startsWith("eventId,")) continue;
+
+                switch (section) {
+                    case "#EVENTS" -> {
+                        Event e = parseEventOrNull(line);
+                        if (e == null) invalid++;
+                        else {
+                            events.remove(e.getEventId());
+                            events.put(e.getEventId(), e);
+                        }
+                    }
+                    case "#RECURRENT" -> {
+                        RecurringEvent r = RecurringFileHandler.parseRow(line);
+                        if (r == null) invalid++;
+                        else {
+                            recurring.remove(r.getEventId());
+                            recurring.put(r.getEventId(), r);
+                        }
+                    }
+                    case "#ADDITIONAL" -> {
+                        AdditionalEventFields a = AdditionalFileHandler.parseRow(line);
+                        if (a == null) invalid++;
+                        else {
+                            additional.remove(a.getEventId());
+                            additional.put(a.getEventId(), new AdditionalEventFields(a.getEventId(),
+                                    trimOrNull(a.getLocation()), trimOrNull(a.getCategory())));
+                        }
+                    }
+                    case "#REMINDERS" -> {
+                        Reminder r = ReminderFileHandler.parseRow(line);
+                        if (r == null) invalid++;
+                        else {
+                            reminders.remove(r.getEventId());
+                            reminders.put(r.getEventId(), r);
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Nothing is written yet
+            System.out.println("Restore failed.");
+            return;
+        }
+
+        int orphans = dropOrphans(recurring, events) + dropOrphans(additional, events)
+                + dropOrphans(reminders, events);
+        int highest = 0;
+        for (int id : events.keySet()) highest = Math.max(highest, id);
+
+        // The current rows must not change between reading them and the commit
+        DataLock.lock();
+        try {
+            // Raise the sequence first: an unused gap is harmless, a reused ID is not
+            if (IdSequence.current() < highest && !IdSequence.reset(highest)) {
+                System.out.println("Restore cancelled.");
+                return;
+            }
+
+            UnitOfWork uow = new UnitOfWork();
+            for (Event e : EventFileHandler.readEvents()) uow.deleteEvent(e.getEventId());
+            for (RecurringEvent r : RecurringFileHandler.readRecurringEvents()) uow.deleteRecurring(r.getEventId());
+            for (AdditionalEventFields a : AdditionalFileHandler.readAdditional()) uow.deleteAdditional(a.getEventId());
+            for (Reminder r : ReminderFileHandler.readReminders()) uow.deleteReminder(r.getEventId());
+
+            for (Event e : events.values()) uow.putEvent(e);
+            for (RecurringEvent r : recurring.values()) uow.putRecurring(r);
+            for (AdditionalEventFields a : additional.values()) uow.putAdditional(a);
+            for (Reminder r : reminders.values()) uow.putReminder(r);
+
+            if (!uow.commit()) {
+                System.out.println("Restore failed; current data was left unchanged.");
+                return;
+            }
+            if (WriteBehind.ENABLED) WriteBehind.flush();
+        } finally {
+            DataLock.unlock();
+        }
+
+        System.out.println("Restore completed from " + source + " (" + events.size() + " event(s); "
+                + "current data replaced" + (invalid + orphans > 0
+                        ? ", " + (invalid + orphans) + " unusable row(s) skipped" : "") + ").");
+    }
+
+    private static Event parseEventOrNull(String line) {
+        if (line.split(",").length < 5) return null;
+        try {
+            return EventFileHandler.parseEvent(line);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Removes linked rows whose event is not restored; returns how many.
+     */
+    private static int dropOrphans(Map<Integer, ?> rows, Map<Integer, Event> events) {
+        int before = rows.size();
+        rows.keySet().retainAll(events.keySet());
+        return before - rows.size();
+    }
+
+    /*
+     * The restore pass. With a diff stream it is a dry run: every backup
+     * event is reported as it is read and no table (or the ID sequence)
+     * is written. Returns null (after printing why) if the restore failed.
+     */
+    private static RestoreSummary run(BufferedReader br, PrintStream diff) {
+
+        boolean dryRun = diff != null;
+        String failed = dryRun ? "Restore preview failed." : "Restore failed.";
+
+        // Index the existing events for conflict checks
+        IntervalIndex existing = new IntervalIndex();
+        try (Stream<Event> events = EventFileHandler.streamEvents()) {
+            Iterator<Event> it = events.iterator();
+            while (it.hasNext()) {
+                Event e = it.next();
+                existing.addUnsorted(IntervalIndex.key(e.getStartDateTime()),
+                                     IntervalIndex.key(e.getEndDateTime()));
+            }
+        } catch (RuntimeException e) {
+            System.out.println(failed);
+            return null;
+        }
+        existing.sort();
+
+        // Restored events never overlap each other, so sorted by start
+        // their ends are sorted too: start -> latest end at that start
+        TreeMap<Long, Long> restored = new TreeMap<>();
+
+        // New IDs continue from the persisted sequence
+        int firstId = IdSequence.current() + 1;
+        int nextId = firstId;
 
-        // Temporary storage for backup data
-        List<Event> backupEvents = new ArrayList<>();
-        List<RecurringEvent> backupRecurring = new ArrayList<>();
-        List<String[]> backupAdditional = new ArrayList<>();
-        List<Reminder> backupReminders = new ArrayList<>();
+        // Old (backup) ID -> new ID
+        Map<Integer, Integer> idMap = new HashMap<>();
+
+        // Restored rows, keyed by new ID so a repeated row replaces the earlier one
+        List<Event> newEvents = new ArrayList<>();
+        Map<Integer, RecurringEvent> newRecurring = new LinkedHashMap<>();
+        Map<Integer, AdditionalEventFields> newAdditional = new LinkedHashMap<>();
+        Map<Integer, Reminder> newReminders = new LinkedHashMap<>();
+
+        int conflicts = 0, backupConflicts = 0, invalid = 0, orphans = 0;
 
         // Enum used to track which section of the backup file is being read
         enum Section { NONE, EVENTS, RECURRENT, ADDITIONAL, REMINDERS }
         Section section = Section.NONE;
 
         // Read and parse the backup file
-        try (BufferedReader br = new BufferedReader(new FileReader(backupPath))) {
+        try {
             String line;
 
             while ((line = br.readLine()) != null) {
@@ -143,202 +412,138 @@ public class BackupManager {
                 // Skip CSV header rows
                 if (line.startsWith("eventId,")) continue;
 
-                String[] parts = line.split(",");
-
-                // Parse event records
+                // Event records: keep those that fit, under a new ID
                 if (section == Section.EVENTS) {
-                    if (parts.length < 5) continue;
-
-                    int oldId = Integer.parseInt(parts[0]);
-                    String title = parts[1];
-                    String desc = parts[2];
-                    LocalDateTime start = LocalDateTime.parse(parts[3]);
-                    LocalDateTime end = LocalDateTime.parse(parts[4]);
-                    backupEvents.add(new Event(oldId, title, desc, start, end));
+                    Event be = parseEventOrNull(line);
+                    if (be == null) {
+                        invalid++;
+                        if (dryRun) diff.println("x " + line + "  (invalid row)");
+                        continue;
+                    }
+
+                    long start = IntervalIndex.key(be.getStartDateTime());
+                    long end = IntervalIndex.key(be.getEndDateTime());
+                    if (end < start) {
+                        long tmp = start;
+                        start = end;
+                        end = tmp;
+                    }
+
+                    // Skip restoring events that conflict with existing or restored events
+                    if (existing.overlaps(start, end)) {
+                        conflicts++;
+                        if (dryRun) diff.println("! " + describe(be) + "  (overlaps an existing event)");
+                        continue;
+                    }
+                    if (overlapsRestored(restored, start, end)) {
+                        backupConflicts++;
+                        if (dryRun) diff.println("! " + describe(be) + "  (overlaps an earlier event in the backup)");
+                        continue;
+                    }
+                    restored.merge(start, end, Math::max);
+
+                    // Assign a new unique ID
+                    int newId = nextId++;
+                    idMap.put(be.getEventId(), newId);
+                    if (dryRun) {
+                        diff.println("+ " + describe(be) + (newId == be.getEventId() ? "" : "  (new ID " + newId + ")"));
+                    }
+                    if (!dryRun) {
+                        newEvents.add(new Event(newId, be.getTitle(), be.getDescription(),
+                                                be.getStartDateTime(), be.getEndDateTime()));
+                    }
                 }
 
-                // Parse recurrence rules
+                // Recurrence rules
                 else if (section == Section.RECURRENT) {
-                    if (parts.length < 4) continue;
-
-                    int oldId = Integer.parseInt(parts[0]);
-                    String interval = parts[1];
-                    int times = Integer.parseInt(parts[2]);
-                    LocalDate endDate = parts[3].equals("0")
-                            ? null
-                            : LocalDate.parse(parts[3]);
-                    backupRecurring.add(
-                            new RecurringEvent(oldId, interval, times, endDate)
-                    );
+                    RecurringEvent r = RecurringFileHandler.parseRow(line);
+                    Integer newId = r == null ? null : idMap.get(r.getEventId());
+                    if (newId == null) {
+                        orphans++;
+                        continue;
+                    }
+
+                    newRecurring.remove(newId);
+                    newRecurring.put(newId, new RecurringEvent(newId, r.getInterval(),
+                            r.getRecurrentTimes(), r.getRecurrentEndDate()));
                 }
 
-                // Parse additional event fields
+                // Additional event fields
                 else if (section == Section.ADDITIONAL) {
-                    if (parts.length < 3) continue;
-                    backupAdditional.add(parts);
+                    AdditionalEventFields a = AdditionalFileHandler.parseRow(line);
+                    Integer newId = a == null ? null : idMap.get(a.getEventId());
+                    if (newId == null) {
+                        orphans++;
+                        continue;
+                    }
+
+                    newAdditional.remove(newId);
+                    newAdditional.put(newId, new AdditionalEventFields(newId,
+                            trimOrNull(a.getLocation()), trimOrNull(a.getCategory())));
                 }
 
-                // Parse reminders
+                // Reminders (only one per event)
                 else if (section == Section.REMINDERS) {
-                    if (parts.length < 2) continue;
-
-                    try {
-                        int oldEventId = Integer.parseInt(parts[0].trim());
-                        int minutesBefore = Integer.parseInt(parts[1].trim());
-                        backupReminders.add(new Reminder(oldEventId, minutesBefore));
-                    } catch (NumberFormatException ignored) {
-                        // Skip malformed reminder rows
+                    Reminder r = ReminderFileHandler.parseRow(line);
+                    Integer newId = r == null ? null : idMap.get(r.getEventId());
+                    if (newId == null) {
+                        orphans++;
+                        continue;
                     }
+
+                    newReminders.remove(newId);
+                    newReminders.put(newId, new Reminder(newId, r.getMinutesBefore()));
                 }
             }
 
         } catch (IOException | RuntimeException e) {
-            // Abort restore if any critical error occurs
-            System.out.println("Restore failed.");
-            return;
+            // Abort restore if any critical error occurs (nothing is written yet)
+            System.out.println(failed);
+            return null;
         }
 
-        /*
-         * Build mapping from old event IDs (backup)
-         * to newly assigned event IDs (current system).
-         */
-        Map<Integer, Integer> idMap = new HashMap<>();
-        List<Event> mergedEvents = new ArrayList<>(currentEvents);
-
-        for (Event be : backupEvents) {
-
-            // Skip restoring events that conflict with existing events
-            Event candidate = new Event(
-                    -1,
-                    be.getTitle(),
-                    be.getDescription(),
-                    be.getStartDateTime(),
-                    be.getEndDateTime()
-            );
-
-            if (hasConflict(candidate, mergedEvents)) {
-                continue;
-            }
-
-            // Assign a new unique ID
-            int newId = nextId++;
-            idMap.put(be.getEventId(), newId);
-
-            mergedEvents.add(
-                    new Event(newId, be.getTitle(),
-                              be.getDescription(),
-                              be.getStartDateTime(),
-                              be.getEndDateTime())
-            );
-        }
+        RestoreSummary summary = new RestoreSummary(nextId - firstId, conflicts, backupConflicts, invalid,
+                newRecurring.size(), newAdditional.size(), newReminders.size(), orphans);
+        if (dryRun) return summary;
 
-        /*
-         * Restore recurring rules with updated event IDs.
-         */
-        List<RecurringEvent> mergedRecurring =
-                new ArrayList<>(RecurringFileHandler.readRecurringEvents());
-
-        for (RecurringEvent brc : backupRecurring) {
-            Integer newEventId = idMap.get(brc.getEventId());
-            if (newEventId == null) continue;
-
-            // Ensure no duplicate recurrence rule exists
-            mergedRecurring.removeIf(r -> r.getEventId() == newEventId);
-            mergedRecurring.add(
-                    new RecurringEvent(
-                            newEventId,
-                            brc.getInterval(),
-                            brc.getRecurrentTimes(),
-                            brc.getRecurrentEndDate()
-                    )
-            );
+        // Reserve the IDs used before any table is written
+        if (nextId > firstId && IdSequence.reserve(nextId - firstId) != firstId) {
+            System.out.println("Restore cancelled.");
+            return null;
         }
 
-        /*
-         * Restore additional event fields with updated event IDs.
-         */
-        List<app.model.AdditionalEventFields> mergedAdditional =
-                new ArrayList<>(app.util.AdditionalFileHandler.readAdditional());
-
-        for (String[] row : backupAdditional) {
-            int oldId;
-            try {
-                oldId = Integer.parseInt(row[0].trim());
-            } catch (NumberFormatException nfe) {
-                continue;
-            }
-
-            Integer newId = idMap.get(oldId);
-            if (newId == null) continue;
-
-            String location = row[1].trim();
-            String category = row[2].trim();
-
-            mergedAdditional.removeIf(a -> a.getEventId() == newId);
-            mergedAdditional.add(
-                    new app.model.AdditionalEventFields(newId, location, category)
-            );
+        // One commit for all four tables; existing rows are left untouched
+        UnitOfWork uow = new UnitOfWork();
+        for (Event e : newEvents) uow.putEvent(e);
+        for (RecurringEvent r : newRecurring.values()) uow.putRecurring(r);
+        for (AdditionalEventFields a : newAdditional.values()) uow.putAdditional(a);
+        for (Reminder r : newReminders.values()) uow.putReminder(r);
+
+        if (!uow.commit()) {
+            if (nextId > firstId) IdSequence.release(firstId, nextId - 1);
+            System.out.println("Restore failed; current data was left unchanged.");
+            return null;
         }
-
-        /*
-         * Restore reminders with updated event IDs.
-         */
-        List<Reminder> mergedReminders =
-                new ArrayList<>(ReminderFileHandler.readReminders());
-
-        for (Reminder br : backupReminders) {
-            Integer newId = idMap.get(br.getEventId());
-            if (newId == null) continue;
-
-            // Ensure only one reminder exists per event
-            mergedReminders.removeIf(r -> r.getEventId() == newId);
-            mergedReminders.add(new Reminder(newId, br.getMinutesBefore()));
-        }
-
-        // Write merged data back to CSV files
-        EventFileHandler.writeEvents(mergedEvents);
-        RecurringFileHandler.writeRecurringEvents(mergedRecurring);
-        app.util.AdditionalFileHandler.writeAdditional(mergedAdditional);
-        ReminderFileHandler.writeReminders(mergedReminders);
-
-        System.out.println("Restore completed from " + backupPath);
+        return summary;
     }
 
     /*
-     * Checks whether a new event conflicts with existing events.
+     * Checks [start, end) against the restored events. Their ends grow
+     * with their starts, so only the last one starting before end matters.
      */
-    private static boolean hasConflict(Event newEvent, List<Event> events) {
-
-        LocalDateTime newStart = newEvent.getStartDateTime();
-        LocalDateTime newEnd = newEvent.getEndDateTime();
-
-        // Normalize time range
-        if (newEnd.isBefore(newStart)) {
-            LocalDateTime tmp = newStart;
-            newStart = newEnd;
-            newEnd = tmp;
-        }
-
-        // Compare with all existing events
-        for (Event e : events) {
-            LocalDateTime start = e.getStartDateTime();
-            LocalDateTime end = e.getEndDateTime();
-
-            if (end.isBefore(start)) {
-                LocalDateTime tmp = start;
-                start = end;
-                end = tmp;
-            }
+    private static boolean overlapsRestored(TreeMap<Long, Long> restored, long start, long end) {
+        Map.Entry<Long, Long> before = restored.lowerEntry(end);
+        return before != null && before.getValue() > start;
+    }
 
-            // Check for overlapping time intervals
-            boolean overlap =
-                    newStart.isBefore(end) &&
-                    newEnd.isAfter(start);
+    /*
+     * Backup event as shown in a preview: "<backup ID>  <start>  <title>".
+     */
+    private static String describe(Event e) {
+        return e.getEventId() + "  " + e.getStartDateTime() + "  " + e.getTitle();
+    }
 
-            if (overlap) {
-                return true;
-            }
-        }
-        return false;
+    private static String trimOrNull(String value) {
+        return value == null ? null : value.trim();
     }
 }
@@ -0,0 +1,182 @@
+package app.util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * DataLock
+ * --------
+ * Coordinates every process (and thread) working on the same data/
+ * directory.
+ *
+ * Locking:
+ * - Every read-modify-write of a table runs between lock() and unlock().
+ *   This covers commits, write-behind flushes, journal recovery, direct
+ *   table writes and ID allocation.
+ * - lock() takes an in-process ReentrantLock and, in the outermost call,
+ *   an exclusive FileChannel.lock on data/.lock. Two instances therefore
+ *   never rewrite a table from the same stale copy and never share the
+ *   commit journal.
+ * - Readers do not lock: tables are replaced by atomic renames, so a
+ *   reader sees either the old file or the new one.
+ *
+ * Change detection:
+ * - data/.versions holds one counter per table and is mapped into
+ *   memory. A table's counter is bumped, under the lock, every time the
+ *   table is written.
+ * - Reading the counters is a memory read, not a system call. A process
+ *   can check for external changes as often as it likes and reload only
+ *   the tables whose counters moved.
+ * - The counters only need to be shared by running processes, so they
+ *   are never forced to disk.
+ *
+ * If the lock or counter file cannot be opened (e.g. a read-only
+ * directory), a warning is printed once and the process falls back to
+ * in-process locking; versions then stay at 0.
+ */
+public class DataLock {
+
+    public enum Table { EVENTS, ADDITIONAL, REMINDERS, RECURRING }
+
+    private static final String LOCK_PATH = "data/.lock";
+    private static final String VERSIONS_PATH = "data/.versions";
+
+    private static final int VERSIONS_SIZE = 64;
+
+    // Atomic 8-byte access to the mapped counters
+    private static final VarHandle COUNTER =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    // Guarded by LOCK
+    private static FileChannel lockChannel;
+    private static FileLock fileLock;
+
+    // Mapped on first use (null if the file cannot be mapped)
+    private static volatile MappedByteBuffer mapped;
+    private static volatile boolean mapFailed;
+
+    // Guarded by the class monitor
+    private static boolean warned;
+
+    /*
+     * Acquires the data lock, waiting for other threads and processes.
+     * Reentrant; every call must be paired with unlock() in a finally.
+     */
+    public static void lock() {
+
+        LOCK.lock();
+        if (LOCK.getHoldCount() > 1) return;
+
+        try {
+            if (lockChannel == null || !lockChannel.isOpen()) {
+                Files.createDirectories(Path.of(LOCK_PATH).getParent());
+                lockChannel = FileChannel.open(Path.of(LOCK_PATH),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            fileLock = lockChannel.lock();
+
+        } catch (IOException e) {
+            fileLock = null;
+            warnOnce("Warning: cannot lock " + LOCK_PATH + " (" + e.getMessage()
+                    + "); other instances are not coordinated.");
+
+        } catch (RuntimeException | Error e) {
+            // The caller's finally never runs: do not leave the thread holding the lock
+            fileLock = null;
+            LOCK.unlock();
+            throw e;
+        }
+    }
+
+    public static void unlock() {
+
+        if (LOCK.getHoldCount() == 1 && fileLock != null) {
+            try {
+                fileLock.release();
+            } catch (IOException e) {
+                // The lock goes away with the channel; nothing else to do
+            }
+            fileLock = null;
+        }
+        LOCK.unlock();
+    }
+
+    /*
+     * Current change counter of a table (0 if counters are unavailable).
+     */
+    public static long version(Table table) {
+        MappedByteBuffer v = counters();
+        return v == null ? 0 : (long) COUNTER.getVolatile(v, table.ordinal() * Long.BYTES);
+    }
+
+    /*
+     * All counters, indexed by Table.ordinal().
+     */
+    public static long[] versions() {
+        long[] all = new long[Table.values().length];
+        for (Table t : Table.values()) all[t.ordinal()] = version(t);
+        return all;
+    }
+
+    /*
+     * Records that a table was rewritten.
+     */
+    static void bump(Table table) {
+
+        MappedByteBuffer v = counters();
+        if (v == null) return;
+
+        lock();
+        try {
+            int offset = table.ordinal() * Long.BYTES;
+            COUNTER.setVolatile(v, offset, (long) COUNTER.getVolatile(v, offset) + 1);
+        } finally {
+            unlock();
+        }
+    }
+
+    // ===================== HELPERS =====================
+
+    private static MappedByteBuffer counters() {
+
+        MappedByteBuffer v = mapped;
+        if (v != null || mapFailed) return v;
+
+        synchronized (DataLock.class) {
+            if (mapped != null || mapFailed) return mapped;
+
+            try {
+                Files.createDirectories(Path.of(VERSIONS_PATH).getParent());
+
+                // The mapping stays valid after the channel is closed
+                try (FileChannel ch = FileChannel.open(Path.of(VERSIONS_PATH),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    mapped = ch.map(FileChannel.MapMode.READ_WRITE, 0, VERSIONS_SIZE);
+                }
+
+            } catch (IOException e) {
+                mapFailed = true;
+                warnOnce("Warning: cannot map " + VERSIONS_PATH + " (" + e.getMessage()
+                        + "); external changes will not be detected.");
+            }
+            return mapped;
+        }
+    }
+
+    private static synchronized void warnOnce(String message) {
+        if (warned) return;
+        warned = true;
+        System.out.println(message);
+    }
+}
@@ -3,10 +3,12 @@ package app.util;
 import app.model.Event;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /*
  * EventFileHandler
@@ -18,9 +20,13 @@ import java.util.List;
  * - read events from a CSV file
  * - write events to a CSV file
  * - update and delete events
- * - generate unique event IDs
  * - detect time conflicts between events
- * - search events by date or date range
+ * - stream events lazily, optionally by date range, for paged search
+ *   results
+ *
+ * When the off-heap backend is enabled and available (see EventSegment),
+ * conflict checks and date searches read directly from the mapped event
+ * segment instead of parsing the CSV.
  *
  * This class separates persistence logic from core logic,
  * following good software design principles.
@@ -28,50 +34,110 @@ import java.util.List;
 public class EventFileHandler {
 
     // File path where event data is stored
-    private static final String FILE_PATH = "data/event.csv";
+    static final String FILE_PATH = "data/event.csv";
+
+    // CSV header row
+    private static final String HEADER = "eventId,title,description,startDateTime,endDateTime";
+
+    // Off-heap backend, or null to read the CSV
+    private static final EventSegment SEGMENT = EventSegment.load();
 
     /*
      * Reads all events from the CSV file and returns them as a list.
+     *
+     * The list is backed by a compact EventStore: Event objects are only
+     * created when an element is accessed, and changes made through the
+     * list (add, set, remove, removeIf) are applied to the store.
      */
     public static List<Event> readEvents() {
+        return readStore().asList();
+    }
+
+    /*
+     * Reads all events from the CSV file into a struct-of-arrays EventStore,
+     * including changes still waiting in the write-behind queue.
+     */
+    public static EventStore readStore() {
+        return WriteBehind.overlayEvents(EventFileHandler::readStoreFile);
+    }
 
-        // List to store all events read from the file
-        List<Event> events = new ArrayList<>();
+    /*
+     * Reads the events exactly as they are on disk.
+     */
+    static EventStore readStoreFile() {
 
         // Try-with-resources ensures the file is closed automatically
         try (BufferedReader br = new BufferedReader(new FileReader(FILE_PATH))) {
 
             // Read and ignore the header line
-            String line = br.readLine(); // skip header
+            br.readLine(); // skip header
 
-            // Read the file line by line
-            while ((line = br.readLine()) != null) {
+            return EventStore.read(br);
 
-                // Skip empty lines to avoid parsing errors
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
+        } catch (IOException e) {
+            // If the file does not exist, start with an empty event list
+            System.out.println("File not found, starting fresh.");
+            return new EventStore();
+        }
+    }
 
-                // Split the CSV line into individual fields
-                String[] parts = line.split(",");
+    /*
+     * Streams events from the CSV file one line at a time.
+     *
+     * Unlike readEvents(), nothing is collected up front: each row is parsed
+     * only when the consumer asks for it. The returned stream holds the file
+     * open, so callers must close it (try-with-resources or EventCursor).
+     */
+    public static Stream<Event> streamEvents() {
 
-                // Parse event data from CSV fields
-                int id = Integer.parseInt(parts[0]);
-                String title = parts[1];
-                String desc = parts[2];
-                LocalDateTime start = LocalDateTime.parse(parts[3]);
-                LocalDateTime end = LocalDateTime.parse(parts[4]);
+        // The file is behind the in-memory state until the next flush
+        if (WriteBehind.hasPendingEvents()) {
+            return readEvents().stream();
+        }
 
-                // Create a new Event object and add it to the list
-                events.add(new Event(id, title, desc, start, end));
-            }
+        Path path = Path.of(FILE_PATH);
 
+        // A missing file simply means there are no events yet
+        if (!Files.exists(path)) {
+            return Stream.empty();
+        }
+
+        try {
+            return Files.lines(path)
+                    .skip(1) // skip header
+                    .filter(line -> !line.trim().isEmpty())
+                    .map(EventFileHandler::parseEvent);
         } catch (IOException e) {
-            // If the file does not exist, start with an empty event list
-            System.out.println("File not found, starting fresh.");
+            System.out.println("Error reading events: " + e.getMessage());
+            return Stream.empty();
         }
+    }
 
-        return events;
+    /*
+     * Parses a single CSV row into an Event object.
+     */
+    static Event parseEvent(String line) {
+
+        String[] parts = line.split(",");
+
+        return new Event(
+                Integer.parseInt(parts[0]),
+                parts[1],
+                parts[2],
+                LocalDateTime.parse(parts[3]),
+                LocalDateTime.parse(parts[4])
+        );
+    }
+
+    /*
+     * Formats an Event as a CSV row.
+     */
+    static String toRow(Event e) {
+        return e.getEventId() + "," +
+               e.getTitle() + "," +
+               e.getDescription() + "," +
+               e.getStartDateTime() + "," +
+               e.getEndDateTime();
     }
 
     /*
@@ -79,44 +145,82 @@ public class EventFileHandler {
      */
     public static void writeEvents(List<Event> events) {
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(FILE_PATH))) {
-
-            // Write CSV header
-            pw.println("eventId,title,description,startDateTime,endDateTime");
-
-            // Write each event as a CSV row
-            for (Event e : events) {
-                pw.println(
-                    e.getEventId() + "," +
-                    e.getTitle() + "," +
-                    e.getDescription() + "," +
-                    e.getStartDateTime() + "," +
-                    e.getEndDateTime()
-                );
-            }
-
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            writeEvents(events, new File(FILE_PATH));
+            DataLock.bump(DataLock.Table.EVENTS);
         } catch (IOException e) {
             // Print stack trace for debugging purposes
             e.printStackTrace();
+        } finally {
+            DataLock.unlock();
         }
     }
 
     /*
-     * Generates the next available event ID.
+     * Writes all events to the given file (used for temp-file commits).
      */
-    public static int getNextEventId(List<Event> events) {
+    static void writeEvents(List<Event> events, File file) throws IOException {
 
-        int max = 0;
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
 
-        // Find the maximum existing event ID
-        for (Event e : events) {
-            if (e.getEventId() > max) {
-                max = e.getEventId();
+            // Write CSV header
+            pw.println(HEADER);
+
+            // Lists read through readEvents() are written straight from their store
+            EventStore store = EventStore.backing(events);
+            if (store != null) {
+                store.writeRows(pw);
+            } else {
+                // Write each event as a CSV row
+                for (Event e : events) {
+                    pw.println(toRow(e));
+                }
+            }
+
+            // PrintWriter swallows write errors; surface them to the caller
+            if (pw.checkError()) {
+                throw new IOException("Error writing " + file);
             }
         }
+    }
+
+    /*
+     * Appends events to the end of the CSV file in a single write.
+     *
+     * Used by bulk operations (e.g. .ics import) so that a batch of new
+     * events costs one append instead of a full read and rewrite.
+     */
+    public static void appendEvents(List<Event> events) {
+
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            File file = new File(FILE_PATH);
+
+            // Write the header first if the file is missing or empty
+            boolean needsHeader = !file.exists() || file.length() == 0;
+
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
 
-        // Return the next ID
-        return max + 1;
+                if (needsHeader) {
+                    pw.println(HEADER);
+                }
+
+                for (Event e : events) {
+                    pw.println(toRow(e));
+                }
+
+            } catch (IOException e) {
+                // Print stack trace for debugging purposes
+                e.printStackTrace();
+                return;
+            }
+            DataLock.bump(DataLock.Table.EVENTS);
+        } finally {
+            DataLock.unlock();
+        }
     }
 
     /*
@@ -124,25 +228,30 @@ public class EventFileHandler {
      */
     public static boolean updateEvent(Event updatedEvent) {
 
-        List<Event> events = readEvents();
-        boolean found = false;
-
-        // Search for the event with the matching ID
-        for (int i = 0; i < events.size(); i++) {
-            if (events.get(i).getEventId() == updatedEvent.getEventId()) {
-                // Replace the old event with the updated event
-                events.set(i, updatedEvent);
-                found = true;
-                break;
+        DataLock.lock();
+        try {
+            List<Event> events = readEvents();
+            boolean found = false;
+
+            // Search for the event with the matching ID
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i).getEventId() == updatedEvent.getEventId()) {
+                    // Replace the old event with the updated event
+                    events.set(i, updatedEvent);
+                    found = true;
+                    break;
+                }
             }
-        }
 
-        // Save changes only if the event was found
-        if (found) {
-            writeEvents(events);
-        }
+            // Save changes only if the event was found
+            if (found) {
+                writeEvents(events);
+            }
 
-        return found;
+            return found;
+        } finally {
+            DataLock.unlock();
+        }
     }
 
     /*
@@ -150,17 +259,22 @@ public class EventFileHandler {
      */
     public static boolean deleteEvent(int eventId) {
 
-        List<Event> events = readEvents();
+        DataLock.lock();
+        try {
+            List<Event> events = readEvents();
 
-        // Remove the event with the matching ID
-        boolean removed = events.removeIf(e -> e.getEventId() == eventId);
+            // Remove the event with the matching ID
+            boolean removed = events.removeIf(e -> e.getEventId() == eventId);
 
-        // Save changes if an event was removed
-        if (removed) {
-            writeEvents(events);
-        }
+            // Save changes if an event was removed
+            if (removed) {
+                writeEvents(events);
+            }
 
-        return removed;
+            return removed;
+        } finally {
+            DataLock.unlock();
+        }
     }
 
     /*
@@ -168,6 +282,14 @@ public class EventFileHandler {
      */
     public static boolean hasConflict(Event newEvent) {
 
+        if (SEGMENT != null && !WriteBehind.hasPendingEvents()) {
+            try {
+                return SEGMENT.hasConflict(newEvent);
+            } catch (UncheckedIOException e) {
+                // Segment unreadable: scan the CSV below instead
+            }
+        }
+
         List<Event> events = readEvents();
 
         // Normalize the new event time window
@@ -213,38 +335,24 @@ public class EventFileHandler {
     }
 
     /*
-     * Searches for events occurring on a specific date.
+     * Lazily streams the events within a date range (inclusive).
+     * The caller is responsible for closing the stream.
      */
-    public static List<Event> searchByDate(LocalDate date) {
-
-        List<Event> results = new ArrayList<>();
+    public static Stream<Event> streamByDateRange(LocalDate start, LocalDate end) {
 
-        // Check each event's start date
-        for (Event e : readEvents()) {
-            if (e.getStartDateTime().toLocalDate().equals(date)) {
-                results.add(e);
+        if (SEGMENT != null && !WriteBehind.hasPendingEvents()) {
+            try {
+                return SEGMENT.streamByStart(start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+            } catch (UncheckedIOException e) {
+                // Segment unreadable: filter the CSV below instead
             }
         }
 
-        return results;
-    }
-
-    /*
-     * Searches for events within a date range (inclusive).
-     */
-    public static List<Event> searchByDateRange(LocalDate start, LocalDate end) {
-
-        List<Event> results = new ArrayList<>();
-
-        for (Event e : readEvents()) {
+        return streamEvents().filter(e -> {
             LocalDate eventDate = e.getStartDateTime().toLocalDate();
 
             // Check if the event date is within the given range
-            if (!eventDate.isBefore(start) && !eventDate.isAfter(end)) {
-                results.add(e);
-            }
-        }
-
-        return results;
+            return !eventDate.isBefore(start) && !eventDate.isAfter(end);
+        });
     }
 }
@@ -0,0 +1,58 @@
+package app.util;
+
+import app.model.Event;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/*
+ * EventSegment
+ * ------------
+ * The queries the optional off-heap event backend answers in place of
+ * the CSV (see OffHeapEventStore).
+ *
+ * The backend uses the Foreign Memory API, so it lives in a separate
+ * source root (src-offheap) that needs JDK 22, or JDK 21 with
+ * --enable-preview, to compile and run. The rest of the app only needs
+ * JDK 21 and reaches the backend through this interface.
+ *
+ * The queries throw UncheckedIOException when the segment cannot be
+ * read; callers then answer from event.csv, never from a guess.
+ *
+ * The backend is requested with -Dscheduler.storage=offheap. load()
+ * finds it by name; if it was not compiled in, or cannot run on this
+ * JVM, a warning is printed and the CSV paths are used instead.
+ */
+public interface EventSegment {
+
+    /*
+     * Lazily streams the events whose start date-time lies in [from, to).
+     * The caller must close the stream. Throws UncheckedIOException if
+     * the segment cannot be read.
+     */
+    Stream<Event> streamByStart(LocalDateTime from, LocalDateTime to);
+
+    /*
+     * Checks whether an event overlaps any stored event other than itself.
+     * Throws UncheckedIOException if the segment cannot be read.
+     */
+    boolean hasConflict(Event newEvent);
+
+    /*
+     * The off-heap backend if it was requested and is available,
+     * otherwise null.
+     */
+    static EventSegment load() {
+
+        if (!"offheap".equalsIgnoreCase(System.getProperty("scheduler.storage"))) return null;
+
+        try {
+            return (EventSegment) Class.forName("app.util.OffHeapEventStore").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.out.println("Off-heap storage is not available (" + e
+                    + "); it needs src-offheap compiled with JDK 22+, or JDK 21 with --enable-preview. "
+                    + "Using event.csv.");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package app.util;
+
+import app.model.Event;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/*
+ * EventStore
+ * ----------
+ * A compact, struct-of-arrays container for events.
+ *
+ * Instead of one Event object (plus two LocalDateTime, two LocalDate and
+ * two LocalTime objects) per event, the store keeps parallel primitive
+ * arrays:
+ * - int ids
+ * - long start / end (local date-time as epoch seconds, UTC-encoded)
+ * - int title / description codes into a shared StringPool
+ *
+ * Event objects are created only when the existing API asks for them,
+ * through eventAt() or the List view returned by asList(). Code that only
+ * needs ids or times can read the arrays directly without allocating.
+ *
+ * Times are kept at one-second precision, which covers every value the
+ * application writes (yyyy-MM-ddTHH:mm).
+ */
+public class EventStore {
+
+    // Parallel arrays, valid in [0, size)
+    private int[] ids;
+    private long[] starts;
+    private long[] ends;
+    private int[] titles;
+    private int[] descriptions;
+    private int size;
+
+    // Deduplicated titles and descriptions
+    private final StringPool strings = new StringPool();
+
+    /*
+     * Creates an empty store.
+     */
+    public EventStore() {
+        this(16);
+    }
+
+    /*
+     * Creates an empty store with room for the given number of events.
+     */
+    public EventStore(int capacity) {
+        capacity = Math.max(16, capacity);
+        ids = new int[capacity];
+        starts = new long[capacity];
+        ends = new long[capacity];
+        titles = new int[capacity];
+        descriptions = new int[capacity];
+    }
+
+    // ===================== LOADING / SAVING =====================
+
+    /*
+     * Reads event rows (header already consumed) into a new store
+     * without creating Event objects.
+     */
+    public static EventStore read(BufferedReader br) throws IOException {
+
+        EventStore store = new EventStore();
+        String line;
+
+        while ((line = br.readLine()) != null) {
+
+            // Skip empty lines to avoid parsing errors
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            String[] parts = line.split(",");
+
+            store.add(
+                    Integer.parseInt(parts[0]),
+                    parts[1],
+                    parts[2],
+                    toSeconds(LocalDateTime.parse(parts[3])),
+                    toSeconds(LocalDateTime.parse(parts[4]))
+            );
+        }
+
+        return store;
+    }
+
+    /*
+     * Writes every event as a CSV row (no header) straight from the arrays.
+     */
+    public void writeRows(PrintWriter pw) {
+        for (int i = 0; i < size; i++) {
+            pw.println(
+                ids[i] + "," +
+                strings.get(titles[i]) + "," +
+                strings.get(descriptions[i]) + "," +
+                toDateTime(starts[i]) + "," +
+                toDateTime(ends[i])
+            );
+        }
+    }
+
+    // ===================== ACCESS =====================
+
+    /*
+     * Returns the number of events in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int idAt(int i) {
+        checkIndex(i);
+        return ids[i];
+    }
+
+    public long startSecondsAt(int i) {
+        checkIndex(i);
+        return starts[i];
+    }
+
+    public long endSecondsAt(int i) {
+        checkIndex(i);
+        return ends[i];
+    }
+
+    public String titleAt(int i) {
+        checkIndex(i);
+        return strings.get(titles[i]);
+    }
+
+    public String descriptionAt(int i) {
+        checkIndex(i);
+        return strings.get(descriptions[i]);
+    }
+
+    /*
+     * Materializes the event at position i as an Event object.
+     */
+    public Event eventAt(int i) {
+        checkIndex(i);
+        return new Event(ids[i],
+                strings.get(titles[i]),
+                strings.get(descriptions[i]),
+                toDateTime(starts[i]),
+                toDateTime(ends[i]));
+    }
+
+    /*
+     * Returns the position of the event with the given ID, or -1.
+     */
+    public int indexOfId(int eventId) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == eventId) return i;
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the highest event ID in the store (0 if empty).
+     */
+    public int maxId() {
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] > max) max = ids[i];
+        }
+        return max;
+    }
+
+    // ===================== MUTATION =====================
+
+    /*
+     * Appends an event.
+     */
+    public void add(Event e) {
+        add(e.getEventId(), e.getTitle(), e.getDescription(),
+            toSeconds(e.getStartDateTime()), toSeconds(e.getEndDateTime()));
+    }
+
+    /*
+     * Appends an event from its raw fields.
+     */
+    public void add(int id, String title, String description, long start, long end) {
+        ensureCapacity(size + 1);
+        ids[size] = id;
+        titles[size] = strings.intern(title);
+        descriptions[size] = strings.intern(description);
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /*
+     * Inserts an event at position i, shifting later events right.
+     */
+    public void insert(int i, Event e) {
+
+        if (i < 0 || i > size) throw new IndexOutOfBoundsException(i);
+
+        ensureCapacity(size + 1);
+        int tail = size - i;
+        System.arraycopy(ids, i, ids, i + 1, tail);
+        System.arraycopy(starts, i, starts, i + 1, tail);
+        System.arraycopy(ends, i, ends, i + 1, tail);
+        System.arraycopy(titles, i, titles, i + 1, tail);
+        System.arraycopy(descriptions, i, descriptions, i + 1, tail);
+        size++;
+        set(i, e);
+    }
+
+    /*
+     * Replaces the event at position i.
+     */
+    public void set(int i, Event e) {
+        checkIndex(i);
+        ids[i] = e.getEventId();
+        titles[i] = strings.intern(e.getTitle());
+        descriptions[i] = strings.intern(e.getDescription());
+        starts[i] = toSeconds(e.getStartDateTime());
+        ends[i] = toSeconds(e.getEndDateTime());
+    }
+
+    /*
+     * Removes the event at position i, shifting later events left.
+     */
+    public void remove(int i) {
+        checkIndex(i);
+        int tail = size - i - 1;
+        System.arraycopy(ids, i + 1, ids, i, tail);
+        System.arraycopy(starts, i + 1, starts, i, tail);
+        System.arraycopy(ends, i + 1, ends, i, tail);
+        System.arraycopy(titles, i + 1, titles, i, tail);
+        System.arraycopy(descriptions, i + 1, descriptions, i, tail);
+        size--;
+    }
+
+    /*
+     * Removes every event matching the filter in a single compaction pass.
+     * The filter receives lazily created Event objects.
+     */
+    public boolean removeIf(Predicate<? super Event> filter) {
+
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(eventAt(i))) continue;
+
+            if (kept != i) {
+                ids[kept] = ids[i];
+                starts[kept] = starts[i];
+                ends[kept] = ends[i];
+                titles[kept] = titles[i];
+                descriptions[kept] = descriptions[i];
+            }
+            kept++;
+        }
+
+        boolean removed = kept != size;
+        size = kept;
+        return removed;
+    }
+
+    // ===================== LIST VIEW =====================
+
+    /*
+     * Returns a mutable List<Event> view backed by this store.
+     *
+     * Events are created on each get(); changes made through the view
+     * (add, set, remove, removeIf) are written back into the arrays.
+     */
+    public List<Event> asList() {
+        return new ListView(this);
+    }
+
+    /*
+     * If the list is a view created by asList(), returns its store.
+     */
+    public static EventStore backing(Collection<Event> list) {
+        return list instanceof ListView view ? view.store : null;
+    }
+
+    /*
+     * ListView
+     * --------
+     * Adapts the store to the java.util.List API used throughout the app.
+     */
+    private static class ListView extends AbstractList<Event> implements RandomAccess {
+
+        private final EventStore store;
+
+        ListView(EventStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public Event get(int index) {
+            return store.eventAt(index);
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public Event set(int index, Event element) {
+            Event old = store.eventAt(index);
+            store.set(index, element);
+            return old;
+        }
+
+        @Override
+        public void add(int index, Event element) {
+            store.insert(index, element);
+            modCount++;
+        }
+
+        @Override
+        public boolean add(Event element) {
+            store.add(element);
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public Event remove(int index) {
+            Event old = store.eventAt(index);
+            store.remove(index);
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Event> filter) {
+            boolean removed = store.removeIf(filter);
+            if (removed) modCount++;
+            return removed;
+        }
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Converts a local date-time into the stored seconds value.
+     */
+    public static long toSeconds(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /*
+     * Converts a stored seconds value back into a local date-time.
+     */
+    public static LocalDateTime toDateTime(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+    }
+
+    private void ensureCapacity(int needed) {
+
+        if (needed <= ids.length) return;
+
+        int newCap = Math.max(needed, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCap);
+        starts = Arrays.copyOf(starts, newCap);
+        ends = Arrays.copyOf(ends, newCap);
+        titles = Arrays.copyOf(titles, newCap);
+        descriptions = Arrays.copyOf(descriptions, newCap);
+    }
+}
@@ -0,0 +1,334 @@
+package app.util;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+ * IcsExporter
+ * -----------
+ * This utility class exports the calendar to an RFC 5545 iCalendar (.ics) file.
+ *
+ * Mapping used:
+ * - Event                 -> VEVENT (SUMMARY, DESCRIPTION, DTSTART, DTEND)
+ * - RecurringEvent        -> RRULE inside the VEVENT
+ * - Reminder              -> VALARM inside the VEVENT
+ * - AdditionalEventFields -> LOCATION / CATEGORIES
+ *
+ * Events are streamed from event.csv one row at a time and written through
+ * a buffered writer on top of a FileChannel, so the event table is never
+ * loaded into memory as a whole. Only the (much smaller) side tables are
+ * kept in maps keyed by eventId for lookup while writing.
+ *
+ * Date-times are written as floating local times (no TZID), matching how
+ * the application stores them.
+ */
+public class IcsExporter {
+
+    // Format used for DTSTAMP (must be UTC)
+    private static final DateTimeFormatter UTC_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    // Size of the write buffer in characters
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // RFC 5545 recommends folding lines longer than 75 octets
+    private static final int MAX_LINE_OCTETS = 75;
+
+    /*
+     * Exports all events to the given .ics file.
+     * Returns the number of VEVENTs written, or -1 if the export failed.
+     */
+    public static int export(String icsPath) {
+
+        // Side tables keyed by eventId for constant-time lookup
+        Map<Integer, RecurringEvent> recurringById = new HashMap<>();
+        for (RecurringEvent r : RecurringFileHandler.readRecurringEvents()) {
+            recurringById.put(r.getEventId(), r);
+        }
+
+        Map<Integer, Reminder> reminderById = new HashMap<>();
+        for (Reminder r : ReminderFileHandler.readReminders()) {
+            reminderById.put(r.getEventId(), r);
+        }
+
+        Map<Integer, AdditionalEventFields> additionalById =
+                AdditionalFileHandler.readAdditionalMap();
+
+        String dtStamp = LocalDateTime.now(ZoneOffset.UTC).format(UTC_FORMAT);
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(Path.of(icsPath),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             Writer w = new BufferedWriter(
+                     Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+             Stream<Event> events = EventFileHandler.streamEvents()) {
+
+            writeLine(w, "BEGIN:VCALENDAR");
+            writeLine(w, "VERSION:2.0");
+            writeLine(w, "PRODID:-//FOP Scheduler App//EN");
+            writeLine(w, "CALSCALE:GREGORIAN");
+
+            Iterator<Event> it = events.iterator();
+            while (it.hasNext()) {
+                Event e = it.next();
+                writeEvent(w, e,
+                        recurringById.get(e.getEventId()),
+                        reminderById.get(e.getEventId()),
+                        additionalById.get(e.getEventId()),
+                        dtStamp);
+                count++;
+            }
+
+            writeLine(w, "END:VCALENDAR");
+
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /*
+     * Writes a single VEVENT including its optional RRULE and VALARM.
+     */
+    private static void writeEvent(Writer w, Event e,
+                                   RecurringEvent rule,
+                                   Reminder reminder,
+                                   AdditionalEventFields additional,
+                                   String dtStamp) throws IOException {
+
+        writeLine(w, "BEGIN:VEVENT");
+        writeLine(w, "UID:" + e.getEventId() + "@fop-scheduler");
+        writeLine(w, "DTSTAMP:" + dtStamp);
+        writeLine(w, "DTSTART:" + formatLocal(e.getStartDateTime()));
+        writeLine(w, "DTEND:" + formatLocal(e.getEndDateTime()));
+        writeLine(w, "SUMMARY:" + escape(e.getTitle()));
+
+        if (e.getDescription() != null && !e.getDescription().isEmpty()) {
+            writeLine(w, "DESCRIPTION:" + escape(e.getDescription()));
+        }
+
+        if (additional != null) {
+            if (additional.getLocation() != null && !additional.getLocation().isBlank()) {
+                writeLine(w, "LOCATION:" + escape(additional.getLocation()));
+            }
+            if (additional.getCategory() != null && !additional.getCategory().isBlank()) {
+                writeLine(w, "CATEGORIES:" + escape(additional.getCategory()));
+            }
+        }
+
+        if (rule != null) {
+            String rrule = toRRule(rule, e.getStartDateTime());
+            if (rrule != null) {
+                writeLine(w, "RRULE:" + rrule);
+            }
+        }
+
+        if (reminder != null) {
+            writeLine(w, "BEGIN:VALARM");
+            writeLine(w, "ACTION:DISPLAY");
+            writeLine(w, "DESCRIPTION:" + escape(e.getTitle()));
+            writeLine(w, "TRIGGER:-PT" + reminder.getMinutesBefore() + "M");
+            writeLine(w, "END:VALARM");
+        }
+
+        writeLine(w, "END:VEVENT");
+    }
+
+    /*
+     * Converts the application's interval format ("1d", "2w", "1m", "1y",
+     * plain digits for days, legacy "1" for weekly) into an RRULE value.
+     * Returns null for intervals the application itself cannot interpret.
+     *
+     * recurrentTimes counts the repeats after the base event, while COUNT
+     * includes DTSTART, so COUNT is recurrentTimes + 1. A rule with both
+     * a count and an end date stops at whichever is reached first; RFC
+     * 5545 forbids COUNT and UNTIL in the same RRULE, so the one that
+     * ends the series is written.
+     */
+    static String toRRule(RecurringEvent rule, LocalDateTime start) {
+
+        String interval = rule.getInterval();
+        if (interval == null) return null;
+
+        String trimmed = interval.trim().toLowerCase();
+        if (trimmed.isEmpty()) return null;
+
+        String freq;
+        int value;
+
+        try {
+            if (trimmed.equals("1")) {
+                // Legacy format: "1" means weekly
+                freq = "WEEKLY";
+                value = 1;
+            } else if (Character.isDigit(trimmed.charAt(trimmed.length() - 1))) {
+                freq = "DAILY";
+                value = Integer.parseInt(trimmed);
+            } else {
+                value = Integer.parseInt(trimmed.substring(0, trimmed.length() - 1));
+                freq = switch (trimmed.charAt(trimmed.length() - 1)) {
+                    case 'd' -> "DAILY";
+                    case 'w' -> "WEEKLY";
+                    case 'm' -> "MONTHLY";
+                    case 'y' -> "YEARLY";
+                    default -> null;
+                };
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (freq == null || value <= 0) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder("FREQ=").append(freq);
+        if (value > 1) {
+            sb.append(";INTERVAL=").append(value);
+        }
+
+        int times = rule.getRecurrentTimes();
+        LocalDate until = rule.getRecurrentEndDate();
+        if (times > 0 && until != null && !lastRepeat(start, freq, value, times).toLocalDate().isAfter(until)) {
+            // The count runs out first
+            until = null;
+        }
+
+        if (times > 0 && until == null) {
+            sb.append(";COUNT=").append(times + 1L);
+        } else if (until != null) {
+            // UNTIL must use the same value type as DTSTART (floating date-time)
+            sb.append(";UNTIL=")
+              .append(formatLocal(rule.getRecurrentEndDate().atTime(23, 59, 59)));
+        }
+
+        return sb.toString();
+    }
+
+    /*
+     * Start of repeat number times, stepped the way RecurrenceExpander
+     * does (from the base start, not from the previous repeat).
+     */
+    private static LocalDateTime lastRepeat(LocalDateTime start, String freq, int value, int times) {
+        long steps = (long) value * times;
+        return switch (freq) {
+            case "DAILY" -> start.plusDays(steps);
+            case "WEEKLY" -> start.plusWeeks(steps);
+            case "MONTHLY" -> start.plusMonths(steps);
+            default -> start.plusYears(steps);
+        };
+    }
+
+    /*
+     * Formats a floating local date-time as yyyyMMdd'T'HHmmss.
+     *
+     * Done by hand because DateTimeFormatter dominates the export time
+     * when called twice for every event.
+     */
+    static String formatLocal(LocalDateTime t) {
+
+        char[] buf = new char[15];
+        int year = t.getYear();
+
+        put(buf, 0, year / 100, 2);
+        put(buf, 2, year % 100, 2);
+        put(buf, 4, t.getMonthValue(), 2);
+        put(buf, 6, t.getDayOfMonth(), 2);
+        buf[8] = 'T';
+        put(buf, 9, t.getHour(), 2);
+        put(buf, 11, t.getMinute(), 2);
+        put(buf, 13, t.getSecond(), 2);
+
+        return new String(buf);
+    }
+
+    /*
+     * Writes a zero-padded number of the given width into buf.
+     */
+    private static void put(char[] buf, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /*
+     * Escapes TEXT values as required by RFC 5545 section 3.3.11.
+     */
+    static String escape(String s) {
+
+        if (s == null) return "";
+
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case ';' -> sb.append("\\;");
+                case ',' -> sb.append("\\,");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> { }
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Writes a content line terminated by CRLF, folding it at 75 octets.
+     * Continuation lines start with a single space.
+     */
+    private static void writeLine(Writer w, String line) throws IOException {
+
+        // Fast path: short lines (the vast majority) never need folding
+        if (line.length() * 3 <= MAX_LINE_OCTETS) {
+            w.write(line);
+            w.write("\r\n");
+            return;
+        }
+
+        int octets = 0;
+
+        for (int i = 0; i < line.length(); ) {
+            int cp = line.codePointAt(i);
+            int chars = Character.charCount(cp);
+
+            // Count UTF-8 octets so multi-byte characters are never split
+            int size = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+
+            if (octets + size > MAX_LINE_OCTETS) {
+                w.write("\r\n ");
+                octets = 1;
+            }
+
+            w.write(line, i, chars);
+            octets += size;
+            i += chars;
+        }
+
+        w.write("\r\n");
+    }
+}
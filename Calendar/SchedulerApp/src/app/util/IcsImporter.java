@@ -0,0 +1,597 @@
+package app.util;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * IcsImporter
+ * -----------
+ * This utility class imports events from an RFC 5545 iCalendar (.ics) file
+ * into the four CSV tables used by the application.
+ *
+ * Mapping used (the reverse of IcsExporter):
+ * - VEVENT               -> Event
+ * - RRULE                -> RecurringEvent (FREQ, INTERVAL, COUNT, UNTIL)
+ * - VALARM (TRIGGER)     -> Reminder
+ * - LOCATION/CATEGORIES  -> AdditionalEventFields
+ *
+ * The file is parsed as a stream and events are processed in batches:
+ * - each batch is sorted by start time and swept once against an
+ *   IntervalIndex of existing (and previously imported) events
+ * - events that would conflict are skipped, like Main.addEvent does
+ * - accepted events are committed in one UnitOfWork per batch, so a
+ *   batch is either saved whole or not at all; a batch that cannot be
+ *   saved is reported with its cause and counted as not saved
+ *
+ * Within a batch, conflicting imported events are resolved in start-time
+ * order: the earlier event wins.
+ */
+public class IcsImporter {
+
+    // Number of parsed events processed (and written) together
+    private static final int BATCH_SIZE = 5000;
+
+    /*
+     * ImportSummary
+     * -------------
+     * Counts describing the outcome of an import.
+     */
+    public static class ImportSummary {
+
+        // Events written to the calendar
+        public final int imported;
+
+        // Events skipped because they overlap an existing or imported event
+        public final int conflicts;
+
+        // Events skipped because they were incomplete or malformed
+        public final int invalid;
+
+        // Events that fit but could not be saved (no IDs or the commit failed)
+        public final int notSaved;
+
+        public ImportSummary(int imported, int conflicts, int invalid, int notSaved) {
+            this.imported = imported;
+            this.conflicts = conflicts;
+            this.invalid = invalid;
+            this.notSaved = notSaved;
+        }
+    }
+
+    /*
+     * Running counts of the batches committed so far.
+     */
+    private static class Totals {
+        int imported;
+        int conflicts;
+        int notSaved;
+    }
+
+    /*
+     * A parsed VEVENT waiting for conflict checking and ID assignment.
+     */
+    private static class Candidate {
+        String title = "";
+        String description = "";
+        String location;
+        String category;
+        LocalDateTime start;
+        LocalDateTime end;
+        Duration duration;
+        boolean allDay;
+        String interval;
+        int times;
+        LocalDate until;
+        Integer reminderMinutes;
+        long startKey;
+        long endKey;
+    }
+
+    /*
+     * Imports all events from the given .ics file.
+     * Returns null if the file could not be read.
+     */
+    public static ImportSummary importFile(String icsPath) {
+
+        // Build the conflict index
+        IntervalIndex index = new IntervalIndex();
+
+        try (Stream<Event> events = EventFileHandler.streamEvents()) {
+            Iterator<Event> it = events.iterator();
+            while (it.hasNext()) {
+                Event e = it.next();
+                index.addUnsorted(IntervalIndex.key(e.getStartDateTime()),
+                                  IntervalIndex.key(e.getEndDateTime()));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Import failed: could not read existing events.");
+            return null;
+        }
+        index.sort();
+
+        Totals totals = new Totals();
+        int invalid = 0;
+
+        List<Candidate> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (BufferedReader br = Files.newBufferedReader(Path.of(icsPath), StandardCharsets.UTF_8)) {
+
+            UnfoldingReader reader = new UnfoldingReader(br);
+            Candidate current = null;
+            boolean inAlarm = false;
+            String line;
+
+            while ((line = reader.next()) != null) {
+
+                if (line.equalsIgnoreCase("BEGIN:VEVENT")) {
+                    current = new Candidate();
+                    inAlarm = false;
+                    continue;
+                }
+
+                if (line.equalsIgnoreCase("END:VEVENT")) {
+                    if (current != null) {
+                        if (finish(current)) {
+                            batch.add(current);
+                        } else {
+                            invalid++;
+                        }
+                    }
+                    current = null;
+
+                    if (batch.size() >= BATCH_SIZE) {
+                        commitBatch(batch, index, totals);
+                        batch.clear();
+                    }
+                    continue;
+                }
+
+                if (current == null) continue;
+
+                if (line.equalsIgnoreCase("BEGIN:VALARM")) {
+                    inAlarm = true;
+                    continue;
+                }
+                if (line.equalsIgnoreCase("END:VALARM")) {
+                    inAlarm = false;
+                    continue;
+                }
+
+                applyProperty(current, line, inAlarm);
+            }
+
+        } catch (IOException e) {
+            System.out.println("Import failed: " + e.getMessage());
+            return null;
+        }
+
+        // Flush the last partial batch
+        commitBatch(batch, index, totals);
+
+        return new ImportSummary(totals.imported, totals.conflicts, invalid, totals.notSaved);
+    }
+
+    /*
+     * Sorts a batch by start time, sweeps it against the index, assigns IDs
+     * to the accepted events and commits them in one UnitOfWork. Adds the
+     * outcome to totals.
+     */
+    private static void commitBatch(List<Candidate> batch, IntervalIndex index, Totals totals) {
+
+        if (batch.isEmpty()) return;
+
+        // IDs continue from the sequence; the block is reserved before any row is written
+        int firstId = IdSequence.current() + 1;
+        int nextId = firstId;
+
+        batch.sort(Comparator.comparingLong((Candidate c) -> c.startKey)
+                             .thenComparingLong(c -> c.endKey));
+
+        List<Event> events = new ArrayList<>();
+        List<RecurringEvent> recurring = new ArrayList<>();
+        List<AdditionalEventFields> additional = new ArrayList<>();
+        List<Reminder> reminders = new ArrayList<>();
+
+        long[] acceptedStarts = new long[batch.size()];
+        long[] acceptedEnds = new long[batch.size()];
+        int acceptedCount = 0;
+
+        // Latest end among events accepted earlier in this sweep
+        long maxAcceptedEnd = Long.MIN_VALUE;
+
+        for (Candidate c : batch) {
+
+            // Earlier accepted events start at or before c, so only their end matters
+            if (c.startKey < maxAcceptedEnd) continue;
+
+            if (index.overlaps(c.startKey, c.endKey)) continue;
+
+            int id = nextId++;
+            events.add(new Event(id, c.title, c.description, c.start, c.end));
+
+            if (c.interval != null) {
+                recurring.add(new RecurringEvent(id, c.interval, c.times, c.until));
+            }
+            if (c.location != null || c.category != null) {
+                additional.add(new AdditionalEventFields(id, c.location, c.category));
+            }
+            if (c.reminderMinutes != null) {
+                reminders.add(new Reminder(id, c.reminderMinutes));
+            }
+
+            acceptedStarts[acceptedCount] = c.startKey;
+            acceptedEnds[acceptedCount] = c.endKey;
+            acceptedCount++;
+            maxAcceptedEnd = Math.max(maxAcceptedEnd, c.endKey);
+        }
+
+        totals.conflicts += batch.size() - acceptedCount;
+        if (acceptedCount == 0) return;
+
+        // Another instance took IDs since current() was read, or the sequence cannot be written
+        if (IdSequence.reserve(acceptedCount) != firstId) {
+            System.out.println("Import: could not reserve event IDs; " + acceptedCount + " event(s) not saved.");
+            totals.notSaved += acceptedCount;
+            return;
+        }
+
+        // One commit for the whole batch
+        UnitOfWork uow = new UnitOfWork();
+        for (Event e : events) uow.putEvent(e);
+        for (RecurringEvent r : recurring) uow.putRecurring(r);
+        for (AdditionalEventFields a : additional) uow.putAdditional(a);
+        for (Reminder r : reminders) uow.putReminder(r);
+
+        if (!uow.commit()) {
+            IdSequence.release(firstId, nextId - 1);
+            System.out.println("Import: saving failed; " + acceptedCount + " event(s) not saved.");
+            totals.notSaved += acceptedCount;
+            return;
+        }
+
+        // Starts are already in order; ends need their own sort for the index
+        Arrays.sort(acceptedEnds, 0, acceptedCount);
+        index.mergeSorted(acceptedStarts, acceptedEnds, acceptedCount);
+        totals.imported += acceptedCount;
+    }
+
+    /*
+     * Completes a parsed candidate (end time, keys) and validates it.
+     * Returns false if the event cannot be imported.
+     */
+    private static boolean finish(Candidate c) {
+
+        if (c.start == null) return false;
+
+        if (c.end == null) {
+            if (c.duration != null) {
+                c.end = c.start.plus(c.duration);
+            } else if (c.allDay) {
+                // An all-day event without DTEND lasts one day
+                c.end = c.start.plusDays(1);
+            } else {
+                return false;
+            }
+        }
+
+        // The application does not allow empty or reversed events
+        if (!c.start.isBefore(c.end)) return false;
+
+        c.startKey = IntervalIndex.key(c.start);
+        c.endKey = IntervalIndex.key(c.end);
+        return true;
+    }
+
+    /*
+     * Applies a single unfolded content line to the current candidate.
+     */
+    private static void applyProperty(Candidate c, String line, boolean inAlarm) {
+
+        int colon = valueSeparator(line);
+        if (colon < 0) return;
+
+        String head = line.substring(0, colon);
+        String value = line.substring(colon + 1);
+
+        int semi = head.indexOf(';');
+        String name = (semi < 0 ? head : head.substring(0, semi)).toUpperCase();
+        String params = semi < 0 ? "" : head.substring(semi + 1).toUpperCase();
+
+        try {
+            if (inAlarm) {
+                if (name.equals("TRIGGER")) {
+                    c.reminderMinutes = parseTrigger(value, params, c.start);
+                }
+                return;
+            }
+
+            switch (name) {
+                case "SUMMARY" -> c.title = toCsvText(unescape(value));
+                case "DESCRIPTION" -> c.description = toCsvText(unescape(value));
+                case "LOCATION" -> c.location = emptyToNull(toCsvText(unescape(value)));
+                case "CATEGORIES" -> c.category = emptyToNull(toCsvText(firstCategory(value)));
+                case "DTSTART" -> {
+                    c.allDay = params.contains("VALUE=DATE") && !params.contains("VALUE=DATE-TIME");
+                    c.start = parseDateTime(value, tzid(head));
+                }
+                case "DTEND" -> c.end = parseDateTime(value, tzid(head));
+                case "DURATION" -> c.duration = parseDuration(value);
+                case "RRULE" -> applyRRule(c, value);
+                default -> { }
+            }
+        } catch (DateTimeException | NumberFormatException e) {
+            // Leave the field unset; finish() rejects events missing required fields
+        }
+    }
+
+    /*
+     * Maps an RRULE onto the application's recurrence format.
+     * Unsupported frequencies (e.g. HOURLY) leave the event non-recurring.
+     */
+    private static void applyRRule(Candidate c, String value) {
+
+        String unit = null;
+        int interval = 1;
+        int count = 0;
+        LocalDate until = null;
+
+        for (String part : value.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) continue;
+
+            String key = part.substring(0, eq).trim().toUpperCase();
+            String v = part.substring(eq + 1).trim();
+
+            switch (key) {
+                case "FREQ" -> unit = switch (v.toUpperCase()) {
+                    case "DAILY" -> "d";
+                    case "WEEKLY" -> "w";
+                    case "MONTHLY" -> "m";
+                    case "YEARLY" -> "y";
+                    default -> null;
+                };
+                case "INTERVAL" -> interval = Integer.parseInt(v);
+                case "COUNT" -> count = Integer.parseInt(v);
+                case "UNTIL" -> until = parseDateTime(v, null).toLocalDate();
+                default -> { }
+            }
+        }
+
+        // COUNT includes DTSTART; recurrentTimes only counts the repeats
+        if (unit == null || interval <= 0 || count == 1) return;
+
+        c.interval = interval + unit;
+        c.times = Math.max(0, count - 1);
+        c.until = until;
+    }
+
+    /*
+     * Converts a VALARM trigger into "minutes before start".
+     * Only triggers at or before the event start are supported.
+     */
+    private static Integer parseTrigger(String value, String params, LocalDateTime start) {
+
+        if (params.contains("VALUE=DATE-TIME")) {
+            if (start == null) return null;
+            long minutes = Duration.between(parseDateTime(value, null), start).toMinutes();
+            return minutes >= 0 ? (int) minutes : null;
+        }
+
+        Duration d = parseDuration(value);
+        if (d == null || (!d.isNegative() && !d.isZero())) {
+            return null;
+        }
+
+        return (int) d.negated().toMinutes();
+    }
+
+    /*
+     * Parses an RFC 5545 duration such as "-PT15M", "P1D" or "P2W".
+     */
+    private static Duration parseDuration(String value) {
+
+        String v = value.trim().toUpperCase();
+        boolean negative = v.startsWith("-");
+        if (v.startsWith("-") || v.startsWith("+")) {
+            v = v.substring(1);
+        }
+
+        Duration d;
+        if (v.endsWith("W") && v.startsWith("P")) {
+            // java.time.Duration does not understand weeks
+            d = Duration.ofDays(7L * Long.parseLong(v.substring(1, v.length() - 1)));
+        } else {
+            try {
+                d = Duration.parse(v);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        return negative ? d.negated() : d;
+    }
+
+    /*
+     * Parses DATE or DATE-TIME values. UTC ("Z") and TZID values are
+     * converted to the local time zone; floating values are kept as-is.
+     */
+    private static LocalDateTime parseDateTime(String value, String tzid) {
+
+        String v = value.trim();
+
+        int year = Integer.parseInt(v.substring(0, 4));
+        int month = Integer.parseInt(v.substring(4, 6));
+        int day = Integer.parseInt(v.substring(6, 8));
+
+        if (v.length() < 15) {
+            return LocalDate.of(year, month, day).atStartOfDay();
+        }
+
+        LocalDateTime t = LocalDateTime.of(year, month, day,
+                Integer.parseInt(v.substring(9, 11)),
+                Integer.parseInt(v.substring(11, 13)),
+                Integer.parseInt(v.substring(13, 15)));
+
+        if (v.endsWith("Z")) {
+            return t.atOffset(ZoneOffset.UTC)
+                    .atZoneSameInstant(ZoneId.systemDefault())
+                    .toLocalDateTime();
+        }
+
+        if (tzid != null) {
+            try {
+                return t.atZone(ZoneId.of(tzid))
+                        .withZoneSameInstant(ZoneId.systemDefault())
+                        .toLocalDateTime();
+            } catch (DateTimeException ignored) {
+                // Unknown time zone: treat the value as floating local time
+            }
+        }
+
+        return t;
+    }
+
+    /*
+     * Extracts the TZID parameter from a property head, if present.
+     */
+    private static String tzid(String head) {
+
+        for (String param : head.split(";")) {
+            if (param.regionMatches(true, 0, "TZID=", 0, 5)) {
+                String id = param.substring(5);
+                return id.startsWith("\"") && id.endsWith("\"") && id.length() > 1
+                        ? id.substring(1, id.length() - 1)
+                        : id;
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * Returns the index of the ':' separating a property head from its value,
+     * ignoring colons inside quoted parameter values.
+     */
+    private static int valueSeparator(String line) {
+
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') quoted = !quoted;
+            else if (ch == ':' && !quoted) return i;
+        }
+
+        return -1;
+    }
+
+    /*
+     * Returns the first value of a CATEGORIES list (the app stores one category).
+     */
+    private static String firstCategory(String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == ',') {
+                return unescape(value.substring(0, i));
+            }
+        }
+
+        return unescape(value);
+    }
+
+    /*
+     * Reverses RFC 5545 TEXT escaping.
+     */
+    private static String unescape(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                sb.append(ch);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /*
+     * The CSV tables have no quoting, so commas and line breaks are replaced.
+     */
+    private static String toCsvText(String s) {
+        return s.replace(',', ';').replace("\r", "").replace('\n', ' ').trim();
+    }
+
+    /*
+     * Converts an empty string to null.
+     */
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    /*
+     * UnfoldingReader
+     * ---------------
+     * Joins folded content lines (continuations start with a space or tab)
+     * while reading the file one line at a time.
+     */
+    private static class UnfoldingReader {
+
+        private final BufferedReader br;
+
+        // The next physical line, read ahead to detect continuations
+        private String lookahead;
+
+        UnfoldingReader(BufferedReader br) throws IOException {
+            this.br = br;
+            this.lookahead = br.readLine();
+        }
+
+        /*
+         * Returns the next logical (unfolded) line, or null at end of file.
+         */
+        String next() throws IOException {
+
+            while (lookahead != null && lookahead.isEmpty()) {
+                lookahead = br.readLine();
+            }
+            if (lookahead == null) return null;
+
+            StringBuilder sb = new StringBuilder(lookahead);
+            lookahead = br.readLine();
+
+            while (lookahead != null && !lookahead.isEmpty()
+                    && (lookahead.charAt(0) == ' ' || lookahead.charAt(0) == '\t')) {
+                sb.append(lookahead, 1, lookahead.length());
+                lookahead = br.readLine();
+            }
+
+            return sb.toString();
+        }
+    }
+}
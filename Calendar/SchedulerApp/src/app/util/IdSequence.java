@@ -0,0 +1,166 @@
+package app.util;
+
+import app.model.AdditionalEventFields;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * IdSequence
+ * ----------
+ * Allocates event IDs from a persisted high-water mark (data/seq).
+ *
+ * Event IDs are stable: once assigned they never change, and an ID is
+ * never handed out twice, even after the event is deleted. The file
+ * holds the last ID allocated, so the next ID costs one small write
+ * instead of a scan of every event.
+ *
+ * The mark is forced to disk before an ID is returned, so a crash can
+ * never let a later run reuse an ID that already reached the data files.
+ * If the file is missing or unreadable, the mark is rebuilt once from
+ * the highest ID used in any of the four tables.
+ *
+ * Only an explicit compaction (see reset()) may lower the mark, apart
+ * from release() giving back the unused end of the latest reservation.
+ *
+ * Allocation runs under the DataLock and re-reads the mark each time,
+ * so instances sharing data/ never hand out the same ID.
+ */
+public class IdSequence {
+
+    private static final String FILE_PATH = "data/seq";
+
+    /*
+     * Allocates the next event ID, or returns -1 (after printing the
+     * reason) if the sequence could not be saved.
+     */
+    public static int next() {
+        return reserve(1);
+    }
+
+    /*
+     * Allocates a block of consecutive IDs and returns the first one
+     * (-1 on failure). IDs of the block that end up unused are skipped.
+     */
+    public static int reserve(int count) {
+
+        DataLock.lock();
+        try {
+            int first = load() + 1;
+            return store(first + count - 1) ? first : -1;
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Gives back the unused IDs [first, last] at the end of a block from
+     * reserve(). Only done if no later block was reserved since; otherwise
+     * they stay skipped.
+     */
+    public static void release(int first, int last) {
+
+        DataLock.lock();
+        try {
+            if (first <= last && load() == last) store(first - 1);
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Returns the last allocated ID without allocating one.
+     */
+    public static int current() {
+
+        DataLock.lock();
+        try {
+            return load();
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Sets the mark after the tables have been renumbered offline.
+     */
+    public static boolean reset(int lastUsed) {
+
+        DataLock.lock();
+        try {
+            return store(lastUsed);
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Reads the mark from the file (a few bytes; another instance may have
+     * moved it), rebuilding it if the file is missing or torn.
+     */
+    private static int load() {
+
+        try {
+            int last = Integer.parseInt(Files.readString(Path.of(FILE_PATH), StandardCharsets.UTF_8).trim());
+            if (last >= 0) return last;
+        } catch (IOException | NumberFormatException e) {
+            // Missing or torn file: fall through and rebuild it
+        }
+
+        return highestIdInUse();
+    }
+
+    /*
+     * Writes and forces the mark. Returns false if it is not durable, so a
+     * failed write is never handed out as an ID.
+     */
+    private static boolean store(int value) {
+
+        try {
+            Files.createDirectories(Path.of(FILE_PATH).getParent());
+
+            try (FileChannel ch = FileChannel.open(Path.of(FILE_PATH),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                ByteBuffer buf = ByteBuffer.wrap((value + "\n").getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(true);
+            }
+            return true;
+
+        } catch (IOException e) {
+            System.out.println("Error saving the ID sequence: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+     * Highest event ID in any table, so rows orphaned in a side table are
+     * never adopted by a new event.
+     */
+    private static int highestIdInUse() {
+
+        int max = EventFileHandler.readStore().maxId();
+        for (RecurringEvent r : RecurringFileHandler.readRecurringEvents()) {
+            max = Math.max(max, r.getEventId());
+        }
+        for (AdditionalEventFields a : AdditionalFileHandler.readAdditional()) {
+            max = Math.max(max, a.getEventId());
+        }
+        for (Reminder r : ReminderFileHandler.readReminders()) {
+            max = Math.max(max, r.getEventId());
+        }
+        return max;
+    }
+}
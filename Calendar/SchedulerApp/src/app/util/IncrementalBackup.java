@@ -0,0 +1,606 @@
+package app.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/*
+ * IncrementalBackup
+ * -----------------
+ * This utility class keeps a chain of backup segments in a directory:
+ * a full snapshot followed by deltas that hold only the rows changed
+ * since the previous backup.
+ *
+ *     backups/seg-000001.full
+ *     backups/seg-000002.delta
+ *     backups/seg-000003.delta   ...
+ *
+ * Every table is keyed by event ID (IDs are stable), so a delta is a
+ * list of "+row" (added or changed) and "-id" (deleted) lines per table.
+ *
+ * To find what changed without replaying the chain, the directory also
+ * keeps, per table, the ID and a 64-bit hash of every row as of the
+ * last backup (index-<TABLE>.bin), plus the tables' size and
+ * modification time (index.meta). A table whose size and modification
+ * time are unchanged is not read at all; a changed table is read once
+ * and diffed against its index. The bytes written are proportional to
+ * the rows that changed.
+ *
+ * Checksums:
+ * - each segment ends with a CRC32C of its content
+ * - each segment records every table's row count and an
+ *   order-independent checksum (sum of row hashes) after it is applied
+ * restoreChain() checks both before anything is restored, then replaces
+ * the current tables with the rebuilt ones in one UnitOfWork (or, when
+ * asked to merge, adds them like a backup file).
+ *
+ * A full snapshot is written every FULL_EVERY backups (or whenever the
+ * index does not match the chain); the segments before it are removed.
+ *
+ * This class does NOT handle user interaction.
+ */
+public class IncrementalBackup {
+
+    public static final String DEFAULT_DIR = "backups";
+
+    // Deltas between full snapshots
+    private static final int FULL_EVERY = 8;
+
+    // Table names (as in the backup file sections) and their data files
+    private static final String[] TABLES = { "EVENTS", "RECURRENT", "ADDITIONAL", "REMINDERS" };
+    private static final String[] FILES = {
+            EventFileHandler.FILE_PATH,
+            RecurringFileHandler.FILE_PATH,
+            AdditionalFileHandler.FILE_PATH,
+            ReminderFileHandler.REMINDER_FILE
+    };
+
+    private static final String META_FILE = "index.meta";
+    private static final String END_MARKER = "#END ";
+
+    /*
+     * TableState
+     * ----------
+     * A table as of the last backup: its file stamp, checksum and
+     * (id, row hash) pairs sorted by ID.
+     */
+    private static class TableState {
+
+        long size;
+        long modified;
+        int count;
+        long checksum;
+
+        // Loaded on demand (see loadRows), only for tables that changed
+        int[] ids = new int[0];
+        long[] hashes = new long[0];
+
+        // True if ids/hashes changed and index-<TABLE>.bin must be rewritten
+        boolean dirty;
+
+        int find(int id) {
+            return Arrays.binarySearch(ids, 0, count, id);
+        }
+    }
+
+    // ===================== BACKUP =====================
+
+    /*
+     * Writes the next segment of the chain in the given directory.
+     */
+    public static void backup(String dir) {
+
+        // The segment is built from the files, so they must hold every committed change
+        if (WriteBehind.ENABLED) WriteBehind.flush();
+
+        try {
+            File folder = new File(dir);
+            Files.createDirectories(folder.toPath());
+
+            List<File> segments = segments(folder);
+            int lastSeq = segments.isEmpty() ? 0 : seqOf(segments.get(segments.size() - 1));
+            int seq = lastSeq + 1;
+
+            // Deltas need an index that matches the newest segment
+            TableState[] states = loadIndex(folder, lastSeq);
+            boolean full = states == null || deltasSinceFull(segments) >= FULL_EVERY;
+            if (full) {
+                states = new TableState[TABLES.length];
+                for (int t = 0; t < TABLES.length; t++) states[t] = new TableState();
+            }
+
+            File segment = new File(folder, name(seq, full));
+            File tmp = new File(folder, segment.getName() + ".tmp");
+
+            int added = 0, removed = 0, skipped = 0;
+            CRC32C crc = new CRC32C();
+
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 BufferedWriter w = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+
+                SegmentWriter out = new SegmentWriter(w, crc);
+                out.line("#SEGMENT " + (full ? "FULL " : "DELTA ") + seq);
+
+                for (int t = 0; t < TABLES.length; t++) {
+                    File file = new File(FILES[t]);
+                    TableState state = states[t];
+
+                    // Unchanged file: nothing to read or write
+                    if (!full && file.length() == state.size && file.lastModified() == state.modified) {
+                        skipped++;
+                        continue;
+                    }
+
+                    out.line("#TABLE " + TABLES[t]);
+
+                    // Without its row index the table is sent whole, replacing the old copy
+                    if (!full && !loadRows(folder, t, state)) {
+                        out.line("#RESET");
+                        states[t] = state = new TableState();
+                    }
+
+                    int[] counts = diff(file, state, out);
+                    added += counts[0];
+                    removed += counts[1];
+                }
+
+                for (int t = 0; t < TABLES.length; t++) {
+                    out.line("#CHECKSUM " + TABLES[t] + " " + states[t].count + " " + Long.toHexString(states[t].checksum));
+                }
+
+                // Trailer: CRC of everything above
+                w.write(END_MARKER + Long.toHexString(crc.getValue()) + "\n");
+                w.flush();
+                fos.getFD().sync();
+            }
+
+            Files.move(tmp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // The index is saved last; it only counts once its meta file names this segment
+            saveIndex(folder, seq, states);
+
+            if (full) {
+                for (File old : segments) old.delete();
+            }
+
+            System.out.println((full ? "Full" : "Incremental") + " backup #" + seq + " written to " + dir
+                    + " (" + added + " row(s) added or changed, " + removed + " removed"
+                    + (skipped > 0 ? ", " + skipped + " table(s) unchanged" : "") + ").");
+
+        } catch (IOException e) {
+            System.out.println("Backup failed: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Reads one table, writes the rows that differ from its state as
+     * "+row" / "-id" lines, and updates the state to match the file.
+     * Returns { rows added or changed, rows removed }.
+     */
+    private static int[] diff(File file, TableState state, SegmentWriter out) throws IOException {
+
+        int n = 0;
+        int[] ids = new int[1024];
+        long[] hashes = new long[1024];
+        int added = 0;
+
+        // Old rows still present in the file
+        boolean[] seen = new boolean[state.count];
+
+        if (file.exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+
+                br.readLine(); // skip header
+                String row;
+                while ((row = br.readLine()) != null) {
+
+                    if (row.trim().isEmpty()) continue;
+
+                    int id = idOf(row);
+                    if (id < 0) continue;
+
+                    long hash = rowHash(row);
+                    int old = state.find(id);
+                    if (old >= 0) seen[old] = true;
+
+                    if (old < 0 || state.hashes[old] != hash) {
+                        out.line("+" + row);
+                        added++;
+                    }
+
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                        hashes = Arrays.copyOf(hashes, n * 2);
+                    }
+                    ids[n] = id;
+                    hashes[n] = hash;
+                    n++;
+                }
+            }
+        }
+
+        int removed = 0;
+        for (int i = 0; i < state.count; i++) {
+            if (!seen[i]) {
+                out.line("-" + state.ids[i]);
+                removed++;
+            }
+        }
+
+        sortById(ids, hashes, n, state);
+        state.size = file.length();
+        state.modified = file.lastModified();
+        state.dirty = true;
+
+        return new int[] { added, removed };
+    }
+
+    /*
+     * Sorts the (id, hash) pairs by ID into the state, keeping the last
+     * row for a repeated ID (as a replay would), and recomputes the checksum.
+     */
+    private static void sortById(int[] ids, long[] hashes, int n, TableState state) {
+
+        // Pack (id, position) so equal IDs keep file order
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] outIds = new int[n];
+        long[] outHashes = new long[n];
+        int count = 0;
+        long checksum = 0;
+
+        for (int i = 0; i < n; i++) {
+            int pos = (int) order[i];
+            int id = ids[pos];
+
+            // A later row for the same ID replaces the previous one
+            if (count > 0 && outIds[count - 1] == id) {
+                checksum -= outHashes[count - 1];
+                count--;
+            }
+            outIds[count] = id;
+            outHashes[count] = hashes[pos];
+            checksum += hashes[pos];
+            count++;
+        }
+
+        state.ids = outIds;
+        state.hashes = outHashes;
+        state.count = count;
+        state.checksum = checksum;
+    }
+
+    // ===================== RESTORE =====================
+
+    /*
+     * Replays the chain (newest full snapshot plus the deltas after it),
+     * verifies the checksums, and makes the result the current data (see
+     * BackupManager.replace), keeping its IDs. With merge the result is
+     * instead added like a backup file (new IDs, conflicts skipped).
+     */
+    public static void restoreChain(String dir, boolean merge) {
+
+        if (WriteBehind.ENABLED) WriteBehind.flush();
+
+        List<File> segments = segments(new File(dir));
+        int start = -1;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).getName().endsWith(".full")) {
+                start = i;
+                break;
+            }
+        }
+        if (start < 0) {
+            System.out.println("No full backup found in " + dir + ".");
+            return;
+        }
+
+        List<Map<Integer, String>> tables = new ArrayList<>();
+        for (int t = 0; t < TABLES.length; t++) tables.add(new LinkedHashMap<>());
+
+        String[] expected = null;
+        int applied = 0;
+
+        try {
+            for (int i = start; i < segments.size(); i++) {
+                File segment = segments.get(i);
+
+                List<String> lines = readVerified(segment);
+                if (lines == null) {
+                    System.out.println("Backup segment " + segment.getName() + " is damaged; "
+                            + (applied == 0 ? "nothing restored." : "restoring the chain up to the segment before it."));
+                    if (applied == 0) return;
+                    break;
+                }
+
+                expected = apply(lines, tables);
+                applied++;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Restore failed: " + e.getMessage());
+            return;
+        }
+
+        // Rebuilt tables must match what the last applied segment recorded
+        for (int t = 0; t < TABLES.length; t++) {
+            long checksum = 0;
+            for (String row : tables.get(t).values()) checksum += rowHash(row);
+
+            String actual = tables.get(t).size() + " " + Long.toHexString(checksum);
+            if (expected == null || !actual.equals(expected[t])) {
+                System.out.println("Checksum mismatch in " + TABLES[t] + "; restore cancelled.");
+                return;
+            }
+        }
+
+        // Hand the rebuilt tables over in backup format
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < TABLES.length; t++) {
+            sb.append('#').append(TABLES[t]).append('\n');
+            for (String row : tables.get(t).values()) sb.append(row).append('\n');
+        }
+
+        BufferedReader br = new BufferedReader(new StringReader(sb.toString()));
+        String source = dir + " (" + applied + " segment(s))";
+        if (merge) BackupManager.restore(br, source);
+        else BackupManager.replace(br, source);
+    }
+
+    /*
+     * Reads a segment and checks its CRC trailer; returns its lines
+     * (without the trailer), or null if it is damaged or incomplete.
+     */
+    private static List<String> readVerified(File segment) throws IOException {
+
+        List<String> lines = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(segment, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                if (line.startsWith(END_MARKER)) {
+                    boolean ok = line.substring(END_MARKER.length()).equals(Long.toHexString(crc.getValue()));
+                    return ok && br.readLine() == null ? lines : null;
+                }
+
+                crc.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+                lines.add(line);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Applies one segment to the tables. Returns the "count checksum"
+     * recorded for each table.
+     */
+    private static String[] apply(List<String> lines, List<Map<Integer, String>> tables) {
+
+        String[] expected = new String[TABLES.length];
+        Map<Integer, String> table = null;
+
+        for (String line : lines) {
+
+            if (line.startsWith("#SEGMENT FULL")) {
+                for (Map<Integer, String> m : tables) m.clear();
+
+            } else if (line.startsWith("#TABLE ")) {
+                table = tables.get(tableIndex(line.substring(7)));
+
+            } else if (line.equals("#RESET")) {
+                table.clear();
+
+            } else if (line.startsWith("#CHECKSUM ")) {
+                String[] parts = line.split(" ");
+                expected[tableIndex(parts[1])] = parts[2] + " " + parts[3];
+
+            } else if (line.startsWith("+")) {
+                String row = line.substring(1);
+                table.put(idOf(row), row);
+
+            } else if (line.startsWith("-")) {
+                table.remove(Integer.parseInt(line.substring(1)));
+            }
+        }
+        return expected;
+    }
+
+    // ===================== INDEX =====================
+
+    /*
+     * Loads the per-table state saved with segment seq (without the row
+     * indexes), or returns null if it is missing or belongs to another
+     * segment.
+     */
+    private static TableState[] loadIndex(File folder, int seq) {
+
+        File meta = new File(folder, META_FILE);
+        if (seq == 0 || !meta.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)))) {
+
+            if (in.readInt() != seq) return null;
+
+            TableState[] states = new TableState[TABLES.length];
+            for (int t = 0; t < TABLES.length; t++) {
+                TableState s = new TableState();
+                s.size = in.readLong();
+                s.modified = in.readLong();
+                s.count = in.readInt();
+                s.checksum = in.readLong();
+                states[t] = s;
+            }
+
+            return states;
+
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Loads one table's (id, row hash) index. Returns false if it is
+     * missing or does not match the state.
+     */
+    private static boolean loadRows(File folder, int t, TableState s) {
+
+        try (DataInputStream bin = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(new File(folder, "index-" + TABLES[t] + ".bin"))))) {
+
+            if (bin.readInt() != s.count) return false;
+
+            s.ids = new int[s.count];
+            s.hashes = new long[s.count];
+            for (int i = 0; i < s.count; i++) {
+                s.ids[i] = bin.readInt();
+                s.hashes[i] = bin.readLong();
+            }
+            return true;
+
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Saves the changed per-table indexes, then the meta file naming seq.
+     */
+    private static void saveIndex(File folder, int seq, TableState[] states) throws IOException {
+
+        for (int t = 0; t < TABLES.length; t++) {
+            TableState s = states[t];
+            if (!s.dirty) continue;
+
+            File bin = new File(folder, "index-" + TABLES[t] + ".bin");
+            File tmp = new File(folder, bin.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(s.count);
+                for (int i = 0; i < s.count; i++) {
+                    out.writeInt(s.ids[i]);
+                    out.writeLong(s.hashes[i]);
+                }
+            }
+            Files.move(tmp.toPath(), bin.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        File meta = new File(folder, META_FILE);
+        File tmp = new File(folder, META_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(seq);
+            for (TableState s : states) {
+                out.writeLong(s.size);
+                out.writeLong(s.modified);
+                out.writeInt(s.count);
+                out.writeLong(s.checksum);
+            }
+        }
+        Files.move(tmp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Writes segment lines and keeps the running CRC.
+     */
+    private static class SegmentWriter {
+
+        private final BufferedWriter w;
+        private final CRC32C crc;
+
+        SegmentWriter(BufferedWriter w, CRC32C crc) {
+            this.w = w;
+            this.crc = crc;
+        }
+
+        void line(String line) throws IOException {
+            String text = line + "\n";
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            w.write(text);
+        }
+    }
+
+    /*
+     * Segment files in chain order.
+     */
+    private static List<File> segments(File folder) {
+
+        File[] files = folder.listFiles((d, name) -> name.startsWith("seg-")
+                && (name.endsWith(".full") || name.endsWith(".delta")));
+        if (files == null) return new ArrayList<>();
+
+        Arrays.sort(files, (a, b) -> Integer.compare(seqOf(a), seqOf(b)));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static int deltasSinceFull(List<File> segments) {
+        int count = 0;
+        for (int i = segments.size() - 1; i >= 0 && segments.get(i).getName().endsWith(".delta"); i--) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String name(int seq, boolean full) {
+        return String.format("seg-%06d.%s", seq, full ? "full" : "delta");
+    }
+
+    private static int seqOf(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(4, name.indexOf('.')));
+    }
+
+    private static int tableIndex(String name) {
+        for (int t = 0; t < TABLES.length; t++) {
+            if (TABLES[t].equals(name)) return t;
+        }
+        throw new IllegalArgumentException("Unknown table " + name);
+    }
+
+    /*
+     * Event ID at the start of a CSV row, or -1 if there is none.
+     */
+    private static int idOf(String row) {
+        int comma = row.indexOf(',');
+        try {
+            return Integer.parseInt((comma < 0 ? row : row.substring(0, comma)).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /*
+     * 64-bit FNV-1a hash of a row's characters.
+     */
+    private static long rowHash(String row) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < row.length(); i++) {
+            h ^= row.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,180 @@
+package app.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/*
+ * IntervalIndex
+ * -------------
+ * A compact, read-mostly index used to answer "does [start, end) overlap
+ * any stored interval?" in O(log n) without keeping Event objects around.
+ *
+ * Start and end times are kept in two independently sorted primitive
+ * arrays. For intervals with start <= end, the interval [s, e) overlaps
+ * at least one stored interval exactly when
+ *
+ *     #(stored starts < e)  >  #(stored ends <= s)
+ *
+ * because every stored interval that ends at or before s also starts
+ * before e. This gives the same answer as the pairwise check used by
+ * EventFileHandler.hasConflict, including for zero-length intervals.
+ *
+ * New intervals are added in sorted batches and merged in linear time,
+ * which suits sort-and-sweep bulk operations such as .ics import.
+ *
+ * Times are stored as epoch seconds of the local date-time interpreted
+ * as UTC; this is only an ordering key, not a real instant.
+ */
+public class IntervalIndex {
+
+    // Sorted start keys of all stored intervals
+    private long[] starts;
+
+    // Sorted end keys of all stored intervals
+    private long[] ends;
+
+    // Number of stored intervals
+    private int size;
+
+    /*
+     * Creates an empty index.
+     */
+    public IntervalIndex() {
+        this.starts = new long[16];
+        this.ends = new long[16];
+    }
+
+    /*
+     * Converts a LocalDateTime into the ordering key used by the index.
+     */
+    public static long key(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /*
+     * Adds a single interval without keeping the arrays sorted.
+     * Call sort() once after all unsorted additions are done.
+     */
+    public void addUnsorted(long start, long end) {
+
+        // Normalize reversed intervals the same way hasConflict does
+        if (end < start) {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        ensureCapacity(size + 1);
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /*
+     * Sorts both key arrays. Required after addUnsorted().
+     */
+    public void sort() {
+        Arrays.sort(starts, 0, size);
+        Arrays.sort(ends, 0, size);
+    }
+
+    /*
+     * Merges a batch of intervals into the index.
+     *
+     * batchStarts and batchEnds must each be sorted ascending and hold
+     * count valid entries. Runs in O(size + count).
+     */
+    public void mergeSorted(long[] batchStarts, long[] batchEnds, int count) {
+
+        if (count == 0) return;
+
+        starts = mergeArrays(starts, size, batchStarts, count);
+        ends = mergeArrays(ends, size, batchEnds, count);
+        size += count;
+    }
+
+    /*
+     * Returns true if [start, end) overlaps any stored interval.
+     */
+    public boolean overlaps(long start, long end) {
+
+        if (end < start) {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        return countStartsBefore(end) > countEndsAtOrBefore(start);
+    }
+
+    /*
+     * Returns the number of stored intervals whose start is strictly before t.
+     */
+    public int countStartsBefore(long t) {
+        return lowerBound(starts, size, t);
+    }
+
+    /*
+     * Returns the number of stored intervals whose end is at or before t.
+     */
+    public int countEndsAtOrBefore(long t) {
+        return lowerBound(ends, size, t + 1);
+    }
+
+    /*
+     * Returns the number of stored intervals.
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Returns the first index i such that a[i] >= key (binary search).
+     */
+    private static int lowerBound(long[] a, int n, long key) {
+
+        int lo = 0;
+        int hi = n;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /*
+     * Merges two sorted arrays into a new sorted array.
+     */
+    private static long[] mergeArrays(long[] a, int aLen, long[] b, int bLen) {
+
+        long[] out = new long[Math.max(16, aLen + bLen)];
+        int i = 0, j = 0, k = 0;
+
+        while (i < aLen && j < bLen) {
+            out[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < aLen) out[k++] = a[i++];
+        while (j < bLen) out[k++] = b[j++];
+
+        return out;
+    }
+
+    /*
+     * Grows the backing arrays if needed.
+     */
+    private void ensureCapacity(int needed) {
+
+        if (needed <= starts.length) return;
+
+        int newCap = Math.max(needed, starts.length * 2);
+        starts = Arrays.copyOf(starts, newCap);
+        ends = Arrays.copyOf(ends, newCap);
+    }
+}
@@ -0,0 +1,251 @@
+package app.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+ * OrdinalBitmap
+ * -------------
+ * A compressed set of event ordinals (positions in an EventStore).
+ *
+ * Each bitmap picks the smaller of two representations:
+ * - sparse: a sorted int[] of ordinals (4 bytes per member)
+ * - dense:  a long[] of bit words (1 bit per possible ordinal)
+ *
+ * A value that appears on a handful of rows stays a short array, while
+ * a value shared by a large part of the calendar ("Work") becomes a
+ * plain bit set. AND and OR work on any mix of the two, so filters such
+ * as "category = Work AND starts in March" are set operations instead
+ * of row-by-row scans.
+ *
+ * Bitmaps are built by adding ordinals in ascending order and are not
+ * modified afterwards.
+ */
+public class OrdinalBitmap {
+
+    // Number of possible ordinals (the size of the underlying store)
+    private final int universe;
+
+    // Sparse form: sorted members in [0, size); null when dense
+    private int[] members;
+    private int size;
+
+    // Dense form: bit words; null when sparse
+    private long[] words;
+    private int cardinality;
+
+    /*
+     * Creates an empty bitmap over [0, universe), choosing its form from
+     * the number of members the caller expects to add.
+     */
+    public OrdinalBitmap(int universe, int expectedCardinality) {
+        this.universe = universe;
+        if (isDenseBetter(universe, expectedCardinality)) {
+            words = new long[wordCount(universe)];
+        } else {
+            members = new int[Math.max(4, expectedCardinality)];
+        }
+    }
+
+    private OrdinalBitmap(int universe, int[] members, int size, long[] words, int cardinality) {
+        this.universe = universe;
+        this.members = members;
+        this.size = size;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /*
+     * Adds an ordinal. Ordinals must be added in strictly ascending order.
+     */
+    public void add(int ordinal) {
+
+        if (ordinal < 0 || ordinal >= universe) {
+            throw new IndexOutOfBoundsException(ordinal);
+        }
+
+        if (words != null) {
+            long bit = 1L << ordinal;
+            if ((words[ordinal >>> 6] & bit) == 0) {
+                words[ordinal >>> 6] |= bit;
+                cardinality++;
+            }
+            return;
+        }
+
+        if (size > 0 && members[size - 1] >= ordinal) {
+            throw new IllegalArgumentException("Ordinals must be added in ascending order");
+        }
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size + (size >> 1) + 1);
+        }
+        members[size++] = ordinal;
+    }
+
+    // ===================== QUERIES =====================
+
+    /*
+     * Returns true if the ordinal is a member.
+     */
+    public boolean contains(int ordinal) {
+
+        if (ordinal < 0 || ordinal >= universe) return false;
+
+        if (words != null) {
+            return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+        return Arrays.binarySearch(members, 0, size, ordinal) >= 0;
+    }
+
+    /*
+     * Returns the number of members.
+     */
+    public int cardinality() {
+        return words != null ? cardinality : size;
+    }
+
+    public boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /*
+     * Calls the action for every member in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+
+        if (words == null) {
+            for (int i = 0; i < size; i++) action.accept(members[i]);
+            return;
+        }
+
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /*
+     * Returns the members as a sorted array.
+     */
+    public int[] toArray() {
+
+        if (words == null) return Arrays.copyOf(members, size);
+
+        int[] out = new int[cardinality];
+        int[] n = { 0 };
+        forEach(o -> out[n[0]++] = o);
+        return out;
+    }
+
+    // ===================== SET OPERATIONS =====================
+
+    /*
+     * Returns the members present in both bitmaps.
+     */
+    public OrdinalBitmap and(OrdinalBitmap other) {
+
+        checkUniverse(other);
+
+        // Both dense: word-wise AND
+        if (words != null && other.words != null) {
+            long[] out = new long[words.length];
+            int card = 0;
+            for (int w = 0; w < out.length; w++) {
+                out[w] = words[w] & other.words[w];
+                card += Long.bitCount(out[w]);
+            }
+            return compact(new OrdinalBitmap(universe, null, 0, out, card));
+        }
+
+        // Otherwise probe the smaller sparse side against the other
+        OrdinalBitmap small = words == null ? this : other;
+        OrdinalBitmap large = small == this ? other : this;
+        if (large.words == null && large.size < small.size) {
+            OrdinalBitmap tmp = small;
+            small = large;
+            large = tmp;
+        }
+
+        int[] out = new int[small.size];
+        int n = 0;
+        for (int i = 0; i < small.size; i++) {
+            if (large.contains(small.members[i])) out[n++] = small.members[i];
+        }
+        return new OrdinalBitmap(universe, out, n, null, 0);
+    }
+
+    /*
+     * Returns the members present in either bitmap.
+     */
+    public OrdinalBitmap or(OrdinalBitmap other) {
+
+        checkUniverse(other);
+
+        // Both sparse: merge the sorted arrays
+        if (words == null && other.words == null) {
+            int[] out = new int[size + other.size];
+            int i = 0, j = 0, n = 0;
+            while (i < size && j < other.size) {
+                int a = members[i], b = other.members[j];
+                if (a < b) { out[n++] = a; i++; }
+                else if (b < a) { out[n++] = b; j++; }
+                else { out[n++] = a; i++; j++; }
+            }
+            while (i < size) out[n++] = members[i++];
+            while (j < other.size) out[n++] = other.members[j++];
+            return compact(new OrdinalBitmap(universe, out, n, null, 0));
+        }
+
+        long[] out = new long[wordCount(universe)];
+        orInto(out, this);
+        orInto(out, other);
+
+        int card = 0;
+        for (long w : out) card += Long.bitCount(w);
+        return compact(new OrdinalBitmap(universe, null, 0, out, card));
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Switches a result to whichever form is smaller for its cardinality.
+     */
+    private static OrdinalBitmap compact(OrdinalBitmap b) {
+
+        boolean dense = isDenseBetter(b.universe, b.cardinality());
+        if (dense == (b.words != null)) return b;
+
+        OrdinalBitmap out = new OrdinalBitmap(b.universe, b.cardinality());
+        b.forEach(out::add);
+        return out;
+    }
+
+    private static void orInto(long[] out, OrdinalBitmap b) {
+        if (b.words != null) {
+            for (int w = 0; w < out.length; w++) out[w] |= b.words[w];
+        } else {
+            for (int i = 0; i < b.size; i++) out[b.members[i] >>> 6] |= 1L << b.members[i];
+        }
+    }
+
+    private void checkUniverse(OrdinalBitmap other) {
+        if (other.universe != universe) {
+            throw new IllegalArgumentException("Bitmaps cover different stores");
+        }
+    }
+
+    /*
+     * A bit per ordinal beats an int per member once more than
+     * 1 in 32 ordinals are members.
+     */
+    private static boolean isDenseBetter(int universe, int cardinality) {
+        return (long) cardinality * 32 > universe;
+    }
+
+    private static int wordCount(int universe) {
+        return (universe + 63) >>> 6;
+    }
+}
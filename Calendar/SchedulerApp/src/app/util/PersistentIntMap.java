@@ -0,0 +1,216 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * PersistentIntMap
+ * ----------------
+ * An immutable map from non-negative int keys (event IDs) to values,
+ * stored as a 32-way trie indexed by the key's bits.
+ *
+ * with() and without() return a new map and leave this one untouched.
+ * They copy only the nodes on the path to the key (at most 7 arrays of
+ * 32, usually 4 for a million IDs) and share every other node, so many
+ * versions can be kept at little cost and read from any thread without
+ * locking.
+ *
+ * Event IDs are dense, so nodes emptied by without() are kept rather
+ * than pruned. Iteration is in key order.
+ *
+ * Use a Builder to load many entries at once without copying.
+ */
+public final class PersistentIntMap<V> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentIntMap<Object> EMPTY = new PersistentIntMap<>(new Object[WIDTH], 0, 0);
+
+    /*
+     * Called for each entry; returning true stops the walk.
+     */
+    public interface EntryPredicate<V> {
+        boolean test(int key, V value);
+    }
+
+    public interface EntryVisitor<V> {
+        void accept(int key, V value);
+    }
+
+    // Leaves hold values; inner nodes hold child arrays
+    private final Object[] root;
+
+    // Key bits below the root level (0 = the root is a leaf)
+    private final int shift;
+
+    private final int size;
+
+    private PersistentIntMap(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+
+        if (key < 0 || !fits(key, shift)) return null;
+
+        Object[] node = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            node = (Object[]) node[(key >>> s) & MASK];
+            if (node == null) return null;
+        }
+        return (V) node[key & MASK];
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /*
+     * Returns a map with key set to value (which may not be null).
+     */
+    public PersistentIntMap<V> with(int key, V value) {
+
+        checkKey(key);
+        Objects.requireNonNull(value);
+
+        Object[] r = root;
+        int s = shift;
+        while (!fits(key, s)) {
+            Object[] up = new Object[WIDTH];
+            up[0] = r;
+            r = up;
+            s += BITS;
+        }
+
+        int newSize = get(key) == null ? size + 1 : size;
+        return new PersistentIntMap<>(copyPath(r, s, key, value), s, newSize);
+    }
+
+    /*
+     * Returns a map without key (this map if key is absent).
+     */
+    public PersistentIntMap<V> without(int key) {
+        if (get(key) == null) return this;
+        return new PersistentIntMap<>(copyPath(root, shift, key, null), shift, size - 1);
+    }
+
+    /*
+     * Visits entries in key order until the predicate returns true.
+     * Returns whether it did.
+     */
+    public boolean anyMatch(EntryPredicate<? super V> predicate) {
+        return walk(root, shift, 0, predicate);
+    }
+
+    public void forEach(EntryVisitor<? super V> visitor) {
+        anyMatch((key, value) -> {
+            visitor.accept(key, value);
+            return false;
+        });
+    }
+
+    /*
+     * The values in key order, as a new list.
+     */
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEach((key, value) -> list.add(value));
+        return list;
+    }
+
+    // ===================== BUILDER =====================
+
+    /*
+     * Fills a new trie in place; build() hands it over as an immutable
+     * map, after which the builder must not be used.
+     */
+    public static final class Builder<V> {
+
+        private Object[] root = new Object[WIDTH];
+        private int shift;
+        private int size;
+
+        public Builder<V> put(int key, V value) {
+
+            checkKey(key);
+            Objects.requireNonNull(value);
+
+            while (!fits(key, shift)) {
+                Object[] up = new Object[WIDTH];
+                up[0] = root;
+                root = up;
+                shift += BITS;
+            }
+
+            Object[] node = root;
+            for (int s = shift; s > 0; s -= BITS) {
+                int i = (key >>> s) & MASK;
+                if (node[i] == null) node[i] = new Object[WIDTH];
+                node = (Object[]) node[i];
+            }
+
+            if (node[key & MASK] == null) size++;
+            node[key & MASK] = value;
+            return this;
+        }
+
+        public PersistentIntMap<V> build() {
+            PersistentIntMap<V> map = new PersistentIntMap<>(root, shift, size);
+            root = null;
+            return map;
+        }
+    }
+
+    // ===================== HELPERS =====================
+
+    /*
+     * Copies the nodes from node down to key's leaf, setting the leaf
+     * slot to value (null = remove).
+     */
+    private static Object[] copyPath(Object[] node, int s, int key, Object value) {
+
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int i = (key >>> s) & MASK;
+        copy[i] = s == 0 ? value : copyPath((Object[]) copy[i], s - BITS, key, value);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> boolean walk(Object[] node, int s, int base, EntryPredicate<? super V> predicate) {
+
+        for (int i = 0; i < WIDTH; i++) {
+            Object child = node[i];
+            if (child == null) continue;
+
+            int key = base | (i << s);
+            if (s == 0 ? predicate.test(key, (V) child) : walk((Object[]) child, s - BITS, key, predicate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether a trie with this shift has room for key (keys are 31 bits)
+    private static boolean fits(int key, int shift) {
+        return shift + BITS >= 31 || (key >>> (shift + BITS)) == 0;
+    }
+
+    private static void checkKey(int key) {
+        if (key < 0) throw new IllegalArgumentException("Negative key: " + key);
+    }
+}
@@ -22,12 +22,23 @@ import java.util.List;
 public class RecurringFileHandler {
 
     // File path where recurring event rules are stored
-    private static final String FILE_PATH = "data/recurrent.csv";
+    static final String FILE_PATH = "data/recurrent.csv";
+
+    // CSV header row
+    private static final String HEADER = "eventId,recurrentInterval,recurrentTimes,recurrentEndDate";
 
     /*
-     * Reads all recurring event rules from the CSV file.
+     * Reads all recurring event rules, including changes still waiting in
+     * the write-behind queue.
      */
     public static List<RecurringEvent> readRecurringEvents() {
+        return WriteBehind.overlayRecurring(RecurringFileHandler::readRecurringFile);
+    }
+
+    /*
+     * Reads all recurring event rules from the CSV file.
+     */
+    static List<RecurringEvent> readRecurringFile() {
 
         // List to store all recurrence rules
         List<RecurringEvent> list = new ArrayList<>();
@@ -47,27 +58,11 @@ public class RecurringFileHandler {
                     continue;
                 }
 
-                // Split the CSV row into individual fields
-                String[] parts = line.split(",");
-
                 // Skip malformed rows rather than crashing the whole app
-                if (parts.length < 4) {
-                    continue;
+                RecurringEvent r = parseRow(line);
+                if (r != null) {
+                    list.add(r);
                 }
-
-                // Parse recurrence rule data
-                int eventId = Integer.parseInt(parts[0]);
-                String interval = parts[1];
-                int times = Integer.parseInt(parts[2]);
-
-                // Parse recurrence end date
-                // A value of "0" indicates no end date (unlimited recurrence)
-                LocalDate endDate = parts[3].equals("0")
-                        ? null
-                        : LocalDate.parse(parts[3]);
-
-                // Create a RecurringEvent object and add it to the list
-                list.add(new RecurringEvent(eventId, interval, times, endDate));
             }
 
         } catch (IOException e) {
@@ -78,29 +73,115 @@ public class RecurringFileHandler {
         return list;
     }
 
+    /*
+     * Parses a single CSV row into a RecurringEvent, or returns null if
+     * the row is malformed.
+     */
+    static RecurringEvent parseRow(String line) {
+
+        // Split the CSV row into individual fields
+        String[] parts = line.split(",");
+        if (parts.length < 4) {
+            return null;
+        }
+
+        try {
+            // Parse recurrence rule data
+            int eventId = Integer.parseInt(parts[0]);
+            String interval = parts[1];
+            int times = Integer.parseInt(parts[2]);
+
+            // Parse recurrence end date
+            // A value of "0" indicates no end date (unlimited recurrence)
+            LocalDate endDate = parts[3].equals("0")
+                    ? null
+                    : LocalDate.parse(parts[3]);
+
+            return new RecurringEvent(eventId, interval, times, endDate);
+
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Formats a recurrence rule as a CSV row.
+     */
+    static String toRow(RecurringEvent r) {
+        return r.getEventId() + "," +
+               r.getInterval() + "," +
+               r.getRecurrentTimes() + "," +
+               (r.getRecurrentEndDate() == null ? "0" : r.getRecurrentEndDate());
+    }
+
     /*
      * Writes all recurring event rules to the CSV file.
      */
     public static void writeRecurringEvents(List<RecurringEvent> list) {
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(FILE_PATH))) {
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            writeRecurringEvents(list, new File(FILE_PATH));
+            DataLock.bump(DataLock.Table.RECURRING);
+        } catch (IOException e) {
+            // Print stack trace for debugging purposes
+            e.printStackTrace();
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Writes all recurring event rules to the given file.
+     */
+    static void writeRecurringEvents(List<RecurringEvent> list, File file) throws IOException {
+
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
 
             // Write CSV header
-            pw.println("eventId,recurrentInterval,recurrentTimes,recurrentEndDate");
+            pw.println(HEADER);
 
             // Write each recurrence rule as a CSV row
             for (RecurringEvent r : list) {
-                pw.println(
-                    r.getEventId() + "," +
-                    r.getInterval() + "," +
-                    r.getRecurrentTimes() + "," +
-                    (r.getRecurrentEndDate() == null ? "0" : r.getRecurrentEndDate())
-                );
+                pw.println(toRow(r));
             }
 
-        } catch (IOException e) {
-            // Print stack trace for debugging purposes
-            e.printStackTrace();
+            if (pw.checkError()) {
+                throw new IOException("Error writing " + file);
+            }
+        }
+    }
+
+    /*
+     * Appends recurrence rules to the end of the CSV file in a single write.
+     */
+    public static void appendRecurringEvents(List<RecurringEvent> list) {
+
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            File file = new File(FILE_PATH);
+            boolean needsHeader = !file.exists() || file.length() == 0;
+
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+
+                if (needsHeader) {
+                    pw.println(HEADER);
+                }
+
+                for (RecurringEvent r : list) {
+                    pw.println(toRow(r));
+                }
+
+            } catch (IOException e) {
+                // Print stack trace for debugging purposes
+                e.printStackTrace();
+                return;
+            }
+            DataLock.bump(DataLock.Table.RECURRING);
+        } finally {
+            DataLock.unlock();
         }
     }
 
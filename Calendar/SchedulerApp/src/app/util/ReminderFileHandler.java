@@ -21,12 +21,23 @@ import java.util.List;
 public class ReminderFileHandler {
 
     // File path where reminder data is stored
-    private static final String REMINDER_FILE = "data/reminder.csv";
+    static final String REMINDER_FILE = "data/reminder.csv";
+
+    // CSV header row
+    private static final String HEADER = "eventId,minutesBefore";
 
     /*
-     * Reads all reminders from the CSV file.
+     * Reads all reminders, including changes still waiting in the
+     * write-behind queue.
      */
     public static List<Reminder> readReminders() {
+        return WriteBehind.overlayReminders(ReminderFileHandler::readRemindersFile);
+    }
+
+    /*
+     * Reads all reminders from the CSV file.
+     */
+    static List<Reminder> readRemindersFile() {
 
         // List to store all reminders read from the file
         List<Reminder> reminders = new ArrayList<>();
@@ -63,24 +74,10 @@ public class ReminderFileHandler {
                 }
                 firstLine = false;
 
-                // Split the CSV line into fields
-                String[] parts = line.split(",");
-
-                // Skip malformed rows
-                if (parts.length < 2) {
-                    continue;
-                }
-
-                try {
-                    // Parse event ID and reminder offset
-                    int eventId = Integer.parseInt(parts[0].trim());
-                    int minutesBefore = Integer.parseInt(parts[1].trim());
-
-                    // Create a Reminder object and add it to the list
-                    reminders.add(new Reminder(eventId, minutesBefore));
-
-                } catch (NumberFormatException ignored) {
-                    // Skip malformed numeric values without stopping the program
+                // Skip malformed rows without stopping the program
+                Reminder reminder = parseRow(line);
+                if (reminder != null) {
+                    reminders.add(reminder);
                 }
             }
 
@@ -92,13 +89,58 @@ public class ReminderFileHandler {
         return reminders;
     }
 
+    /*
+     * Parses a single CSV row into a Reminder, or returns null if the row
+     * is malformed.
+     */
+    static Reminder parseRow(String line) {
+
+        // Split the CSV line into fields
+        String[] parts = line.split(",");
+        if (parts.length < 2) {
+            return null;
+        }
+
+        try {
+            // Parse event ID and reminder offset
+            int eventId = Integer.parseInt(parts[0].trim());
+            int minutesBefore = Integer.parseInt(parts[1].trim());
+            return new Reminder(eventId, minutesBefore);
+
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    /*
+     * Formats a reminder as a CSV row.
+     */
+    static String toRow(Reminder reminder) {
+        return reminder.getEventId() + "," + reminder.getMinutesBefore();
+    }
+
     /*
      * Writes all reminders to the CSV file.
      */
     public static void writeReminders(List<Reminder> reminders) {
 
-        // Create a File object for the reminder CSV
-        File file = new File(REMINDER_FILE);
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            writeReminders(reminders, new File(REMINDER_FILE));
+            DataLock.bump(DataLock.Table.REMINDERS);
+        } catch (IOException e) {
+            // Display an error message if file writing fails
+            System.out.println("Error writing reminders: " + e.getMessage());
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Writes all reminders to the given file.
+     */
+    static void writeReminders(List<Reminder> reminders, File file) throws IOException {
 
         // Ensure the parent directory exists before writing
         File parent = file.getParentFile();
@@ -107,22 +149,60 @@ public class ReminderFileHandler {
         }
 
         // Try-with-resources ensures the file is closed automatically
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
 
             // Write CSV header
-            pw.println("eventId,minutesBefore");
+            pw.println(HEADER);
 
             // Write each reminder as a CSV row
             for (Reminder reminder : reminders) {
-                pw.println(
-                        reminder.getEventId() + "," +
-                        reminder.getMinutesBefore()
-                );
+                pw.println(toRow(reminder));
             }
 
-        } catch (IOException e) {
-            // Display an error message if file writing fails
-            System.out.println("Error writing reminders: " + e.getMessage());
+            if (pw.checkError()) {
+                throw new IOException("Error writing " + file);
+            }
+        }
+    }
+
+    /*
+     * Appends reminders to the end of the CSV file in a single write.
+     *
+     * Callers must make sure the event IDs do not already have a reminder.
+     */
+    public static void appendReminders(List<Reminder> reminders) {
+
+        DataLock.lock();
+        try {
+            WriteBehind.beforeDirectWrite();
+            File file = new File(REMINDER_FILE);
+
+            // Ensure the parent directory exists before writing
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            boolean needsHeader = !file.exists() || file.length() == 0;
+
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+
+                if (needsHeader) {
+                    pw.println(HEADER);
+                }
+
+                for (Reminder reminder : reminders) {
+                    pw.println(toRow(reminder));
+                }
+
+            } catch (IOException e) {
+                // Display an error message if file writing fails
+                System.out.println("Error writing reminders: " + e.getMessage());
+                return;
+            }
+            DataLock.bump(DataLock.Table.REMINDERS);
+        } finally {
+            DataLock.unlock();
         }
     }
 }
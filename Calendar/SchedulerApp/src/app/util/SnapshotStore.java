@@ -0,0 +1,544 @@
+package app.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * SnapshotStore
+ * -------------
+ * This utility class keeps numbered point-in-time snapshots of the four
+ * data files in data/snapshots/, with deduplicated storage:
+ *
+ *     data/snapshots/snap-000001.manifest
+ *     data/snapshots/chunks/3f/3f9a...   (Deflate-compressed row block)
+ *
+ * Each table is cut into blocks of rows and every block is stored once,
+ * under the SHA-256 of its content. A manifest lists, per table, the
+ * hashes of its blocks in order. Blocks that are identical in several
+ * snapshots are shared, so a new snapshot only adds the blocks that
+ * changed since earlier ones.
+ *
+ * Block boundaries are chosen from the rows' own hashes (a block ends
+ * after a row whose hash has its low bits clear, within MIN_ROWS and
+ * MAX_ROWS), not from row positions. An added, changed or deleted row
+ * therefore only changes the block it is in; the blocks after it keep
+ * their content and their hash.
+ *
+ * A table whose size and modification time match the latest snapshot is
+ * not read again: its block list is copied from that manifest.
+ *
+ * Diffs only read the blocks the two snapshots do not share. Restores
+ * check every block against its hash before anything is restored, then
+ * replace the current tables with the snapshot's rows in one UnitOfWork
+ * (BackupManager.replace), or, when asked to merge, hand them to
+ * BackupManager.restore (new IDs, conflict checks).
+ *
+ * This class does NOT handle user interaction.
+ */
+public class SnapshotStore {
+
+    public static final String DEFAULT_DIR = "data/snapshots";
+
+    // Block size bounds (rows) and boundary mask (about 1024 rows per block)
+    private static final int MIN_ROWS = 128;
+    private static final int MAX_ROWS = 8192;
+    private static final long BOUNDARY_MASK = 1023;
+
+    // Rows printed per table by diff()
+    private static final int DIFF_LINES = 50;
+
+    // Section names (as in the text backup) and their data files
+    private static final String[] TABLES = { "EVENTS", "RECURRENT", "ADDITIONAL", "REMINDERS" };
+    private static final String[] FILES = {
+            EventFileHandler.FILE_PATH,
+            RecurringFileHandler.FILE_PATH,
+            AdditionalFileHandler.FILE_PATH,
+            ReminderFileHandler.REMINDER_FILE
+    };
+
+    /*
+     * Manifest
+     * --------
+     * One snapshot: when it was taken and, per table, the file stamp,
+     * row count and block hashes.
+     */
+    private static class Manifest {
+
+        int id;
+        String taken;
+
+        long[] size = new long[TABLES.length];
+        long[] modified = new long[TABLES.length];
+        int[] rows = new int[TABLES.length];
+        List<List<String>> blocks = new ArrayList<>();
+
+        Manifest() {
+            for (int t = 0; t < TABLES.length; t++) blocks.add(new ArrayList<>());
+        }
+    }
+
+    /*
+     * Blocks a snapshot added to the store (the rest were shared).
+     */
+    private static class Added {
+        int blocks;
+        long bytes;
+    }
+
+    // ===================== SNAPSHOT =====================
+
+    /*
+     * Takes a snapshot of the data files. Returns its number, or -1 if it
+     * failed.
+     */
+    public static int snapshot(String dir) {
+
+        // The snapshot is read from the files, so they must hold every committed change
+        if (WriteBehind.ENABLED) WriteBehind.flush();
+
+        File folder = new File(dir);
+        List<Integer> ids = snapshotIds(folder);
+
+        Manifest previous = null;
+        try {
+            if (!ids.isEmpty()) previous = readManifest(folder, ids.get(ids.size() - 1));
+        } catch (IOException | RuntimeException e) {
+            // Unreadable manifest: every table is read again
+        }
+
+        Manifest m = new Manifest();
+        m.id = ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1;
+        m.taken = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString();
+
+        Added added = new Added();
+
+        try {
+            Files.createDirectories(new File(folder, "chunks").toPath());
+
+            for (int t = 0; t < TABLES.length; t++) {
+
+                File file = new File(FILES[t]);
+                m.size[t] = file.exists() ? file.length() : -1;
+                m.modified[t] = file.exists() ? file.lastModified() : 0;
+
+                // Unchanged table: same blocks as the latest snapshot
+                if (previous != null && previous.size[t] == m.size[t] && previous.modified[t] == m.modified[t]) {
+                    m.rows[t] = previous.rows[t];
+                    m.blocks.get(t).addAll(previous.blocks.get(t));
+                    continue;
+                }
+
+                if (file.exists()) m.rows[t] = storeTable(folder, file, m.blocks.get(t), added);
+            }
+
+            writeManifest(folder, m);
+
+        } catch (IOException e) {
+            System.out.println("Snapshot failed: " + e.getMessage());
+            return -1;
+        }
+
+        System.out.println("Snapshot " + m.id + " taken (" + added.blocks + " new block(s), "
+                + added.bytes / 1024 + " KB stored).");
+        return m.id;
+    }
+
+    /*
+     * Cuts a table into blocks, storing the blocks not already in the
+     * store. Returns the number of rows.
+     */
+    private static int storeTable(File folder, File file, List<String> hashes, Added added) throws IOException {
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(1 << 16);
+        int blockRows = 0;
+        int rows = 0;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                block.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                blockRows++;
+                if (!line.startsWith("eventId,")) rows++;
+
+                boolean boundary = (rowHash(line) & BOUNDARY_MASK) == 0;
+                if ((blockRows >= MIN_ROWS && boundary) || blockRows >= MAX_ROWS) {
+                    hashes.add(storeBlock(folder, block.toByteArray(), added));
+                    block.reset();
+                    blockRows = 0;
+                }
+            }
+        }
+
+        if (blockRows > 0) hashes.add(storeBlock(folder, block.toByteArray(), added));
+        return rows;
+    }
+
+    /*
+     * Stores a block under its hash unless it is already there.
+     */
+    private static String storeBlock(File folder, byte[] content, Added added) throws IOException {
+
+        String hash = sha256(content);
+        File target = blockFile(folder, hash);
+        if (target.exists()) return hash;
+
+        Files.createDirectories(target.getParentFile().toPath());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+            dos.write(content);
+        } finally {
+            deflater.end();
+        }
+
+        // Written aside first so a crash never leaves a partial block under a valid name
+        Path tmp = Path.of(target.getPath() + ".tmp");
+        Files.write(tmp, compressed.toByteArray());
+        replace(tmp, target.toPath());
+
+        added.blocks++;
+        added.bytes += compressed.size();
+        return hash;
+    }
+
+    // ===================== LIST =====================
+
+    /*
+     * Prints every snapshot with its row counts, and the store's size.
+     */
+    public static void list(String dir) {
+
+        File folder = new File(dir);
+        List<Integer> ids = snapshotIds(folder);
+        if (ids.isEmpty()) {
+            System.out.println("No snapshots yet.");
+            return;
+        }
+
+        System.out.printf("%-6s %-20s %10s %10s %10s %10s%n",
+                "#", "Taken", "Events", "Recurrent", "Additional", "Reminders");
+
+        for (int id : ids) {
+            try {
+                Manifest m = readManifest(folder, id);
+                System.out.printf("%-6d %-20s %10d %10d %10d %10d%n",
+                        m.id, m.taken.replace('T', ' '), m.rows[0], m.rows[1], m.rows[2], m.rows[3]);
+            } catch (IOException | RuntimeException e) {
+                System.out.println(id + "      (damaged manifest)");
+            }
+        }
+
+        long count = 0, bytes = 0;
+        File[] dirs = new File(folder, "chunks").listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File d : dirs) {
+                File[] blocks = d.listFiles((f, name) -> !name.endsWith(".tmp"));
+                if (blocks == null) continue;
+                for (File b : blocks) {
+                    count++;
+                    bytes += b.length();
+                }
+            }
+        }
+        System.out.println(ids.size() + " snapshot(s) sharing " + count + " block(s), "
+                + bytes / 1024 + " KB in total.");
+    }
+
+    // ===================== DIFF =====================
+
+    /*
+     * Prints the rows added, removed and changed between two snapshots,
+     * matched by event ID. Blocks both snapshots share are skipped.
+     */
+    public static void diff(String dir, int fromId, int toId) {
+
+        File folder = new File(dir);
+
+        try {
+            Manifest from = readManifest(folder, fromId);
+            Manifest to = readManifest(folder, toId);
+
+            System.out.println("Snapshot " + fromId + " (" + from.taken.replace('T', ' ') + ") -> "
+                    + toId + " (" + to.taken.replace('T', ' ') + ")");
+
+            for (int t = 0; t < TABLES.length; t++) {
+
+                Set<String> shared = new HashSet<>(from.blocks.get(t));
+                shared.retainAll(to.blocks.get(t));
+
+                Map<Integer, String> before = rowsOutside(folder, from.blocks.get(t), shared);
+                Map<Integer, String> after = rowsOutside(folder, to.blocks.get(t), shared);
+
+                List<String> lines = new ArrayList<>();
+                int addedRows = 0, removedRows = 0, changedRows = 0;
+
+                for (Map.Entry<Integer, String> e : after.entrySet()) {
+                    String old = before.get(e.getKey());
+                    if (old == null) {
+                        addedRows++;
+                        lines.add("  + " + e.getValue());
+                    } else if (!old.equals(e.getValue())) {
+                        changedRows++;
+                        lines.add("  ~ " + old + "  =>  " + e.getValue());
+                    }
+                }
+                for (Map.Entry<Integer, String> e : before.entrySet()) {
+                    if (!after.containsKey(e.getKey())) {
+                        removedRows++;
+                        lines.add("  - " + e.getValue());
+                    }
+                }
+
+                if (lines.isEmpty()) {
+                    System.out.println(TABLES[t] + ": no changes");
+                    continue;
+                }
+
+                System.out.println(TABLES[t] + ": " + addedRows + " added, " + removedRows
+                        + " removed, " + changedRows + " changed");
+                for (int i = 0; i < Math.min(lines.size(), DIFF_LINES); i++) {
+                    System.out.println(lines.get(i));
+                }
+                if (lines.size() > DIFF_LINES) {
+                    System.out.println("  ... and " + (lines.size() - DIFF_LINES) + " more");
+                }
+            }
+
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Diff failed: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Rows (by event ID) of the blocks that are not in the shared set.
+     */
+    private static Map<Integer, String> rowsOutside(File folder, List<String> blocks,
+                                                    Set<String> shared) throws IOException {
+
+        Map<Integer, String> rows = new LinkedHashMap<>();
+        for (String hash : blocks) {
+            if (shared.contains(hash)) continue;
+
+            BufferedReader br = new BufferedReader(new StringReader(
+                    new String(readBlock(folder, hash), StandardCharsets.UTF_8)));
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("eventId,")) continue;
+
+                int comma = line.indexOf(',');
+                try {
+                    rows.put(Integer.parseInt(comma > 0 ? line.substring(0, comma) : line), line);
+                } catch (NumberFormatException e) {
+                    // Not a data row
+                }
+            }
+        }
+        return rows;
+    }
+
+    // ===================== RESTORE =====================
+
+    /*
+     * Restores a snapshot into the application. Every block is read and
+     * checked before anything is restored. The snapshot becomes the current
+     * data, IDs included; with merge its events are added under new IDs.
+     */
+    public static void restore(String dir, int id, boolean merge) {
+
+        File folder = new File(dir);
+        List<InputStream> parts = new ArrayList<>();
+
+        try {
+            Manifest m = readManifest(folder, id);
+            for (int t = 0; t < TABLES.length; t++) {
+                parts.add(new ByteArrayInputStream(("\n#" + TABLES[t] + "\n").getBytes(StandardCharsets.UTF_8)));
+                for (String hash : m.blocks.get(t)) {
+                    parts.add(new ByteArrayInputStream(readBlock(folder, hash)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Snapshot " + id + " cannot be restored (" + e.getMessage() + "); nothing restored.");
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new SequenceInputStream(Collections.enumeration(parts)), StandardCharsets.UTF_8), 1 << 16)) {
+            if (merge) BackupManager.restore(br, "snapshot " + id);
+            else BackupManager.replace(br, "snapshot " + id);
+        } catch (IOException e) {
+            System.out.println("Restore failed.");
+        }
+    }
+
+    // ===================== MANIFESTS =====================
+
+    /*
+     * Snapshot numbers in the directory, oldest first.
+     */
+    private static List<Integer> snapshotIds(File folder) {
+
+        List<Integer> ids = new ArrayList<>();
+        String[] names = folder.list((d, name) -> name.startsWith("snap-") && name.endsWith(".manifest"));
+        if (names == null) return ids;
+
+        for (String name : names) {
+            try {
+                ids.add(Integer.parseInt(name.substring(5, name.length() - ".manifest".length())));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static File manifestFile(File folder, int id) {
+        return new File(folder, String.format("snap-%06d.manifest", id));
+    }
+
+    private static void writeManifest(File folder, Manifest m) throws IOException {
+
+        File target = manifestFile(folder, m.id);
+        Path tmp = Path.of(target.getPath() + ".tmp");
+
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))) {
+            pw.println("#SNAPSHOT " + m.id + " " + m.taken);
+            for (int t = 0; t < TABLES.length; t++) {
+                pw.println("#TABLE " + TABLES[t] + " " + m.size[t] + " " + m.modified[t] + " " + m.rows[t]);
+                for (String hash : m.blocks.get(t)) pw.println(hash);
+            }
+            pw.println("#END");
+        }
+        replace(tmp, target.toPath());
+    }
+
+    private static Manifest readManifest(File folder, int id) throws IOException {
+
+        File file = manifestFile(folder, id);
+        if (!file.exists()) throw new IOException("no snapshot " + id);
+
+        Manifest m = new Manifest();
+        int table = -1;
+        boolean complete = false;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                if (line.startsWith("#SNAPSHOT ")) {
+                    String[] p = line.split(" ");
+                    m.id = Integer.parseInt(p[1]);
+                    m.taken = p[2];
+                } else if (line.startsWith("#TABLE ")) {
+                    String[] p = line.split(" ");
+                    table = indexOf(p[1]);
+                    m.size[table] = Long.parseLong(p[2]);
+                    m.modified[table] = Long.parseLong(p[3]);
+                    m.rows[table] = Integer.parseInt(p[4]);
+                } else if (line.equals("#END")) {
+                    complete = true;
+                } else if (table >= 0 && !line.isEmpty()) {
+                    m.blocks.get(table).add(line);
+                }
+            }
+        }
+
+        if (!complete || m.taken == null) throw new IOException("snapshot " + id + " manifest is incomplete");
+        return m;
+    }
+
+    // ===================== BLOCKS =====================
+
+    private static File blockFile(File folder, String hash) {
+        return new File(new File(new File(folder, "chunks"), hash.substring(0, 2)), hash);
+    }
+
+    /*
+     * Reads a block and checks it against its hash.
+     */
+    private static byte[] readBlock(File folder, String hash) throws IOException {
+
+        File file = blockFile(folder, hash);
+        if (!file.exists()) throw new IOException("block " + hash.substring(0, 12) + " is missing");
+
+        byte[] content;
+        try (InflaterInputStream in = new InflaterInputStream(new FileInputStream(file))) {
+            content = in.readAllBytes();
+        } catch (IOException e) {
+            throw new IOException("block " + hash.substring(0, 12) + " is damaged");
+        }
+
+        if (!sha256(content).equals(hash)) throw new IOException("block " + hash.substring(0, 12) + " is damaged");
+        return content;
+    }
+
+    // ===================== HELPERS =====================
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * 64-bit FNV-1a hash of a row, used to pick block boundaries.
+     */
+    private static long rowHash(String row) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < row.length(); i++) {
+            h ^= row.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        // Mix the high bits down so the mask sees all of them
+        return h ^ (h >>> 32);
+    }
+
+    private static int indexOf(String table) {
+        for (int t = 0; t < TABLES.length; t++) {
+            if (TABLES[t].equals(table)) return t;
+        }
+        throw new IllegalArgumentException("unknown table " + table);
+    }
+
+    private static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * StringPool
+ * ----------
+ * A deduplicating pool that maps strings to small int codes.
+ *
+ * Each distinct value is stored once and referred to by its code, so
+ * repeated values ("Work", "Online", an empty description) cost four
+ * bytes per use instead of a separate String object per row.
+ *
+ * Lookup uses an open-addressing table of int codes instead of a
+ * HashMap, so the pool adds only a few bytes per distinct value.
+ * Codes are stable for the lifetime of the pool and are never reused.
+ */
+public class StringPool {
+
+    // Distinct values, indexed by code
+    private final List<String> values = new ArrayList<>();
+
+    // Open-addressing table holding (code + 1); 0 marks an empty slot
+    private int[] table = new int[64];
+
+    /*
+     * Returns the code for the given value, adding it if it is new.
+     * null is stored as its own value.
+     */
+    public int intern(String value) {
+
+        int mask = table.length - 1;
+        int i = hash(value) & mask;
+
+        while (table[i] != 0) {
+            int code = table[i] - 1;
+            String existing = values.get(code);
+            if (existing == null ? value == null : existing.equals(value)) {
+                return code;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int code = values.size();
+        values.add(value);
+        table[i] = code + 1;
+
+        // Keep the load factor at or below one half
+        if (values.size() * 2 > table.length) {
+            rehash();
+        }
+
+        return code;
+    }
+
+    /*
+     * Returns the code for the given value, or -1 if it is not in the pool.
+     */
+    public int codeOf(String value) {
+
+        int mask = table.length - 1;
+        int i = hash(value) & mask;
+
+        while (table[i] != 0) {
+            int code = table[i] - 1;
+            String existing = values.get(code);
+            if (existing == null ? value == null : existing.equals(value)) {
+                return code;
+            }
+            i = (i + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /*
+     * Returns the value stored under the given code.
+     */
+    public String get(int code) {
+        return values.get(code);
+    }
+
+    /*
+     * Returns the number of distinct values in the pool.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /*
+     * Doubles the lookup table and re-inserts every code.
+     */
+    private void rehash() {
+
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+
+        for (int code = 0; code < values.size(); code++) {
+            int i = hash(values.get(code)) & mask;
+            while (newTable[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            newTable[i] = code + 1;
+        }
+
+        table = newTable;
+    }
+
+    /*
+     * Spreads String.hashCode() bits so linear probing stays short.
+     */
+    private static int hash(String value) {
+        int h = value == null ? 0 : value.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
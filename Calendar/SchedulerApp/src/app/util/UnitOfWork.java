@@ -0,0 +1,534 @@
+package app.util;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/*
+ * UnitOfWork
+ * ----------
+ * Stages changes to the four data tables (events, additional fields,
+ * reminders, recurrence rules) and commits them together.
+ *
+ * Commit protocol:
+ * 1. The staged changes are written to data/commit.journal, ending with
+ *    a COMMIT marker, and fsynced. This is the commit point.
+ * 2. Each touched table is read once, all of its changes are applied,
+ *    and it is written to a temp file that is fsynced and atomically
+ *    replaces the table (the directory is fsynced after the rename).
+ * 3. The journal is deleted.
+ *
+ * Every change is an upsert or delete keyed by event ID, so replaying a
+ * journal is idempotent. recover() (called at startup) replays a journal
+ * left by an interrupted commit, bringing every table to the committed
+ * state; a journal without its COMMIT marker was never committed and is
+ * discarded.
+ *
+ * Rows are checked as they are staged: a row that would not read back
+ * unchanged (a comma or line break in a text field, an unparsable value)
+ * makes commit() fail before the journal is written, so a bad value can
+ * never reach the journal or the tables. A journal that still cannot be
+ * applied is moved aside by recover() and reported.
+ *
+ * A table is rewritten at most once per commit, however many changes
+ * touch it. With write-behind enabled (see WriteBehind), commit() only
+ * hands the changes over and the same protocol runs in the background.
+ */
+public class UnitOfWork {
+
+    private static final String JOURNAL = "data/commit.journal";
+    private static final String COMMIT_MARKER = "COMMIT";
+
+    // Table tags used in the journal
+    static final char EVENTS = 'E';
+    static final char ADDITIONAL = 'A';
+    static final char REMINDERS = 'R';
+    static final char RECURRING = 'C';
+
+    /*
+     * One staged change: an upsert (row != null) or a delete (row == null).
+     */
+    static class Change {
+
+        final char table;
+        final int eventId;
+        final String row;
+
+        Change(char table, int eventId, String row) {
+            this.table = table;
+            this.eventId = eventId;
+            this.row = row;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    // Why the first unstorable staged row was rejected (null if none was)
+    private String invalid;
+
+    // ===================== STAGING =====================
+
+    /*
+     * Adds the event, or replaces the event with the same ID.
+     */
+    public UnitOfWork putEvent(Event e) {
+        stage(EVENTS, e.getEventId(), e, EventFileHandler::toRow, EventFileHandler::parseEvent);
+        return this;
+    }
+
+    public UnitOfWork deleteEvent(int eventId) {
+        changes.add(new Change(EVENTS, eventId, null));
+        return this;
+    }
+
+    /*
+     * Sets the additional fields of an event (replacing any existing row).
+     */
+    public UnitOfWork putAdditional(AdditionalEventFields a) {
+        stage(ADDITIONAL, a.getEventId(), a, AdditionalFileHandler::toRow, AdditionalFileHandler::parseRow);
+        return this;
+    }
+
+    public UnitOfWork deleteAdditional(int eventId) {
+        changes.add(new Change(ADDITIONAL, eventId, null));
+        return this;
+    }
+
+    /*
+     * Sets the reminder of an event (replacing any existing reminder).
+     */
+    public UnitOfWork putReminder(Reminder r) {
+        stage(REMINDERS, r.getEventId(), r, ReminderFileHandler::toRow, ReminderFileHandler::parseRow);
+        return this;
+    }
+
+    public UnitOfWork deleteReminder(int eventId) {
+        changes.add(new Change(REMINDERS, eventId, null));
+        return this;
+    }
+
+    /*
+     * Sets the recurrence rule of an event (replacing any existing rule).
+     */
+    public UnitOfWork putRecurring(RecurringEvent r) {
+        stage(RECURRING, r.getEventId(), r, RecurringFileHandler::toRow, RecurringFileHandler::parseRow);
+        return this;
+    }
+
+    public UnitOfWork deleteRecurring(int eventId) {
+        changes.add(new Change(RECURRING, eventId, null));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /*
+     * Whether a text field can be stored in the CSV tables as it is
+     * (no commas or line breaks).
+     */
+    public static boolean isStorable(String text) {
+        return text == null || (text.indexOf(',') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0);
+    }
+
+    /*
+     * Formats a row and checks that it reads back unchanged before
+     * staging it.
+     */
+    private <T> void stage(char table, int eventId, T value,
+                           Function<T, String> format, Function<String, T> parse) {
+
+        String row = format.apply(value);
+        if (invalid == null && !readsBack(row, format, parse)) {
+            invalid = "Cannot save event " + eventId + ": text fields may not contain commas or line breaks.";
+        }
+        changes.add(new Change(table, eventId, row));
+    }
+
+    private static <T> boolean readsBack(String row, Function<T, String> format, Function<String, T> parse) {
+
+        if (row.indexOf('\n') >= 0 || row.indexOf('\r') >= 0) return false;
+        try {
+            T parsed = parse.apply(row);
+            return parsed != null && format.apply(parsed).equals(row);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // ===================== COMMIT =====================
+
+    /*
+     * Commits every staged change. Returns false (after printing the
+     * reason) if the commit could not be made durable; in that case no
+     * table has been modified.
+     *
+     * If a table fails to be replaced after the commit point, the journal
+     * is kept and the change is completed by recover() on the next start.
+     */
+    public boolean commit() {
+
+        if (changes.isEmpty()) return true;
+
+        if (invalid != null) {
+            System.out.println(invalid);
+            return false;
+        }
+
+        if (WriteBehind.ENABLED) {
+            WriteBehind.submit(changes);
+            changes.clear();
+            return true;
+        }
+
+        // The journal and the tables are shared with other instances
+        DataLock.lock();
+        try {
+            try {
+                writeJournal(changes);
+            } catch (IOException e) {
+                System.out.println("Error saving changes: " + e.getMessage());
+                return false;
+            }
+
+            try {
+                apply(changes);
+                deleteJournal();
+            } catch (IOException e) {
+                System.out.println("Changes saved to journal; they will be completed on next start ("
+                        + e.getMessage() + ").");
+            } catch (RuntimeException e) {
+                setAside(e);
+                return false;
+            }
+        } finally {
+            DataLock.unlock();
+        }
+
+        changes.clear();
+        return true;
+    }
+
+    /*
+     * Completes a commit interrupted by a crash. Safe to call when there is
+     * nothing to recover.
+     */
+    public static void recover() {
+
+        Path journal = Path.of(JOURNAL);
+        if (!Files.exists(journal)) return;
+
+        // Another instance may be mid-commit; its journal is not ours to replay yet
+        DataLock.lock();
+        try {
+            if (!Files.exists(journal)) return;
+
+            List<Change> pending = readJournal();
+            if (pending != null) {
+                apply(pending);
+                System.out.println("Recovered " + pending.size() + " change(s) from an interrupted save.");
+            }
+            Files.delete(journal);
+
+        } catch (IOException e) {
+            System.out.println("Error recovering interrupted save: " + e.getMessage());
+        } catch (RuntimeException e) {
+            setAside(e);
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    // ===================== JOURNAL =====================
+
+    /*
+     * Writes the journal and forces it to disk; this is the commit point.
+     * (replace() then forces each rewritten table and its directory.)
+     */
+    static void writeJournal(List<Change> changes) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (Change c : changes) {
+            sb.append(c.table)
+              .append(c.row == null ? '-' : '+')
+              .append(c.eventId);
+            if (c.row != null) sb.append('\t').append(c.row);
+            sb.append('\n');
+        }
+        sb.append(COMMIT_MARKER).append('\n');
+
+        new File("data").mkdirs();
+
+        try (FileChannel ch = FileChannel.open(Path.of(JOURNAL),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+    }
+
+    static void deleteJournal() throws IOException {
+        Files.deleteIfExists(Path.of(JOURNAL));
+    }
+
+    /*
+     * Moves a journal that cannot be applied out of the way, so it is
+     * reported once instead of failing every start. Tables it had
+     * already replaced keep their new contents.
+     */
+    static void setAside(RuntimeException cause) {
+
+        Path journal = Path.of(JOURNAL);
+        Path aside = journal.resolveSibling("commit.journal.bad-" + System.currentTimeMillis());
+        try {
+            Files.move(journal, aside, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Error applying saved changes (" + cause + "); they were moved to " + aside + ".");
+        } catch (IOException e) {
+            System.out.println("Error applying saved changes (" + cause + "); cannot move "
+                    + JOURNAL + " aside: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Reads a journal; returns null if it has no COMMIT marker.
+     */
+    private static List<Change> readJournal() throws IOException {
+
+        List<Change> list = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(JOURNAL, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                if (line.equals(COMMIT_MARKER)) {
+                    return list;
+                }
+                if (line.length() < 3) {
+                    return null;
+                }
+
+                char table = line.charAt(0);
+                boolean upsert = line.charAt(1) == '+';
+                int tab = line.indexOf('\t');
+
+                try {
+                    int id = Integer.parseInt(upsert && tab > 0 ? line.substring(2, tab) : line.substring(2));
+                    list.add(new Change(table, id, upsert ? line.substring(tab + 1) : null));
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+        }
+
+        // Torn journal: the commit never completed
+        return null;
+    }
+
+    // ===================== APPLY =====================
+
+    /*
+     * Applies changes table by table, rewriting each touched table once.
+     * Tables are read straight from disk, without the write-behind overlay.
+     * Called with the DataLock held.
+     */
+    static void apply(List<Change> changes) throws IOException {
+
+        if (touches(changes, EVENTS)) {
+            List<Event> events = EventFileHandler.readStoreFile().asList();
+            patchEvents(events, changes);
+
+            File tmp = tempFor(EventFileHandler.FILE_PATH);
+            EventFileHandler.writeEvents(events, tmp);
+            replace(tmp, EventFileHandler.FILE_PATH);
+            DataLock.bump(DataLock.Table.EVENTS);
+        }
+
+        if (touches(changes, ADDITIONAL)) {
+            List<AdditionalEventFields> list = AdditionalFileHandler.readAdditionalFile();
+            patchAdditional(list, changes);
+
+            File tmp = tempFor(AdditionalFileHandler.FILE_PATH);
+            AdditionalFileHandler.writeAdditional(list, tmp);
+            replace(tmp, AdditionalFileHandler.FILE_PATH);
+            DataLock.bump(DataLock.Table.ADDITIONAL);
+        }
+
+        if (touches(changes, REMINDERS)) {
+            List<Reminder> list = ReminderFileHandler.readRemindersFile();
+            patchReminders(list, changes);
+
+            File tmp = tempFor(ReminderFileHandler.REMINDER_FILE);
+            ReminderFileHandler.writeReminders(list, tmp);
+            replace(tmp, ReminderFileHandler.REMINDER_FILE);
+            DataLock.bump(DataLock.Table.REMINDERS);
+        }
+
+        if (touches(changes, RECURRING)) {
+            List<RecurringEvent> list = RecurringFileHandler.readRecurringFile();
+            patchRecurring(list, changes);
+
+            File tmp = tempFor(RecurringFileHandler.FILE_PATH);
+            RecurringFileHandler.writeRecurringEvents(list, tmp);
+            replace(tmp, RecurringFileHandler.FILE_PATH);
+            DataLock.bump(DataLock.Table.RECURRING);
+        }
+    }
+
+    // ===================== PATCHING =====================
+
+    /*
+     * Applies the event changes to a list of events, with the same result
+     * as applying them one by one: an upsert replaces the event in place
+     * (or appends it), a delete removes it. The changes are resolved per
+     * event ID first, so the list is scanned once however many there are.
+     */
+    static void patchEvents(List<Event> events, List<Change> changes) {
+
+        // Position of every touched event that is already in the list
+        Map<Integer, Integer> position = new HashMap<>();
+        for (Change c : changes) {
+            if (c.table == EVENTS) position.put(c.eventId, -1);
+        }
+        if (position.isEmpty()) return;
+
+        EventStore store = EventStore.backing(events);
+        for (int i = 0; i < events.size(); i++) {
+            int id = store != null ? store.idAt(i) : events.get(i).getEventId();
+            if (position.get(id) != null && position.get(id) < 0) position.put(id, i);
+        }
+
+        // Replaced in place / removed from the list / appended, in order
+        Map<Integer, String> replaced = new HashMap<>();
+        Set<Integer> removed = new HashSet<>();
+        Map<Integer, String> appended = new LinkedHashMap<>();
+
+        for (Change c : changes) {
+            if (c.table != EVENTS) continue;
+
+            boolean inList = position.get(c.eventId) >= 0 && !removed.contains(c.eventId);
+            if (c.row == null) {
+                if (inList) {
+                    removed.add(c.eventId);
+                    replaced.remove(c.eventId);
+                } else {
+                    appended.remove(c.eventId);
+                }
+            } else if (inList) {
+                replaced.put(c.eventId, c.row);
+            } else {
+                appended.put(c.eventId, c.row);
+            }
+        }
+
+        for (Map.Entry<Integer, String> e : replaced.entrySet()) {
+            events.set(position.get(e.getKey()), EventFileHandler.parseEvent(e.getValue()));
+        }
+        if (!removed.isEmpty()) {
+            events.removeIf(e -> removed.contains(e.getEventId()));
+        }
+        for (String row : appended.values()) {
+            events.add(EventFileHandler.parseEvent(row));
+        }
+    }
+
+    static void patchAdditional(List<AdditionalEventFields> list, List<Change> changes) {
+        patchRows(list, changes, ADDITIONAL, AdditionalEventFields::getEventId, AdditionalFileHandler::parseRow);
+    }
+
+    static void patchReminders(List<Reminder> list, List<Change> changes) {
+        patchRows(list, changes, REMINDERS, Reminder::getEventId, ReminderFileHandler::parseRow);
+    }
+
+    static void patchRecurring(List<RecurringEvent> list, List<Change> changes) {
+        patchRows(list, changes, RECURRING, RecurringEvent::getEventId, RecurringFileHandler::parseRow);
+    }
+
+    /*
+     * Side tables hold one row per event, and an upsert moves the row to
+     * the end. So: drop every touched row in one pass, then append the
+     * surviving rows in the order of their last upsert.
+     */
+    private static <T> void patchRows(List<T> list, List<Change> changes, char table,
+                                      ToIntFunction<T> idOf, Function<String, T> parse) {
+
+        Map<Integer, String> last = new LinkedHashMap<>();
+        for (Change c : changes) {
+            if (c.table != table) continue;
+            last.remove(c.eventId);
+            last.put(c.eventId, c.row);
+        }
+        if (last.isEmpty()) return;
+
+        list.removeIf(row -> last.containsKey(idOf.applyAsInt(row)));
+
+        for (String row : last.values()) {
+            if (row == null) continue;
+            T parsed = parse.apply(row);
+            if (parsed != null) list.add(parsed);
+        }
+    }
+
+    private static boolean touches(List<Change> changes, char table) {
+        for (Change c : changes) {
+            if (c.table == table) return true;
+        }
+        return false;
+    }
+
+    private static File tempFor(String path) {
+        return new File(path + ".tmp");
+    }
+
+    /*
+     * Atomically replaces the table with its freshly written temp file.
+     * The temp file is forced to disk first and the directory after, so
+     * the new table is durable before the journal can be deleted.
+     */
+    private static void replace(File tmp, String path) throws IOException {
+
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+
+        try {
+            Files.move(tmp.toPath(), Path.of(path),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), Path.of(path), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Not every platform can open a directory; the rename is then as durable as it gets
+        try (FileChannel dir = FileChannel.open(Path.of(path).toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package app.util;
+
+import app.model.AdditionalEventFields;
+import app.model.Event;
+import app.model.RecurringEvent;
+import app.model.Reminder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/*
+ * WriteBehind
+ * -----------
+ * Optional write-behind persistence for UnitOfWork commits
+ * (run with -Dscheduler.writeBehind=true).
+ *
+ * A commit only records its changes in memory and returns, so an edit
+ * no longer waits for the data files to be rewritten. The file handlers'
+ * read methods apply the pending changes on top of what is on disk, so
+ * the rest of the app sees every committed edit straight away.
+ *
+ * A background thread flushes the pending changes once no commit has
+ * arrived for the debounce interval (-Dscheduler.writeBehind.delayMs,
+ * default 500), but never later than -Dscheduler.writeBehind.maxDelayMs
+ * (default 5000) after the oldest unflushed commit, so a steady stream
+ * of edits cannot keep postponing the write. Changes are coalesced per
+ * table and event ID (only the last one counts), so a burst of edits
+ * costs one rewrite per touched table and one journal fsync, using the
+ * same protocol as UnitOfWork.
+ *
+ * A flush that fails with an I/O error is retried. One that fails
+ * otherwise cannot succeed on retry: its journal is set aside, an error
+ * naming the number of changes lost from disk is printed, and the
+ * changes stay in the read overlay for the rest of the session so the
+ * app keeps showing what the user entered.
+ *
+ * flush() is a barrier: it returns once everything committed so far is
+ * on disk. It runs before backups, before any direct (non-UnitOfWork)
+ * table write, on exit, and from a shutdown hook.
+ */
+public class WriteBehind {
+
+    public static final boolean ENABLED = Boolean.getBoolean("scheduler.writeBehind");
+
+    private static final long DELAY_MS = Long.getLong("scheduler.writeBehind.delayMs", 500);
+    private static final long MAX_DELAY_MS = Long.getLong("scheduler.writeBehind.maxDelayMs", 5000);
+
+    // Guards pending, pendingSince, inFlight and stranded
+    private static final Object LOCK = new Object();
+
+    // Committed changes not yet handed to a flush, coalesced by (table, event ID)
+    private static Map<Long, UnitOfWork.Change> pending = new LinkedHashMap<>();
+
+    // System.nanoTime() of the oldest commit in pending
+    private static long pendingSince;
+
+    // Changes being flushed; still overlaid on reads until the files are replaced
+    private static List<UnitOfWork.Change> inFlight = List.of();
+
+    // Changes of flushes that failed for good; overlaid on reads for the rest of the session
+    private static final List<UnitOfWork.Change> stranded = new ArrayList<>();
+
+    // Number of flushes that have replaced the files
+    private static long flushes;
+
+    // Bumped by every direct table write (see directWrites())
+    private static volatile long directWrites;
+
+    private static ScheduledExecutorService flusher;
+    private static ScheduledFuture<?> scheduled;
+
+    // ===================== COMMITS =====================
+
+    /*
+     * Records committed changes and (re)starts the debounce timer.
+     */
+    static void submit(List<UnitOfWork.Change> changes) {
+        synchronized (LOCK) {
+            if (pending.isEmpty()) pendingSince = System.nanoTime();
+            for (UnitOfWork.Change c : changes) {
+                pending.put(key(c.table, c.eventId), c);
+            }
+            schedule();
+        }
+    }
+
+    /*
+     * Writes every committed change to disk before returning.
+     */
+    public static void flush() {
+
+        synchronized (LOCK) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        flushPending();
+    }
+
+    /*
+     * Flushes pending changes, then counts a direct table write.
+     * Called by the file handlers' public write methods.
+     */
+    static void beforeDirectWrite() {
+        if (!ENABLED) return;
+        flush();
+        directWrites++;
+    }
+
+    /*
+     * Number of table writes that did not go through UnitOfWork.
+     * Caches kept in step with UnitOfWork commits use this (instead of
+     * file timestamps, which change whenever a flush runs) to detect
+     * data they did not see.
+     */
+    public static long directWrites() {
+        return directWrites;
+    }
+
+    // ===================== READ OVERLAY =====================
+
+    public static boolean hasPendingEvents() {
+        return ENABLED && !snapshot(UnitOfWork.EVENTS).isEmpty();
+    }
+
+    static EventStore overlayEvents(Supplier<EventStore> readFile) {
+        return overlay(UnitOfWork.EVENTS, readFile, (store, changes) -> UnitOfWork.patchEvents(store.asList(), changes));
+    }
+
+    static List<AdditionalEventFields> overlayAdditional(Supplier<List<AdditionalEventFields>> readFile) {
+        return overlay(UnitOfWork.ADDITIONAL, readFile, UnitOfWork::patchAdditional);
+    }
+
+    static List<Reminder> overlayReminders(Supplier<List<Reminder>> readFile) {
+        return overlay(UnitOfWork.REMINDERS, readFile, UnitOfWork::patchReminders);
+    }
+
+    static List<RecurringEvent> overlayRecurring(Supplier<List<RecurringEvent>> readFile) {
+        return overlay(UnitOfWork.RECURRING, readFile, UnitOfWork::patchRecurring);
+    }
+
+    /*
+     * Reads a table from disk and applies its pending changes.
+     *
+     * The changes are taken before the file is read. A flush finishing in
+     * between would drop them from the overlay after the read missed them
+     * (or let an older change be applied over newer data), so in that case
+     * the read is repeated with flushes held off by the DataLock.
+     */
+    private static <T> T overlay(char table, Supplier<T> readFile, BiConsumer<T, List<UnitOfWork.Change>> patch) {
+
+        if (!ENABLED) return readFile.get();
+
+        long seen;
+        List<UnitOfWork.Change> changes;
+        synchronized (LOCK) {
+            seen = flushes;
+            changes = snapshot(table);
+        }
+
+        T data = readFile.get();
+
+        boolean flushed;
+        synchronized (LOCK) {
+            flushed = flushes != seen;
+        }
+
+        if (flushed) {
+            DataLock.lock();
+            try {
+                changes = snapshot(table);
+                data = readFile.get();
+            } finally {
+                DataLock.unlock();
+            }
+        }
+
+        patch.accept(data, changes);
+        return data;
+    }
+
+    /*
+     * The stranded, in-flight then pending changes for one table, in
+     * commit order.
+     */
+    private static List<UnitOfWork.Change> snapshot(char table) {
+
+        List<UnitOfWork.Change> out = new ArrayList<>();
+        synchronized (LOCK) {
+            for (UnitOfWork.Change c : stranded) {
+                if (c.table == table) out.add(c);
+            }
+            for (UnitOfWork.Change c : inFlight) {
+                if (c.table == table) out.add(c);
+            }
+            for (UnitOfWork.Change c : pending.values()) {
+                if (c.table == table) out.add(c);
+            }
+        }
+        return out;
+    }
+
+    // ===================== FLUSHING =====================
+
+    private static void flushPending() {
+
+        // Nothing to do: skip taking the (cross-process) data lock
+        synchronized (LOCK) {
+            if (pending.isEmpty()) return;
+        }
+
+        DataLock.lock();
+        try {
+            List<UnitOfWork.Change> batch;
+            synchronized (LOCK) {
+                if (pending.isEmpty()) return;
+                batch = new ArrayList<>(pending.values());
+                pending = new LinkedHashMap<>();
+                inFlight = batch;
+            }
+
+            try {
+                UnitOfWork.writeJournal(batch);
+                UnitOfWork.apply(batch);
+                UnitOfWork.deleteJournal();
+
+                synchronized (LOCK) {
+                    inFlight = List.of();
+                    flushes++;
+                }
+
+            } catch (IOException e) {
+                System.out.println("Error saving changes (will retry): " + e.getMessage());
+                requeue(batch);
+
+            } catch (RuntimeException e) {
+                // Retrying cannot help; keep the journal for inspection and the changes on screen
+                UnitOfWork.setAside(e);
+                synchronized (LOCK) {
+                    stranded.addAll(batch);
+                    inFlight = List.of();
+                    flushes++;
+                }
+                System.out.println("ERROR: " + batch.size() + " saved change(s) could NOT be written to the data files."
+                        + " They remain visible until the program exits, then they are lost"
+                        + " unless re-entered or restored from the set-aside journal.");
+            }
+        } finally {
+            DataLock.unlock();
+        }
+    }
+
+    /*
+     * Puts a failed batch back in front of any newer changes and retries
+     * after the debounce interval.
+     */
+    private static void requeue(List<UnitOfWork.Change> batch) {
+        synchronized (LOCK) {
+            Map<Long, UnitOfWork.Change> merged = new LinkedHashMap<>();
+            for (UnitOfWork.Change c : batch) merged.put(key(c.table, c.eventId), c);
+            merged.putAll(pending);
+            pending = merged;
+            pendingSince = System.nanoTime();
+            inFlight = List.of();
+            schedule();
+        }
+    }
+
+    /*
+     * Restarts the debounce timer, shortened so the flush starts no later
+     * than MAX_DELAY_MS after the oldest pending commit. Caller holds LOCK.
+     */
+    private static void schedule() {
+
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(WriteBehind::flush, "write-behind-exit"));
+        }
+
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingSince);
+        long delay = Math.max(0, Math.min(DELAY_MS, MAX_DELAY_MS - waited));
+
+        if (scheduled != null) scheduled.cancel(false);
+        scheduled = flusher.schedule(WriteBehind::flushPending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static long key(char table, int eventId) {
+        return ((long) table << 32) | (eventId & 0xFFFFFFFFL);
+    }
+}
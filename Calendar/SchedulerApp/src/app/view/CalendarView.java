@@ -3,15 +3,16 @@ package app.view;
 import app.model.Event;
 import app.model.RecurringEvent;
 import app.model.AdditionalEventFields;
+import app.service.RecurrenceExpander;
+import app.service.Rollups;
 import app.util.AdditionalFileHandler;
 import app.util.RecurringFileHandler;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.time.YearMonth;
-import java.util.ArrayList;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +26,7 @@ import java.util.Map;
  * - Month view
  * - Week view
  * - Day view
+ * - Year overview and category hours (from precomputed rollups)
  *
  * This class does not modify data or perform file writing.
  * It only reads data and formats output for display.
@@ -42,100 +44,9 @@ public class CalendarView {
             LocalDate rangeStart,
             LocalDate rangeEnd) {
 
-        // Create a new list to avoid mutating the original events list
-        List<Event> expanded = new ArrayList<>(events);
-
-        // Read all recurrence rules from storage
+        // Read all recurrence rules from storage and expand them
         List<RecurringEvent> recurringRules = RecurringFileHandler.readRecurringEvents();
-        if (recurringRules.isEmpty()) {
-            return expanded;
-        }
-
-        // Process each recurrence rule
-        for (RecurringEvent rule : recurringRules) {
-
-            // Find the base event associated with this recurrence rule
-            Event base = null;
-            for (Event e : events) {
-                if (e.getEventId() == rule.getEventId()) {
-                    base = e;
-                    break;
-                }
-            }
-
-            // Skip orphan recurrence rules
-            if (base == null) {
-                continue;
-            }
-
-            // Parse recurrence interval string into a Period
-            java.time.Period period = parseInterval(rule.getInterval());
-            if (period == null) {
-                // Unsupported or malformed interval
-                continue;
-            }
-
-            // Retrieve base event start and end times
-            LocalDateTime start = base.getStartDateTime();
-            LocalDateTime end = base.getEndDateTime();
-
-            // Calculate event duration in minutes
-            long durationMinutes = ChronoUnit.MINUTES.between(start, end);
-
-            /*
-             * The CSV stores recurrence count as total desired occurrences
-             * (including the base event).
-             */
-            int maxOccurrences = rule.getRecurrentTimes();
-            LocalDate endDateLimit = rule.getRecurrentEndDate();
-
-            // Start generating from the next occurrence (base event already exists)
-            int generated = 0;
-            int occurrenceIndex = 1;
-
-            while (true) {
-
-                // Calculate start time of the next occurrence
-                LocalDateTime occStart = start
-                        .plusYears((long) period.getYears() * occurrenceIndex)
-                        .plusMonths((long) period.getMonths() * occurrenceIndex)
-                        .plusDays((long) period.getDays() * occurrenceIndex);
-
-                // Stop if recurrence count limit is reached
-                if (maxOccurrences > 0 && generated >= maxOccurrences) {
-                    break;
-                }
-
-                generated++;
-                LocalDate occDate = occStart.toLocalDate();
-
-                // Stop if end date limit is exceeded
-                if (endDateLimit != null && occDate.isAfter(endDateLimit)) {
-                    break;
-                }
-
-                // Stop if beyond display range
-                if (occDate.isAfter(rangeEnd)) {
-                    break;
-                }
-
-                // Add occurrence if it falls within display range
-                if (!occDate.isBefore(rangeStart)) {
-                    LocalDateTime occEnd = occStart.plusMinutes(durationMinutes);
-                    expanded.add(new Event(
-                            base.getEventId(),
-                            base.getTitle(),
-                            base.getDescription(),
-                            occStart,
-                            occEnd
-                    ));
-                }
-
-                occurrenceIndex++;
-            }
-        }
-
-        return expanded;
+        return RecurrenceExpander.withOccurrences(events, recurringRules, rangeStart, rangeEnd);
     }
 
     // ===================== MONTH VIEW =====================
@@ -143,6 +54,14 @@ public class CalendarView {
      * Displays a month-based calendar view.
      */
     public static void showMonthView(List<Event> events, int year, int month) {
+        showMonthView(events, year, month, null);
+    }
+
+    /*
+     * Displays a month-based calendar view, taking the day markers from
+     * precomputed rollups when they are given (they must cover the month).
+     */
+    public static void showMonthView(List<Event> events, int year, int month, Rollups rollups) {
 
         YearMonth ym = YearMonth.of(year, month);
         LocalDate rangeStart = ym.atDay(1);
@@ -175,8 +94,9 @@ public class CalendarView {
         for (int day = 1; day <= ym.lengthOfMonth(); day++) {
             LocalDate date = ym.atDay(day);
 
-            boolean hasEvent = allEvents.stream()
-                    .anyMatch(e -> e.getStartDateTime().toLocalDate().equals(date));
+            boolean hasEvent = rollups != null
+                    ? rollups.day(date).count > 0
+                    : allEvents.stream().anyMatch(e -> e.getStartDateTime().toLocalDate().equals(date));
 
             System.out.printf("%2d%s ", day, hasEvent ? "*" : " ");
 
@@ -336,45 +256,65 @@ public class CalendarView {
         }
     }
 
+    // ===================== ROLLUP REPORTS =====================
     /*
-     * Parses a recurrence interval string into a Period object.
+     * Displays event counts and booked hours for each month of a year.
+     * The rollups must cover the whole year.
      */
-    private static java.time.Period parseInterval(String interval) {
+    public static void showYearOverview(Rollups rollups, int year) {
 
-        if (interval == null) return null;
+        System.out.println("\n=== " + year + " overview ===");
+        System.out.println("Month        Events   Hours");
 
-        String trimmed = interval.trim().toLowerCase();
-        if (trimmed.isEmpty()) return null;
+        int totalCount = 0;
+        long totalMinutes = 0;
 
-        // Legacy support: "1" means weekly recurrence
-        if (trimmed.equals("1")) {
-            return java.time.Period.ofDays(7);
+        for (int m = 1; m <= 12; m++) {
+            YearMonth ym = YearMonth.of(year, m);
+            Rollups.Totals t = rollups.month(ym);
+            totalCount += t.count;
+            totalMinutes += t.minutes;
+
+            System.out.printf("%-10s %8d %7.1f%n", ym.getMonth(), t.count, t.hours());
         }
 
-        int len = trimmed.length();
-        char last = trimmed.charAt(len - 1);
+        System.out.printf("%-10s %8d %7.1f%n%n", "TOTAL", totalCount, totalMinutes / 60.0);
+    }
+
+    /*
+     * Displays hours booked per category for each ISO week overlapping
+     * [from, to]. Each week/category value is a single rollup lookup.
+     */
+    public static void showCategoryHoursByWeek(Rollups rollups, LocalDate from, LocalDate to) {
+
+        System.out.println("\n=== Hours per category per week ===");
 
-        try {
-            // Pure numeric value treated as days
-            if (Character.isDigit(last)) {
-                int days = Integer.parseInt(trimmed);
-                return days > 0 ? java.time.Period.ofDays(days) : null;
+        LocalDate week = from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        boolean any = false;
+
+        while (!week.isAfter(to)) {
+
+            StringBuilder line = new StringBuilder();
+            for (String category : rollups.categories()) {
+                Rollups.Totals t = rollups.categoryWeek(category, week);
+                if (t.minutes > 0) {
+                    line.append(String.format("  %s: %.1fh", category, t.hours()));
+                }
             }
 
-            // Numeric value followed by unit character
-            int value = Integer.parseInt(trimmed.substring(0, len - 1));
-            if (value <= 0) return null;
+            if (line.length() > 0) {
+                int isoWeek = week.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+                int isoYear = week.get(IsoFields.WEEK_BASED_YEAR);
+                System.out.printf("%d-W%02d (%s)%s%n", isoYear, isoWeek, week, line);
+                any = true;
+            }
 
-            return switch (last) {
-                case 'd' -> java.time.Period.ofDays(value);
-                case 'w' -> java.time.Period.ofDays(value * 7);
-                case 'm' -> java.time.Period.ofMonths(value);
-                case 'y' -> java.time.Period.ofYears(value);
-                default -> null;
-            };
+            week = week.plusWeeks(1);
+        }
 
-        } catch (NumberFormatException e) {
-            return null;
+        if (!any) {
+            System.out.println("No booked time in this range.");
         }
+        System.out.println();
     }
 }